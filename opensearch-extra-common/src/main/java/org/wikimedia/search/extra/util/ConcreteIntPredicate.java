@@ -38,6 +38,17 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
         return new DisjunctionIntPredicate(this, intPredicate);
     }
 
+    /**
+     * Smallest value that may pass this predicate, Integer.MIN_VALUE when unbounded.
+     */
+    public int lowerBound() {
+        return Integer.MIN_VALUE;
+    }
+
+    private static int lowerBoundOf(IntPredicate predicate) {
+        return predicate instanceof ConcreteIntPredicate ? ((ConcreteIntPredicate) predicate).lowerBound() : Integer.MIN_VALUE;
+    }
+
     @Override
     @SuppressFBWarnings(value = "AOM_ABSTRACT_OVERRIDDEN_METHOD", justification = "We want subclasses to implement this")
     public abstract int hashCode();
@@ -107,6 +118,11 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
             return left.test(i) && right.test(i);
         }
 
+        @Override
+        public int lowerBound() {
+            return Math.max(lowerBoundOf(left), lowerBoundOf(right));
+        }
+
         @Override
         public String toString() {
             return left + " and " + right;
@@ -143,6 +159,11 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
             return left.test(i) || right.test(i);
         }
 
+        @Override
+        public int lowerBound() {
+            return Math.min(lowerBoundOf(left), lowerBoundOf(right));
+        }
+
         @Override
         public String toString() {
             return left + " or " + right;
@@ -162,6 +183,11 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
             return i == value;
         }
 
+        @Override
+        public int lowerBound() {
+            return value;
+        }
+
         @Override
         public String toString() {
             return "= " + value;
@@ -181,6 +207,12 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
             return i > value;
         }
 
+        @Override
+        public int lowerBound() {
+            // Nothing passes > Integer.MAX_VALUE, MAX_VALUE is as good a bound as any
+            return value == Integer.MAX_VALUE ? value : value + 1;
+        }
+
         @Override
         public String toString() {
             return "> " + value;
@@ -200,6 +232,11 @@ public abstract class ConcreteIntPredicate implements IntPredicate {
             return i >= value;
         }
 
+        @Override
+        public int lowerBound() {
+            return value;
+        }
+
         @Override
         public String toString() {
             return ">= " + value;
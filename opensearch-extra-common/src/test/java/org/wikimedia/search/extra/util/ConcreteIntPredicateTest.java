@@ -126,6 +126,22 @@ public class ConcreteIntPredicateTest {
         assertEquals(negation.toString(), "not " + gt(v));
     }
 
+    @Test
+    public void testLowerBound() {
+        int v = 100;
+        assertEquals(v + 1, gt(v).lowerBound());
+        assertEquals(v, gte(v).lowerBound());
+        assertEquals(v, eq(v).lowerBound());
+        assertEquals(Integer.MIN_VALUE, lt(v).lowerBound());
+        assertEquals(Integer.MIN_VALUE, lte(v).lowerBound());
+        assertEquals(v, gte(v).and(lt(v + 10)).lowerBound());
+        assertEquals(v + 1, gte(v).and(gt(v)).lowerBound());
+        assertEquals(v, gte(v).or(gt(v)).lowerBound());
+        assertEquals(Integer.MIN_VALUE, gte(v).or(lt(v - 10)).lowerBound());
+        assertEquals(Integer.MIN_VALUE, lt(v).negate().lowerBound());
+        assertEquals(Integer.MAX_VALUE, gt(Integer.MAX_VALUE).lowerBound());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testBadParamsOnDisjunction() {
         gt(1).or((i) -> true);
@@ -25,6 +25,7 @@ import org.opensearch.cluster.service.ClusterService;
 import org.opensearch.core.common.io.stream.NamedWriteableRegistry;
 import org.opensearch.common.settings.ClusterSettings;
 import org.opensearch.common.settings.IndexScopedSettings;
+import org.opensearch.common.settings.Setting;
 import org.opensearch.common.settings.Settings;
 import org.opensearch.common.settings.SettingsFilter;
 import org.opensearch.core.xcontent.NamedXContentRegistry;
@@ -60,18 +61,28 @@ import org.wikimedia.search.extra.latency.SearchLatencyListener;
 import org.wikimedia.search.extra.latency.TransportLatencyStatsAction;
 import org.wikimedia.search.extra.levenshtein.LevenshteinDistanceScoreBuilder;
 import org.wikimedia.search.extra.regex.SourceRegexQueryBuilder;
+import org.wikimedia.search.extra.router.ClusterLoad;
 import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder;
 import org.wikimedia.search.extra.router.SystemLoad;
 import org.wikimedia.search.extra.router.TokenCountRouterQueryBuilder;
 import org.wikimedia.search.extra.simswitcher.SimSwitcherQueryBuilder;
 import org.wikimedia.search.extra.superdetectnoop.ChangeHandler;
 import org.wikimedia.search.extra.superdetectnoop.MultiListHandler;
+import org.wikimedia.search.extra.superdetectnoop.RestGetSuperNoopStats;
+import org.wikimedia.search.extra.superdetectnoop.RestSuperNoopBulk;
 import org.wikimedia.search.extra.superdetectnoop.SetHandler;
 import org.wikimedia.search.extra.superdetectnoop.SuperDetectNoopScript;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopBulkAction;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopCoalescer;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopStatsAction;
+import org.wikimedia.search.extra.superdetectnoop.TimeBoundedWithinHandler;
+import org.wikimedia.search.extra.superdetectnoop.TransportSuperNoopBulkAction;
+import org.wikimedia.search.extra.superdetectnoop.TransportSuperNoopStatsAction;
 import org.wikimedia.search.extra.superdetectnoop.VersionedDocumentHandler;
 import org.wikimedia.search.extra.superdetectnoop.WithinAbsoluteHandler;
 import org.wikimedia.search.extra.superdetectnoop.WithinPercentageHandler;
 import org.wikimedia.search.extra.termfreq.TermFreqFilterQueryBuilder;
+import org.wikimedia.search.extra.termfreq.TermsFreqFilterQueryBuilder;
 import org.wikimedia.search.extra.util.Suppliers.MutableSupplier;
 import org.wikimedia.utils.regex.RegexRewriter;
 
@@ -85,25 +96,36 @@ public class ExtraCorePlugin extends Plugin implements SearchPlugin, AnalysisPlu
     private final SearchLatencyListener latencyListener;
     private final MutableSupplier<ThreadPool> threadPoolSupplier;
     private final SystemLoad loadStats;
+    private final MutableSupplier<Client> clientSupplier;
+    private final ClusterLoad clusterLoad;
     private final SuperDetectNoopScript.SuperNoopScriptEngineService superDetectNoopService;
+    private final SuperNoopCoalescer superNoopCoalescer;
 
     public ExtraCorePlugin(Settings settings) {
         threadPoolSupplier = new MutableSupplier<>();
         latencyListener = new SearchLatencyListener(threadPoolSupplier);
         try {
-            loadStats = new SystemLoad(latencyListener, new OsService(settings));
+            loadStats = new SystemLoad(latencyListener, new OsService(settings), threadPoolSupplier, settings);
         } catch (IOException e) {
             throw new RuntimeException("Couldn't init OsService", e);
         }
+        clientSupplier = new MutableSupplier<>();
+        clusterLoad = new ClusterLoad(clientSupplier, threadPoolSupplier, settings);
         superDetectNoopService = new SuperDetectNoopScript.SuperNoopScriptEngineService(
                 unmodifiableSet(new HashSet<>(asList(
                     new ChangeHandler.Equal.Recognizer(),
                     new WithinPercentageHandler.Recognizer(),
                     new WithinAbsoluteHandler.Recognizer(),
+                    new TimeBoundedWithinHandler.Recognizer(),
                     new SetHandler.Recognizer(),
                     new VersionedDocumentHandler.Recognizer(),
                     MultiListHandler.RECOGNIZER)
-        )));
+                )),
+                () -> {
+                    ThreadPool threadPool = threadPoolSupplier.get();
+                    return threadPool == null ? null : threadPool.getThreadContext();
+                });
+        superNoopCoalescer = new SuperNoopCoalescer(clientSupplier, threadPoolSupplier, superDetectNoopService, settings);
     }
 
     @Override
@@ -115,7 +137,15 @@ public class ExtraCorePlugin extends Plugin implements SearchPlugin, AnalysisPlu
                                                Supplier<RepositoriesService> repositoriesServiceSupplier
     ) {
         threadPoolSupplier.set(threadPool);
-        return singletonList(latencyListener);
+        clientSupplier.set(client);
+        return asList(latencyListener, loadStats, clusterLoad, superDetectNoopService.stats(), superNoopCoalescer);
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return asList(SystemLoad.SAMPLE_INTERVAL, ClusterLoad.ENABLED, ClusterLoad.REFRESH_INTERVAL,
+                SuperNoopCoalescer.WINDOW, SuperNoopCoalescer.PARTITIONS,
+                SuperNoopCoalescer.VERSION_PRECHECK);
     }
 
     /**
@@ -129,10 +159,11 @@ public class ExtraCorePlugin extends Plugin implements SearchPlugin, AnalysisPlu
                 new QuerySpec<>(FuzzyLikeThisQueryBuilder.NAME, FuzzyLikeThisQueryBuilder::new, FuzzyLikeThisQueryBuilder::fromXContent),
                 new QuerySpec<>(TokenCountRouterQueryBuilder.NAME, TokenCountRouterQueryBuilder::new, TokenCountRouterQueryBuilder::fromXContent),
                 new QuerySpec<>(DegradedRouterQueryBuilder.NAME,
-                        in -> new DegradedRouterQueryBuilder(in, loadStats),
-                        pc -> DegradedRouterQueryBuilder.fromXContent(pc, loadStats)),
+                        in -> new DegradedRouterQueryBuilder(in, loadStats, clusterLoad),
+                        pc -> DegradedRouterQueryBuilder.fromXContent(pc, loadStats, clusterLoad)),
                 new QuerySpec<>(SimSwitcherQueryBuilder.NAME, SimSwitcherQueryBuilder::new, SimSwitcherQueryBuilder::fromXContent),
-                new QuerySpec<>(TermFreqFilterQueryBuilder.NAME, TermFreqFilterQueryBuilder::new, TermFreqFilterQueryBuilder::fromXContent)
+                new QuerySpec<>(TermFreqFilterQueryBuilder.NAME, TermFreqFilterQueryBuilder::new, TermFreqFilterQueryBuilder::fromXContent),
+                new QuerySpec<>(TermsFreqFilterQueryBuilder.NAME, TermsFreqFilterQueryBuilder::new, TermsFreqFilterQueryBuilder::fromXContent)
         );
     }
 
@@ -187,8 +218,10 @@ public class ExtraCorePlugin extends Plugin implements SearchPlugin, AnalysisPlu
 
     @Override
     public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
-        return singletonList(
-                new ActionHandler<>(LatencyStatsAction.INSTANCE, TransportLatencyStatsAction.class)
+        return asList(
+                new ActionHandler<>(LatencyStatsAction.INSTANCE, TransportLatencyStatsAction.class),
+                new ActionHandler<>(SuperNoopStatsAction.INSTANCE, TransportSuperNoopStatsAction.class),
+                new ActionHandler<>(SuperNoopBulkAction.INSTANCE, TransportSuperNoopBulkAction.class)
         );
     }
 
@@ -197,6 +230,6 @@ public class ExtraCorePlugin extends Plugin implements SearchPlugin, AnalysisPlu
                                              ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings,
                                              SettingsFilter settingsFilter, IndexNameExpressionResolver indexNameExpressionResolver,
                                              Supplier<DiscoveryNodes> nodesInCluster) {
-        return singletonList(new RestGetLatencyStats());
+        return asList(new RestGetLatencyStats(), new RestGetSuperNoopStats(), new RestSuperNoopBulk(settings));
     }
 }
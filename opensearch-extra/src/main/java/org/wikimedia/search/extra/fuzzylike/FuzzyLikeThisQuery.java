@@ -21,6 +21,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
@@ -28,25 +32,36 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.TermStates;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.BoostAttribute;
 import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.FuzzyTermsEnum;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchNoDocsQuery;
-import org.apache.lucene.search.MaxNonCompetitiveBoostAttribute;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.search.similarities.TFIDFSimilarity;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.PriorityQueue;
+import org.opensearch.common.cache.Cache;
+import org.opensearch.common.cache.CacheBuilder;
+import org.opensearch.common.cache.RemovalNotification;
+import org.opensearch.common.cache.RemovalReason;
+
+import com.google.common.annotations.VisibleForTesting;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.EqualsAndHashCode;
@@ -60,11 +75,13 @@ import lombok.EqualsAndHashCode;
  * a fast query.
  * <p>
  * For each source term the fuzzy variants are held in a BooleanQuery with no coord factor (because
- * we are not looking for matches on multiple variants in any one doc). Additionally, a specialized
- * TermQuery is used for variants and does not use that variant term's IDF because this would favour rarer
- * terms eg misspellings. Instead, all variants use the same IDF ranking (the one for the source query
- * term) and this is factored into the variant's boost. If the source query term does not exist in the
- * index the average IDF of the variants is used.
+ * we are not looking for matches on multiple variants in any one doc). Additionally, the variants
+ * do not use their own term statistics because this would favour rarer terms eg misspellings.
+ * Instead, all variants share the statistics of the source query term, blended into their
+ * TermStates like BlendedTermQuery does, and are boosted by their edit distance score. If the
+ * source query term does not exist in the index the average statistics of the variants are used.
+ * <p>
+ * The candidate variants of a source term are expanded once per segment, see {@link #CANDIDATES}.
  *
  * @deprecated
  */
@@ -72,16 +89,38 @@ import lombok.EqualsAndHashCode;
 @SuppressWarnings("checkstyle:classfanoutcomplexity") // Deprecated class is not worth refactoring
 @EqualsAndHashCode(callSuper = false, of = {"analyzer", "fieldVals", "ignoreTF", "maxNumTerms"})
 public class FuzzyLikeThisQuery extends Query {
-    // TODO: generalize this query (at least it should not reuse this static sim!
-    // a better way might be to convert this into multitermquery rewrite methods.
-    // the rewrite method can 'average' the TermContext's term statistics (docfreq,totalTermFreq)
-    // provided to TermQuery, so that the general idea is agnostic to any scoring system...
+    // Only used to rank the source terms against each other and to boost the
+    // variants when ignoring term frequencies (the similarity is never asked
+    // to score a constant score query).
     static final TFIDFSimilarity SIM = new ClassicSimilarity();
+    private static final int MAX_VARIANTS_PER_TERM = 50;
+    // Total number of candidates kept in the cache
+    private static final long MAX_CACHED_CANDIDATES = 100_000;
+
+    /**
+     * Candidate variants of the source terms expanded on this node, per
+     * segment. Walking the terms dictionary with a FuzzyTermsEnum is the
+     * costly part of this query and gives the same candidates for as long as
+     * the segment lives, so a refresh only expands the new segments. The top
+     * variants of the index are among the top candidates of its segments,
+     * they are picked from them at rewrite. Entries are invalidated when their
+     * segment is closed.
+     */
+    @VisibleForTesting
+    static final Cache<CandidatesKey, Candidates> CANDIDATES = CacheBuilder.<CandidatesKey, Candidates>builder()
+            .setMaximumWeight(MAX_CACHED_CANDIDATES)
+            .weigher((k, v) -> v.terms.length + 1)
+            .removalListener(FuzzyLikeThisQuery::onRemoval)
+            .build();
+    /**
+     * Keys of the entries of each segment in {@link #CANDIDATES}, to
+     * invalidate them once the segment is closed.
+     */
+    private static final ConcurrentMap<IndexReader.CacheKey, Set<CandidatesKey>> CANDIDATES_BY_SEGMENT = new ConcurrentHashMap<>();
+
     ArrayList<FieldVals> fieldVals = new ArrayList<>();
     Analyzer analyzer;
 
-    final ScoreTermQueue q;
-    private static final int MAX_VARIANTS_PER_TERM = 50;
     boolean ignoreTF;
     private final int maxNumTerms;
 
@@ -89,7 +128,6 @@ public class FuzzyLikeThisQuery extends Query {
      * @param maxNumTerms The total number of terms clauses that will appear once rewritten as a BooleanQuery
      */
     public FuzzyLikeThisQuery(int maxNumTerms, Analyzer analyzer) {
-        q = new ScoreTermQueue(maxNumTerms);
         this.analyzer = analyzer;
         this.maxNumTerms = maxNumTerms;
     }
@@ -121,13 +159,8 @@ public class FuzzyLikeThisQuery extends Query {
         fieldVals.add(new FieldVals(fieldName, maxDist, prefixLength, queryString));
     }
 
-    @SuppressWarnings("CyclomaticComplexity")
-    private void addTerms(IndexReader reader, FieldVals f) throws IOException {
+    private void addTerms(IndexReader reader, FieldVals f, ScoreTermQueue q) throws IOException {
         if (f.queryString == null) return;
-        final Terms terms = MultiTerms.getTerms(reader, f.fieldName);
-        if (terms == null) {
-            return;
-        }
         TokenStream ts = analyzer.tokenStream(f.fieldName, f.queryString);
         try {
             CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
@@ -137,48 +170,20 @@ public class FuzzyLikeThisQuery extends Query {
             ts.reset();
             while (ts.incrementToken()) {
                 String term = termAtt.toString();
-                if (!processedTerms.contains(term)) {
-                    processedTerms.add(term);
-                    ScoreTermQueue variantsQ = new ScoreTermQueue(MAX_VARIANTS_PER_TERM); //maxNum variants considered for any one term
-                    float minScore = 0;
+                if (processedTerms.add(term)) {
                     Term startTerm = new Term(f.fieldName, term);
-                    FuzzyTermsEnum fe = new FuzzyTermsEnum(terms, startTerm, f.maxDist, f.prefixLength, true);
-                    MaxNonCompetitiveBoostAttribute maxBoostAtt = fe.attributes().addAttribute(MaxNonCompetitiveBoostAttribute.class);
-                    //store the df so all variants use same idf
-                    int df = reader.docFreq(startTerm);
-                    int numVariants = 0;
-                    int totalVariantDocFreqs = 0;
-                    BytesRef possibleMatch;
-                    BoostAttribute boostAtt =
-                            fe.attributes().addAttribute(BoostAttribute.class);
-                    while ((possibleMatch = fe.next()) != null) {
-                        numVariants++;
-                        totalVariantDocFreqs += fe.docFreq();
-                        float score = boostAtt.getBoost();
-                        if (variantsQ.size() < MAX_VARIANTS_PER_TERM || score > minScore) {
-                            ScoreTerm st = new ScoreTerm(new Term(startTerm.field(), BytesRef.deepCopyOf(possibleMatch)), score, startTerm);
-                            variantsQ.insertWithOverflow(st);
-                            minScore = variantsQ.top().score; // maintain minScore
-                        }
-                        maxBoostAtt.setMaxNonCompetitiveBoost(variantsQ.size() >= MAX_VARIANTS_PER_TERM ? minScore : Float.NEGATIVE_INFINITY);
+                    Variants variants = variants(reader, startTerm, f);
+                    if (variants == null) {
+                        // No segment has the field
+                        return;
                     }
-
-                    if (numVariants > 0) {
-                        int avgDf = totalVariantDocFreqs / numVariants;
-                        if (df == 0) {
-                            //no direct match we can use as df for all variants
-                            df = avgDf; //use avg df of all variants
-                        }
-
-                        // take the top variants (scored by edit distance) and reset the score
-                        // to include an IDF factor then add to the global queue for ranking
-                        // overall top query terms
-                        int size = variantsQ.size();
-                        for (int i = 0; i < size; i++) {
-                            ScoreTerm st = variantsQ.pop();
-                            st.score = (st.score * st.score) * SIM.idf(df, corpusNumDocs);
-                            q.insertWithOverflow(st);
-                        }
+                    // reset the score of the top variants (scored by edit distance) to include
+                    // an IDF factor then add to the global queue for ranking overall top query terms
+                    float idf = SIM.idf(variants.docFreq, corpusNumDocs);
+                    for (int i = 0; i < variants.terms.length; i++) {
+                        float boost = variants.boosts[i] * variants.boosts[i];
+                        q.insertWithOverflow(new ScoreTerm(new Term(f.fieldName, variants.terms[i]), boost * idf, boost,
+                                startTerm, variants));
                     }
                 }
             }
@@ -188,6 +193,155 @@ public class FuzzyLikeThisQuery extends Query {
         }
     }
 
+    /**
+     * The top variants of startTerm in the index, picked from the candidates
+     * of its segments, null if none of them has the field.
+     */
+    @Nullable
+    private static Variants variants(IndexReader reader, Term startTerm, FieldVals f) throws IOException {
+        Map<BytesRef, Variant> merged = new HashMap<>();
+        boolean hasField = false;
+        int df = 0;
+        long ttf = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            Candidates candidates = candidates(leaf.reader(), startTerm, f);
+            if (candidates == null) {
+                continue;
+            }
+            hasField = true;
+            // store the stats so all variants use the same idf
+            df += candidates.startDocFreq;
+            ttf += candidates.startTotalTermFreq;
+            for (int i = 0; i < candidates.terms.length; i++) {
+                Variant v = merged.get(candidates.terms[i]);
+                if (v == null) {
+                    v = new Variant();
+                    v.bytes.copyBytes(candidates.terms[i]);
+                    v.boost = candidates.boosts[i];
+                    merged.put(candidates.terms[i], v);
+                }
+                v.docFreq += candidates.docFreqs[i];
+                v.totalTermFreq += candidates.totalTermFreqs[i];
+            }
+        }
+        if (!hasField) {
+            return null;
+        }
+        VariantQueue variantsQ = new VariantQueue(MAX_VARIANTS_PER_TERM);
+        long totalVariantDocFreqs = 0;
+        long totalVariantTermFreqs = 0;
+        for (Variant v : merged.values()) {
+            totalVariantDocFreqs += v.docFreq;
+            totalVariantTermFreqs += v.totalTermFreq;
+            variantsQ.insertWithOverflow(v);
+        }
+        if (df == 0 && !merged.isEmpty()) {
+            //no direct match we can use as df for all variants
+            //use avg df of all variants
+            df = (int) (totalVariantDocFreqs / merged.size());
+            ttf = Math.max(df, totalVariantTermFreqs / merged.size());
+        }
+        int size = variantsQ.size();
+        BytesRef[] variantTerms = new BytesRef[size];
+        float[] boosts = new float[size];
+        for (int i = 0; i < size; i++) {
+            Variant v = variantsQ.pop();
+            variantTerms[i] = v.bytes.toBytesRef();
+            boosts[i] = v.boost;
+        }
+        return new Variants(variantTerms, boosts, df, ttf);
+    }
+
+    /**
+     * The candidates of startTerm in a segment, null if it doesn't have the field.
+     */
+    @Nullable
+    private static Candidates candidates(LeafReader reader, Term startTerm, FieldVals f) throws IOException {
+        IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        if (cacheHelper == null) {
+            return expand(reader, startTerm, f);
+        }
+        CandidatesKey key = new CandidatesKey(cacheHelper.getKey(), startTerm, f.maxDist, f.prefixLength);
+        Candidates candidates = CANDIDATES.get(key);
+        if (candidates == null) {
+            // Concurrent requests may expand the same term, that's fine
+            candidates = expand(reader, startTerm, f);
+            if (candidates == null) {
+                return null;
+            }
+            CANDIDATES_BY_SEGMENT.computeIfAbsent(key.segment, k -> {
+                cacheHelper.addClosedListener(FuzzyLikeThisQuery::onSegmentClosed);
+                return ConcurrentHashMap.newKeySet();
+            }).add(key);
+            CANDIDATES.put(key, candidates);
+        }
+        return candidates;
+    }
+
+    private static void onSegmentClosed(IndexReader.CacheKey segment) {
+        Set<CandidatesKey> keys = CANDIDATES_BY_SEGMENT.remove(segment);
+        if (keys != null) {
+            keys.forEach(CANDIDATES::invalidate);
+        }
+    }
+
+    private static void onRemoval(RemovalNotification<CandidatesKey, Candidates> notification) {
+        if (notification.getRemovalReason() == RemovalReason.REPLACED) {
+            // Still cached
+            return;
+        }
+        Set<CandidatesKey> keys = CANDIDATES_BY_SEGMENT.get(notification.getKey().segment);
+        if (keys != null) {
+            keys.remove(notification.getKey());
+        }
+    }
+
+    @Nullable
+    private static Candidates expand(LeafReader reader, Term startTerm, FieldVals f) throws IOException {
+        Terms terms = reader.terms(startTerm.field());
+        if (terms == null) {
+            return null;
+        }
+        int df = 0;
+        long ttf = 0;
+        TermsEnum te = terms.iterator();
+        if (te.seekExact(startTerm.bytes())) {
+            df = te.docFreq();
+            ttf = te.totalTermFreq();
+        }
+        VariantQueue variantsQ = new VariantQueue(MAX_VARIANTS_PER_TERM); //maxNum variants considered for any one term
+        float minBoost = 0;
+        FuzzyTermsEnum fe = new FuzzyTermsEnum(terms, startTerm, f.maxDist, f.prefixLength, true);
+        // Evicted variants are recycled, only the competitive terms are copied
+        Variant spare = null;
+        BytesRef possibleMatch;
+        while ((possibleMatch = fe.next()) != null) {
+            float boost = fe.getBoost();
+            if (variantsQ.size() < MAX_VARIANTS_PER_TERM || boost > minBoost) {
+                if (spare == null) {
+                    spare = new Variant();
+                }
+                spare.bytes.copyBytes(possibleMatch);
+                spare.boost = boost;
+                spare.docFreq = fe.docFreq();
+                spare.totalTermFreq = fe.totalTermFreq();
+                spare = variantsQ.insertWithOverflow(spare);
+                minBoost = variantsQ.top().boost; // maintain minBoost
+            }
+            fe.setMaxNonCompetitiveBoost(variantsQ.size() >= MAX_VARIANTS_PER_TERM ? minBoost : Float.NEGATIVE_INFINITY);
+        }
+        int size = variantsQ.size();
+        Candidates candidates = new Candidates(size, df, ttf);
+        for (int i = 0; i < size; i++) {
+            Variant v = variantsQ.pop();
+            candidates.terms[i] = v.bytes.toBytesRef();
+            candidates.boosts[i] = v.boost;
+            candidates.docFreqs[i] = (int) v.docFreq;
+            candidates.totalTermFreqs[i] = v.totalTermFreq;
+        }
+        return candidates;
+    }
+
     @Override
     public void visit(QueryVisitor visitor) {
         visitor.visitLeaf(this);
@@ -197,10 +351,11 @@ public class FuzzyLikeThisQuery extends Query {
     @SuppressFBWarnings(
             value = "PCAIL_POSSIBLE_CONSTANT_ALLOCATION_IN_LOOP",
             justification = "builder should not be reused")
-    public Query rewrite(IndexReader reader) throws IOException {
+    public Query rewrite(IndexSearcher searcher) throws IOException {
         //load up the list of possible terms
+        ScoreTermQueue q = new ScoreTermQueue(maxNumTerms);
         for (FieldVals f : fieldVals) {
-            addTerms(reader, f);
+            addTerms(searcher.getIndexReader(), f, q);
         }
 
         BooleanQuery.Builder bq = new BooleanQuery.Builder();
@@ -219,17 +374,12 @@ public class FuzzyLikeThisQuery extends Query {
         for (ArrayList<ScoreTerm> variants : variantQueries.values()) {
             if (variants.size() == 1) {
                 //optimize where only one selected variant
-                ScoreTerm st = variants.get(0);
-                Query tq = ignoreTF ? new ConstantScoreQuery(new TermQuery(st.term)) : new TermQuery(st.term);
-                tq = new BoostQuery(tq, st.score); // set the boost to a mix of IDF and score
-                bq.add(tq, BooleanClause.Occur.SHOULD);
+                bq.add(variantQuery(searcher, variants.get(0)), BooleanClause.Occur.SHOULD);
             } else {
                 BooleanQuery.Builder termVariants = new BooleanQuery.Builder(); //disable coord and IDF for these term variants
                 for (ScoreTerm st : variants) {
                     // found a match
-                    Query tq = ignoreTF ? new ConstantScoreQuery(new TermQuery(st.term)) : new TermQuery(st.term);
-                    tq = new BoostQuery(tq, st.score); // set the boost using the ScoreTerm's score
-                    termVariants.add(tq, BooleanClause.Occur.SHOULD);          // add to query
+                    termVariants.add(variantQuery(searcher, st), BooleanClause.Occur.SHOULD); // add to query
                 }
                 bq.add(termVariants.build(), BooleanClause.Occur.SHOULD);          // add to query
             }
@@ -243,18 +393,129 @@ public class FuzzyLikeThisQuery extends Query {
         return bool;
     }
 
-    //Holds info for a fuzzy term variant - initially score is set to edit distance (for ranking best
-    // term variants) then is reset with IDF for use in ranking against all other
-    // terms/fields
+    private Query variantQuery(IndexSearcher searcher, ScoreTerm st) throws IOException {
+        if (ignoreTF) {
+            // set the boost to a mix of IDF and score
+            return new BoostQuery(new ConstantScoreQuery(new TermQuery(st.term)), st.score);
+        }
+        TermStates states = blend(searcher, st.term, st.variants.docFreq, st.variants.totalTermFreq);
+        return new BoostQuery(new TermQuery(st.term, states), st.boost);
+    }
+
+    /**
+     * The states of term with the statistics of its source term, like BlendedTermQuery does.
+     */
+    private static TermStates blend(IndexSearcher searcher, Term term, int docFreq, long totalTermFreq) throws IOException {
+        IndexReaderContext context = searcher.getTopReaderContext();
+        TermStates states = TermStates.build(searcher, term, true);
+        TermStates blended = new TermStates(context);
+        for (LeafReaderContext leaf : context.leaves()) {
+            TermState state = states.get(leaf);
+            if (state != null) {
+                blended.register(state, leaf.ord);
+            }
+        }
+        if (states.docFreq() > 0) {
+            blended.accumulateStatistics(docFreq, Math.max(docFreq, totalTermFreq));
+        }
+        return blended;
+    }
+
+    /**
+     * Top variants of a source term and the statistics they share.
+     */
+    @VisibleForTesting
+    static final class Variants {
+        final BytesRef[] terms;
+        // edit distance score of each term
+        final float[] boosts;
+        final int docFreq;
+        final long totalTermFreq;
+
+        Variants(BytesRef[] terms, float[] boosts, int docFreq, long totalTermFreq) {
+            this.terms = terms;
+            this.boosts = boosts;
+            this.docFreq = docFreq;
+            this.totalTermFreq = totalTermFreq;
+        }
+    }
+
+    /**
+     * Top variants of a source term in a segment, with their statistics in
+     * the segment, and the statistics of the source term in the segment.
+     */
+    @VisibleForTesting
+    static final class Candidates {
+        final BytesRef[] terms;
+        // edit distance score of each term
+        final float[] boosts;
+        final int[] docFreqs;
+        final long[] totalTermFreqs;
+        final int startDocFreq;
+        final long startTotalTermFreq;
+
+        Candidates(int size, int startDocFreq, long startTotalTermFreq) {
+            this.terms = new BytesRef[size];
+            this.boosts = new float[size];
+            this.docFreqs = new int[size];
+            this.totalTermFreqs = new long[size];
+            this.startDocFreq = startDocFreq;
+            this.startTotalTermFreq = startTotalTermFreq;
+        }
+    }
+
+    @EqualsAndHashCode
+    @VisibleForTesting
+    static final class CandidatesKey {
+        private final IndexReader.CacheKey segment;
+        private final Term term;
+        private final int maxDist;
+        private final int prefixLength;
+
+        CandidatesKey(IndexReader.CacheKey segment, Term term, int maxDist, int prefixLength) {
+            this.segment = segment;
+            this.term = term;
+            this.maxDist = maxDist;
+            this.prefixLength = prefixLength;
+        }
+    }
+
+    private static final class Variant {
+        final BytesRefBuilder bytes = new BytesRefBuilder();
+        float boost;
+        long docFreq;
+        long totalTermFreq;
+    }
+
+    private static final class VariantQueue extends PriorityQueue<Variant> {
+        VariantQueue(int size) {
+            super(size);
+        }
+
+        @Override
+        protected boolean lessThan(Variant a, Variant b) {
+            if (a.boost == b.boost)
+                return a.bytes.get().compareTo(b.bytes.get()) > 0;
+            else
+                return a.boost < b.boost;
+        }
+    }
+
+    //Holds info for a fuzzy term variant - score mixes the edit distance and the IDF
+    // for ranking against all other terms/fields, boost is the squared edit distance score
     private static class ScoreTerm {
         public final Term term;
-        public float score;
+        public final float score;
+        final float boost;
         final Term fuzziedSourceTerm;
+        final Variants variants;
 
-        ScoreTerm(Term term, float score, Term fuzziedSourceTerm) {
+        ScoreTerm(Term term, float score, float boost, Term fuzziedSourceTerm, Variants variants) {
             this.term = term;
             this.score = score;
+            this.boost = boost;
             this.fuzziedSourceTerm = fuzziedSourceTerm;
+            this.variants = variants;
         }
     }
 
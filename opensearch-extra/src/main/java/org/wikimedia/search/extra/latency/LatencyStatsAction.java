@@ -1,6 +1,7 @@
 package org.wikimedia.search.extra.latency;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.averagingDouble;
 import static java.util.stream.Collectors.groupingBy;
@@ -26,14 +27,13 @@ import org.opensearch.core.common.io.stream.StreamOutput;
 import org.opensearch.core.common.io.stream.Writeable;
 import org.opensearch.common.unit.TimeValue;
 import org.opensearch.core.xcontent.ToXContent;
+import org.opensearch.core.xcontent.ToXContentObject;
 import org.opensearch.core.xcontent.XContentBuilder;
 import org.wikimedia.search.extra.latency.SearchLatencyProbe.LatencyStat;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import lombok.AccessLevel;
 import lombok.Getter;
 
 public final class LatencyStatsAction extends ActionType<LatencyStatsAction.LatencyStatsNodesResponse> {
@@ -54,8 +54,7 @@ public final class LatencyStatsAction extends ActionType<LatencyStatsAction.Late
             implements ToXContent {
 
         @Nullable
-        @VisibleForTesting
-        @Getter(AccessLevel.PACKAGE)
+        @Getter
         private StatDetails allNodes;
 
         LatencyStatsNodesResponse(StreamInput in) throws IOException {
@@ -93,6 +92,7 @@ public final class LatencyStatsAction extends ActionType<LatencyStatsAction.Late
                 builder.field("name", resp.getNode().getName());
                 builder.field("hostname", resp.getNode().getHostName());
                 builder.field("latencies", resp.statDetails);
+                builder.field("load", resp.loadDetails);
                 builder.endObject();
             }
             builder.endObject();
@@ -101,18 +101,20 @@ public final class LatencyStatsAction extends ActionType<LatencyStatsAction.Late
 
     }
 
-    static class LatencyStatsNodesRequest extends BaseNodesRequest<LatencyStatsNodesRequest> {
+    public static class LatencyStatsNodesRequest extends BaseNodesRequest<LatencyStatsNodesRequest> {
         LatencyStatsNodesRequest(StreamInput in) throws IOException {
             super(in);
         }
 
-        LatencyStatsNodesRequest(String... nodesIds) {
+        public LatencyStatsNodesRequest(String... nodesIds) {
             super(nodesIds);
         }
     }
 
+    @Getter
     public static class LatencyStatsNodeResponse extends BaseNodeResponse {
         StatDetails statDetails = new StatDetails();
+        LoadDetails loadDetails = LoadDetails.EMPTY;
 
         LatencyStatsNodeResponse(DiscoveryNode node) {
             super(node);
@@ -123,18 +125,81 @@ public final class LatencyStatsAction extends ActionType<LatencyStatsAction.Late
         LatencyStatsNodeResponse(StreamInput in) throws IOException {
             super(in);
             statDetails.readFrom(in);
+            loadDetails = new LoadDetails(in);
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
             statDetails.writeTo(out);
+            loadDetails.writeTo(out);
         }
 
         LatencyStatsNodeResponse initFromProbe(SearchLatencyProbe latencyProbe) {
             statDetails = new StatDetails(latencyProbe);
             return this;
         }
+
+        LatencyStatsNodeResponse initFromLoad(LoadDetails loadDetails) {
+            this.loadDetails = requireNonNull(loadDetails);
+            return this;
+        }
+    }
+
+    /**
+     * Load of a node, as seen by its last sample.
+     */
+    @Getter
+    public static class LoadDetails implements Writeable, ToXContentObject {
+        static final LoadDetails EMPTY = new LoadDetails(0, 0, 0, 0, 0, emptyMap());
+
+        private final long cpuPercent;
+        private final long loadAverage;
+        private final long searchQueue;
+        private final long searchActive;
+        private final long searchRejectedDelta;
+        private final Map<String, Long> latencyEwmaMillis;
+
+        public LoadDetails(long cpuPercent, long loadAverage, long searchQueue, long searchActive,
+                           long searchRejectedDelta, Map<String, Long> latencyEwmaMillis) {
+            this.cpuPercent = cpuPercent;
+            this.loadAverage = loadAverage;
+            this.searchQueue = searchQueue;
+            this.searchActive = searchActive;
+            this.searchRejectedDelta = searchRejectedDelta;
+            this.latencyEwmaMillis = requireNonNull(latencyEwmaMillis);
+        }
+
+        LoadDetails(StreamInput in) throws IOException {
+            cpuPercent = in.readZLong();
+            loadAverage = in.readZLong();
+            searchQueue = in.readZLong();
+            searchActive = in.readZLong();
+            searchRejectedDelta = in.readZLong();
+            latencyEwmaMillis = in.readMap(StreamInput::readString, StreamInput::readVLong);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeZLong(cpuPercent);
+            out.writeZLong(loadAverage);
+            out.writeZLong(searchQueue);
+            out.writeZLong(searchActive);
+            out.writeZLong(searchRejectedDelta);
+            out.writeMap(latencyEwmaMillis, StreamOutput::writeString, StreamOutput::writeVLong);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("cpuPercent", cpuPercent);
+            builder.field("loadAverage", loadAverage);
+            builder.field("searchQueue", searchQueue);
+            builder.field("searchActive", searchActive);
+            builder.field("searchRejected", searchRejectedDelta);
+            builder.field("latencyEwmaMs", latencyEwmaMillis);
+            return builder.endObject();
+        }
     }
 
     @Getter
@@ -1,11 +1,13 @@
 package org.wikimedia.search.extra.latency;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,6 +38,11 @@ public class SearchLatencyListener extends AbstractLifecycleComponent implements
     private static final TimeValue HIGHEST_TRACKABLE_VALUE = TimeValue.timeValueMinutes(5);
     private static final TimeValue LOWEST_DISCERNABLE_VALUE = TimeValue.timeValueMillis(1);
     static final int SIGNIFICANT_DIGITS = 2;
+    // Weight given to the latest rotation interval when updating the exponentially
+    // weighted moving average. With 5 second rotations the contribution of an interval
+    // halves roughly every 10 seconds, much quicker than the 1 minute percentiles.
+    @VisibleForTesting
+    static final double EWMA_ALPHA = 0.3;
 
     private final ConcurrentMap<String, RollingHistogram> statBuckets;
     private final Supplier<ThreadPool> threadPoolSupplier;
@@ -79,6 +86,15 @@ public class SearchLatencyListener extends AbstractLifecycleComponent implements
         return getBucket(bucket).map(hist -> Math.round(hist.getMillisAtPercentile(percentile))).orElse(0L);
     }
 
+    public long getEwmaMillis(String bucket) {
+        return getBucket(bucket).map(hist -> Math.round(hist.getEwmaMillis())).orElse(0L);
+    }
+
+    public Map<String, Long> getEwmaMillisPerBucket() {
+        return statBuckets.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, entry -> Math.round(entry.getValue().getEwmaMillis())));
+    }
+
     public List<LatencyStat> getLatencyStats(Set<Double> percentiles) {
         return statBuckets.entrySet().stream()
                 .flatMap(entry -> percentiles.stream().map(percentile -> {
@@ -119,6 +135,7 @@ public class SearchLatencyListener extends AbstractLifecycleComponent implements
         private final Histogram current;
         private final List<Histogram> list;
         private final Recorder recorder;
+        private double ewmaNanos = Double.NaN;
 
         RollingHistogram() {
             current = new Histogram(LOWEST_DISCERNABLE_VALUE.nanos(), HIGHEST_TRACKABLE_VALUE.nanos(), SIGNIFICANT_DIGITS);
@@ -143,6 +160,15 @@ public class SearchLatencyListener extends AbstractLifecycleComponent implements
                 recorder.getIntervalHistogramInto(hist);
             }
             current.add(hist);
+            // Intervals without any query carry no signal, keep the average as is.
+            if (hist.getTotalCount() > 0) {
+                double mean = hist.getMean();
+                ewmaNanos = Double.isNaN(ewmaNanos) ? mean : EWMA_ALPHA * mean + (1 - EWMA_ALPHA) * ewmaNanos;
+            }
+        }
+
+        synchronized double getEwmaMillis() {
+            return Double.isNaN(ewmaNanos) ? 0D : ewmaNanos / TimeValue.NSEC_PER_MSEC;
         }
 
         synchronized double getMillisAtPercentile(double percentile) {
@@ -2,6 +2,7 @@ package org.wikimedia.search.extra.latency;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.opensearch.core.common.io.stream.StreamInput;
@@ -39,6 +40,17 @@ public interface SearchLatencyProbe {
     }
 
     long getMillisAtPercentile(String bucket, double percentile);
+
+    /**
+     * Exponentially weighted moving average of the mean latency per rotation interval.
+     * Reacts to latency changes faster than the trailing percentiles.
+     */
+    long getEwmaMillis(String bucket);
+
+    /**
+     * Exponentially weighted moving average of every bucket.
+     */
+    Map<String, Long> getEwmaMillisPerBucket();
     List<LatencyStat> getLatencyStats(Set<Double> latencies);
 }
 
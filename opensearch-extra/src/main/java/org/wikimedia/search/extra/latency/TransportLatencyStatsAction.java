@@ -16,21 +16,24 @@ import org.opensearch.transport.TransportService;
 import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodeResponse;
 import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodesRequest;
 import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodesResponse;
+import org.wikimedia.search.extra.router.SystemLoad;
 
 public class TransportLatencyStatsAction extends TransportNodesAction<LatencyStatsNodesRequest,
         LatencyStatsNodesResponse, TransportLatencyStatsAction.LatencyStatsNodeRequest,
         LatencyStatsNodeResponse> {
     private final SearchLatencyProbe latencyProbe;
+    private final SystemLoad systemLoad;
 
     @Inject
     public TransportLatencyStatsAction(ThreadPool threadPool,
                 ClusterService clusterService, TransportService transportService,
                 ActionFilters actionFilters,
-                SearchLatencyListener latencyProbe) {
+                SearchLatencyListener latencyProbe, SystemLoad systemLoad) {
         super(LatencyStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
                 LatencyStatsNodesRequest::new, LatencyStatsNodeRequest::new, ThreadPool.Names.MANAGEMENT,
                 LatencyStatsNodeResponse.class);
         this.latencyProbe = latencyProbe;
+        this.systemLoad = systemLoad;
     }
 
     @Override
@@ -51,7 +54,9 @@ public class TransportLatencyStatsAction extends TransportNodesAction<LatencySta
 
     @Override
     protected LatencyStatsNodeResponse nodeOperation(LatencyStatsNodeRequest request) {
-        return new LatencyStatsNodeResponse(clusterService.localNode()).initFromProbe(latencyProbe);
+        return new LatencyStatsNodeResponse(clusterService.localNode())
+                .initFromProbe(latencyProbe)
+                .initFromLoad(systemLoad.loadDetails());
     }
 
     static class LatencyStatsNodeRequest extends BaseNodeRequest {
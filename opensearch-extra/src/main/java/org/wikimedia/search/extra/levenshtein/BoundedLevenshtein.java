@@ -0,0 +1,98 @@
+package org.wikimedia.search.extra.levenshtein;
+
+/**
+ * Levenshtein distance to a fixed text, giving up once the distance exceeds
+ * a maximum.
+ *
+ * Only the diagonal band of the distance matrix where the distance can be
+ * lower than the maximum is computed, and the computation stops as soon as
+ * every cell of a row exceeds it. Scores the same as Lucene's
+ * {@link org.apache.lucene.search.spell.LevenshteinDistance} below the
+ * maximum.
+ *
+ * Reuses its buffers, not thread safe.
+ */
+final class BoundedLevenshtein {
+    private final String target;
+    private final int maxDistance;
+    // Distances past the maximum, all equivalent
+    private final int beyond;
+    private final int[] prev;
+    private final int[] cur;
+
+    BoundedLevenshtein(String target, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must be positive");
+        }
+        this.target = target;
+        this.maxDistance = maxDistance;
+        this.beyond = maxDistance == Integer.MAX_VALUE ? maxDistance : maxDistance + 1;
+        this.prev = new int[target.length() + 1];
+        this.cur = new int[target.length() + 1];
+    }
+
+    /**
+     * Similarity as computed by Lucene's LevenshteinDistance:
+     * 1 - distance / max(length), or floor when other is too far away.
+     */
+    float score(String other, float floor) {
+        int distance = distance(other);
+        if (distance > maxDistance) {
+            return floor;
+        }
+        int maxLength = Math.max(target.length(), other.length());
+        if (maxLength == 0) {
+            return 1;
+        }
+        return 1.0f - ((float) distance / maxLength);
+    }
+
+    /**
+     * The distance to other, a value greater than the maximum when it exceeds it.
+     */
+    int distance(String other) {
+        final int n = target.length();
+        final int m = other.length();
+        final int k = maxDistance;
+        if (Math.abs(n - m) > k) {
+            return beyond;
+        }
+        if (n == 0 || m == 0) {
+            return Math.max(n, m);
+        }
+        int[] p = prev;
+        int[] d = cur;
+        int firstRowEnd = Math.min(n, k);
+        for (int j = 0; j <= firstRowEnd; j++) {
+            p[j] = j;
+        }
+        if (firstRowEnd < n) {
+            p[firstRowEnd + 1] = beyond;
+        }
+        for (int i = 1; i <= m; i++) {
+            final char c = other.charAt(i - 1);
+            // Columns of this row in the band |i - j| <= k
+            final int lo = Math.max(1, i - k);
+            final int hi = (int) Math.min(n, (long) i + k);
+            d[lo - 1] = lo == 1 ? Math.min(i, beyond) : beyond;
+            int rowMin = d[lo - 1];
+            for (int j = lo; j <= hi; j++) {
+                int cost = target.charAt(j - 1) == c ? 0 : 1;
+                int v = Math.min(Math.min(d[j - 1], p[j]) + 1, p[j - 1] + cost);
+                v = Math.min(v, beyond);
+                d[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (hi < n) {
+                d[hi + 1] = beyond;
+            }
+            if (rowMin > k) {
+                return beyond;
+            }
+            int[] tmp = p;
+            p = d;
+            d = tmp;
+        }
+        return p[n];
+    }
+}
@@ -0,0 +1,54 @@
+package org.wikimedia.search.extra.levenshtein;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.opensearch.OpenSearchException;
+
+/**
+ * Reads the value of a keyword field of the docs of a segment from its doc values.
+ *
+ * Reading the docs in order is a sequential read of the column, docs may
+ * still be read out of order (i.e. when explaining) at the cost of
+ * reopening the doc values.
+ */
+final class KeywordDocValues {
+    private final LeafReader reader;
+    private final String field;
+    @Nullable private SortedSetDocValues values;
+    private int doc = -1;
+    @Nullable private String value;
+
+    KeywordDocValues(LeafReader reader, String field) {
+        this.reader = reader;
+        this.field = field;
+    }
+
+    /**
+     * The value of the field for docId, null if it has none in the doc values.
+     *
+     * @throws OpenSearchException if the doc has multiple values
+     */
+    @Nullable
+    String get(int docId) throws IOException {
+        if (docId == doc) {
+            return value;
+        }
+        if (values == null || docId < values.docID()) {
+            values = DocValues.getSortedSet(reader, field);
+        }
+        doc = docId;
+        value = null;
+        if (values.advanceExact(docId)) {
+            if (values.docValueCount() > 1) {
+                throw new OpenSearchException("Expected a single value for " + field + ", got " + values.docValueCount());
+            }
+            value = values.lookupOrd(values.nextOrd()).utf8ToString();
+        }
+        return value;
+    }
+}
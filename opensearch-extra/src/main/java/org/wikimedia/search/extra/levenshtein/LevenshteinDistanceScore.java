@@ -1,5 +1,6 @@
 package org.wikimedia.search.extra.levenshtein;
 
+import java.io.IOException;
 import java.util.Objects;
 
 import javax.annotation.Nullable;
@@ -8,9 +9,11 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.spell.LevenshteinDistance;
 import org.opensearch.OpenSearchException;
+import org.opensearch.common.lucene.Lucene;
 import org.opensearch.common.lucene.search.function.CombineFunction;
 import org.opensearch.common.lucene.search.function.LeafScoreFunction;
 import org.opensearch.common.lucene.search.function.ScoreFunction;
+import org.opensearch.index.mapper.KeywordFieldMapper;
 import org.opensearch.index.mapper.MappedFieldType;
 import org.opensearch.search.lookup.FieldLookup;
 import org.opensearch.search.lookup.LeafSearchLookup;
@@ -18,37 +21,70 @@ import org.opensearch.search.lookup.SearchLookup;
 
 /**
  * Function score based on levenshtein distance.
- * This function is slow because it loads string field data for <b>each</b> doc.
+ * This function is slow because it loads string field data for <b>each</b> doc,
+ * unless the field is a keyword with doc values.
  * Permits to replace the inline groovy script :
  * <pre>
  * return new LevensteinDistance().getDistance(srctxt, _source['content'])
  * </pre>
  * used by the Translate extension.
+ *
+ * When a max distance is set the documents further away from the text get
+ * a score of 0, and computing their distance stops as soon as the max
+ * distance is exceeded.
  */
 public class LevenshteinDistanceScore extends ScoreFunction {
     private final MappedFieldType fieldType;
     private final String value;
     private final SearchLookup lookup;
     @Nullable private final String missing;
+    @Nullable private final Integer maxDistance;
+    private final boolean useDocValues;
     private final LevenshteinDistance levenshtein = new LevenshteinDistance();
 
     public LevenshteinDistanceScore(SearchLookup lookup, MappedFieldType fieldType, String value, @Nullable String missing) {
+        this(lookup, fieldType, value, missing, null);
+    }
+
+    public LevenshteinDistanceScore(SearchLookup lookup, MappedFieldType fieldType, String value,
+                                    @Nullable String missing, @Nullable Integer maxDistance) {
         super(CombineFunction.REPLACE);
         this.fieldType = fieldType;
         this.value = value;
         this.lookup = lookup;
         this.missing = missing;
+        this.maxDistance = maxDistance;
+        this.useDocValues = hasOriginalValuesInDocValues(fieldType);
+    }
+
+    /**
+     * Whether the doc values of the field hold the values as found in the source:
+     * keywords with doc values and without a normalizer.
+     */
+    private static boolean hasOriginalValuesInDocValues(MappedFieldType fieldType) {
+        return fieldType instanceof KeywordFieldMapper.KeywordFieldType &&
+                fieldType.hasDocValues() &&
+                fieldType.getTextSearchInfo().getSearchAnalyzer() == Lucene.KEYWORD_ANALYZER;
     }
 
     /**
-     * NOTE: Very slow.
+     * NOTE: Very slow, unless read from doc values.
      *
-     * Loads field data from stored fields or source if not stored
+     * Loads field data from doc values when available, then from stored fields
+     * or source if not stored. Values missing from the doc values (i.e. longer
+     * than ignore_above) are still read from stored fields or source.
      * @return the field data
      * @throws OpenSearchException if the data is not found or if it's not a string.
      */
-    private String loadValue(LeafSearchLookup leafLookup) {
+    private String loadValue(LeafSearchLookup leafLookup, @Nullable KeywordDocValues docValues, int docId) throws IOException {
+        if (docValues != null) {
+            String docValue = docValues.get(docId);
+            if (docValue != null) {
+                return docValue;
+            }
+        }
         Object value = null;
+        leafLookup.setDocument(docId);
         if (!fieldType.isStored()) {
             value = leafLookup.source().get(fieldType.name());
         } else {
@@ -73,20 +109,28 @@ public class LevenshteinDistanceScore extends ScoreFunction {
     @Override
     public LeafScoreFunction getLeafScoreFunction(final LeafReaderContext ctx) {
         final LeafSearchLookup leafLookup = lookup.getLeafSearchLookup(ctx);
+        final KeywordDocValues docValues = useDocValues ? new KeywordDocValues(ctx.reader(), fieldType.name()) : null;
+        // The buffers are reused for all the docs of the leaf
+        final BoundedLevenshtein bounded = maxDistance != null ? new BoundedLevenshtein(value, maxDistance) : null;
         return new LeafScoreFunction() {
             @Override
-            public double score(int docId, float subQueryScore) {
-                leafLookup.setDocument(docId);
-                String fieldValue = loadValue(leafLookup);
+            public double score(int docId, float subQueryScore) throws IOException {
+                String fieldValue = loadValue(leafLookup, docValues, docId);
+                if (bounded != null) {
+                    return bounded.score(fieldValue, 0);
+                }
                 return levenshtein.getDistance(value, fieldValue);
             }
 
             @Override
-            public Explanation explainScore(int docId, Explanation subQueryScore) {
+            public Explanation explainScore(int docId, Explanation subQueryScore) throws IOException {
                 double score = score(docId, subQueryScore.getValue().floatValue());
                 String explanation = "LevenshteinDistanceScore";
                 explanation += " with parameters:\n text:" + value;
-                explanation += "\n field value : " + loadValue(leafLookup);
+                if (maxDistance != null) {
+                    explanation += "\n max_distance:" + maxDistance;
+                }
+                explanation += "\n field value : " + loadValue(leafLookup, docValues, docId);
 
                 Explanation scoreExp = Explanation.match(subQueryScore.getValue(), "_score: ", subQueryScore);
                 return Explanation.match((float) score, explanation, scoreExp);
@@ -105,7 +149,8 @@ public class LevenshteinDistanceScore extends ScoreFunction {
         LevenshteinDistanceScore o = (LevenshteinDistanceScore) other;
         return Objects.equals(fieldType, o.fieldType) &&
                 Objects.equals(this.value, o.value) &&
-                Objects.equals(this.missing, o.missing);
+                Objects.equals(this.missing, o.missing) &&
+                Objects.equals(this.maxDistance, o.maxDistance);
 
     }
 
@@ -122,8 +167,13 @@ public class LevenshteinDistanceScore extends ScoreFunction {
         return missing;
     }
 
+    @Nullable
+    public Integer getMaxDistance() {
+        return maxDistance;
+    }
+
     @Override
     protected int doHashCode() {
-        return Objects.hash(fieldType, value, missing);
+        return Objects.hash(fieldType, value, missing, maxDistance);
     }
 }
@@ -30,10 +30,12 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
     public static final ParseField FIELD = new ParseField("field");
     public static final ParseField TEXT = new ParseField("text");
     public static final ParseField MISSING = new ParseField("missing");
+    public static final ParseField MAX_DISTANCE = new ParseField("max_distance");
 
     private final String field;
     private final String text;
     @Nullable @Setter private String missing;
+    @Nullable private Integer maxDistance;
 
     private static final ConstructingObjectParser<LevenshteinDistanceScoreBuilder, Void> PARSER = new ConstructingObjectParser<>(NAME.getPreferredName(),
             params -> new LevenshteinDistanceScoreBuilder((String) params[0], (String) params[1]));
@@ -42,6 +44,7 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
         PARSER.declareString(ConstructingObjectParser.constructorArg(), FIELD);
         PARSER.declareString(ConstructingObjectParser.constructorArg(), TEXT);
         PARSER.declareString((b, s) -> b.missing = s, MISSING);
+        PARSER.declareInt(LevenshteinDistanceScoreBuilder::maxDistance, MAX_DISTANCE);
     }
     public LevenshteinDistanceScoreBuilder(String field, String text) {
         this.field = field;
@@ -53,6 +56,18 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
         field = in.readString();
         text = in.readString();
         missing = in.readOptionalString();
+        maxDistance = in.readOptionalVInt();
+    }
+
+    /**
+     * Give a score of 0 to the docs whose distance to the text exceeds maxDistance.
+     */
+    public LevenshteinDistanceScoreBuilder maxDistance(@Nullable Integer maxDistance) {
+        if (maxDistance != null && maxDistance < 0) {
+            throw new IllegalArgumentException("[" + MAX_DISTANCE.getPreferredName() + "] must be positive");
+        }
+        this.maxDistance = maxDistance;
+        return this;
     }
 
     @Override
@@ -68,6 +83,9 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
         if (missing != null) {
             builder.field(MISSING.getPreferredName(), missing);
         }
+        if (maxDistance != null) {
+            builder.field(MAX_DISTANCE.getPreferredName(), maxDistance);
+        }
         builder.endObject();
     }
 
@@ -76,18 +94,20 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
         out.writeString(field);
         out.writeString(text);
         out.writeOptionalString(missing);
+        out.writeOptionalVInt(maxDistance);
     }
 
     @Override
     protected boolean doEquals(LevenshteinDistanceScoreBuilder other) {
         return Objects.equals(field, other.field)
             && Objects.equals(text, other.text)
-            && Objects.equals(missing, other.missing);
+            && Objects.equals(missing, other.missing)
+            && Objects.equals(maxDistance, other.maxDistance);
     }
 
     @Override
     protected int doHashCode() {
-        return Objects.hash(field, text, missing);
+        return Objects.hash(field, text, missing, maxDistance);
     }
 
     @Override
@@ -97,7 +117,7 @@ public class LevenshteinDistanceScoreBuilder extends ScoreFunctionBuilder<Levens
         if (fieldType == null) {
             throw new QueryShardException(context, "Unable to load field type for field {}", field);
         }
-        return new LevenshteinDistanceScore(context.lookup(), fieldType, text, missing);
+        return new LevenshteinDistanceScore(context.lookup(), fieldType, text, missing, maxDistance);
     }
 
     public static LevenshteinDistanceScoreBuilder fromXContent(XContentParser parser) throws IOException, ParsingException {
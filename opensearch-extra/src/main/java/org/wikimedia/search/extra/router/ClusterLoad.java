@@ -0,0 +1,225 @@
+package org.wikimedia.search.extra.router;
+
+import static java.util.stream.Collectors.averagingLong;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.opensearch.client.Client;
+import org.opensearch.common.lifecycle.AbstractLifecycleComponent;
+import org.opensearch.common.settings.Setting;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.core.action.ActionListener;
+import org.opensearch.threadpool.ThreadPool;
+import org.wikimedia.search.extra.latency.LatencyStatsAction;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodeResponse;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodesRequest;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodesResponse;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LoadDetails;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.StatDetails;
+import org.wikimedia.search.extra.latency.SearchLatencyProbe.LatencyStat;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Cluster load as seen by the degraded_router when evaluating conditions
+ * on the coordinating node.
+ *
+ * The load reported by the data nodes is periodically collected with the
+ * latency stats action and summarized by averaging the nodes, the same way
+ * the action averages latencies across the cluster.
+ */
+public class ClusterLoad extends AbstractLifecycleComponent {
+    public static final Setting<Boolean> ENABLED = Setting.boolSetting("extra.cluster_load.enabled",
+            false, Setting.Property.NodeScope);
+    public static final Setting<TimeValue> REFRESH_INTERVAL = Setting.timeSetting("extra.cluster_load.refresh_interval",
+            TimeValue.timeValueSeconds(5), TimeValue.timeValueSeconds(1), Setting.Property.NodeScope);
+    private static final Logger LOGGER = LogManager.getLogger(ClusterLoad.class);
+    private static final String DATA_NODES = "data:true";
+    // A summary is not used anymore when this many refreshes in a row failed.
+    private static final int MAX_MISSED_REFRESHES = 3;
+
+    private final Supplier<Client> clientSupplier;
+    private final Supplier<ThreadPool> threadPoolSupplier;
+    private final boolean enabled;
+    private final TimeValue refreshInterval;
+    private final LongSupplier nanoClock;
+    private final Latches latches = new Latches();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    @Nullable private volatile Summary summary;
+    @Nullable private ThreadPool.Cancellable cancelRefresh;
+
+    public ClusterLoad(Supplier<Client> clientSupplier, Supplier<ThreadPool> threadPoolSupplier, Settings settings) {
+        this(clientSupplier, threadPoolSupplier, settings, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    ClusterLoad(Supplier<Client> clientSupplier, Supplier<ThreadPool> threadPoolSupplier, Settings settings, LongSupplier nanoClock) {
+        this.clientSupplier = Objects.requireNonNull(clientSupplier);
+        this.threadPoolSupplier = Objects.requireNonNull(threadPoolSupplier);
+        this.enabled = ENABLED.get(settings);
+        this.refreshInterval = REFRESH_INTERVAL.get(settings);
+        this.nanoClock = Objects.requireNonNull(nanoClock);
+    }
+
+    @Override
+    protected void doStart() {
+        if (enabled && cancelRefresh == null) {
+            cancelRefresh = threadPoolSupplier.get().scheduleWithFixedDelay(this::refresh, refreshInterval, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        if (cancelRefresh != null) {
+            cancelRefresh.cancel();
+            cancelRefresh = null;
+        }
+    }
+
+    @Override
+    protected void doClose() {
+    }
+
+    /**
+     * Collect the load of the data nodes. Skipped while the previous
+     * collection is still waiting on some nodes.
+     */
+    @VisibleForTesting
+    void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        LatencyStatsNodesRequest request = new LatencyStatsNodesRequest(DATA_NODES);
+        request.timeout(refreshInterval);
+        try {
+            clientSupplier.get().execute(LatencyStatsAction.INSTANCE, request, ActionListener.runAfter(
+                    ActionListener.wrap(this::update, e -> LOGGER.warn("Failed to collect the cluster load", e)),
+                    () -> refreshing.set(false)));
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            throw e;
+        }
+    }
+
+    @VisibleForTesting
+    void update(LatencyStatsNodesResponse response) {
+        if (response.getNodes().isEmpty()) {
+            // Keep the previous summary until it expires.
+            return;
+        }
+        summary = new Summary(response, nanoClock.getAsLong());
+    }
+
+    /**
+     * The last summary of the cluster load, null when it is not known or too old.
+     */
+    @Nullable
+    LoadSource summary() {
+        Summary current = summary;
+        if (current == null || nanoClock.getAsLong() - current.timestamp > MAX_MISSED_REFRESHES * refreshInterval.nanos()) {
+            return null;
+        }
+        return current;
+    }
+
+    Latches latches() {
+        return latches;
+    }
+
+    private static final class Summary implements LoadSource {
+        private final long timestamp;
+        private final long cpuPercent;
+        private final long loadAverage;
+        private final long searchQueue;
+        private final long searchActive;
+        private final long searchRejectedDelta;
+        private final Map<String, Long> latencyEwma;
+        // bucket -> percentile -> millis
+        private final Map<String, NavigableMap<Double, Long>> latencies = new HashMap<>();
+
+        Summary(LatencyStatsNodesResponse response, long timestamp) {
+            this.timestamp = timestamp;
+            List<LoadDetails> nodes = response.getNodes().stream()
+                    .map(LatencyStatsNodeResponse::getLoadDetails)
+                    .collect(toList());
+            cpuPercent = average(nodes, LoadDetails::getCpuPercent);
+            loadAverage = average(nodes, LoadDetails::getLoadAverage);
+            searchQueue = average(nodes, LoadDetails::getSearchQueue);
+            searchActive = average(nodes, LoadDetails::getSearchActive);
+            searchRejectedDelta = average(nodes, LoadDetails::getSearchRejectedDelta);
+            latencyEwma = nodes.stream()
+                    .flatMap(n -> n.getLatencyEwmaMillis().entrySet().stream())
+                    .collect(groupingBy(Map.Entry::getKey,
+                            collectingAndThen(averagingLong(Map.Entry::getValue), Math::round)));
+            StatDetails allNodes = response.getAllNodes();
+            if (allNodes != null) {
+                for (LatencyStat stat : allNodes.getLatencies()) {
+                    latencies.computeIfAbsent(stat.getBucket(), b -> new TreeMap<>())
+                            .put(stat.getPercentile(), Math.round(stat.getLatency().millisFrac()));
+                }
+            }
+        }
+
+        private static long average(List<LoadDetails> nodes, ToLongFunction<LoadDetails> stat) {
+            return Math.round(nodes.stream().mapToLong(stat).average().orElse(0D));
+        }
+
+        @Override
+        public long getLatency(String statBucket, double percentile) {
+            NavigableMap<Double, Long> byPercentile = latencies.get(statBucket);
+            if (byPercentile == null) {
+                return 0;
+            }
+            // Nodes only report a few percentiles, use the closest one above.
+            Map.Entry<Double, Long> entry = byPercentile.ceilingEntry(percentile);
+            return (entry != null ? entry : byPercentile.lastEntry()).getValue();
+        }
+
+        @Override
+        public long getLatencyEwma(String statBucket) {
+            return latencyEwma.getOrDefault(statBucket, 0L);
+        }
+
+        @Override
+        public long getCpuPercent() {
+            return cpuPercent;
+        }
+
+        @Override
+        public long get1MinuteLoadAverage() {
+            return loadAverage;
+        }
+
+        @Override
+        public long getSearchQueueSize() {
+            return searchQueue;
+        }
+
+        @Override
+        public long getSearchActiveThreads() {
+            return searchActive;
+        }
+
+        @Override
+        public long getSearchRejectedDelta() {
+            return searchRejectedDelta;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package org.wikimedia.search.extra.router;
 
+import static java.util.Collections.emptyList;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
 
+import org.opensearch.common.Randomness;
+import org.opensearch.common.hash.MurmurHash3;
 import org.opensearch.core.ParseField;
 import org.opensearch.core.common.io.stream.StreamInput;
 import org.opensearch.core.common.io.stream.StreamOutput;
 import org.opensearch.core.common.io.stream.Writeable;
 import org.opensearch.core.xcontent.ObjectParser;
+import org.opensearch.core.xcontent.ToXContentFragment;
+import org.opensearch.core.xcontent.ToXContentObject;
 import org.opensearch.core.xcontent.XContentBuilder;
 import org.opensearch.core.xcontent.XContentParser;
 import org.opensearch.index.query.QueryBuilder;
@@ -37,33 +48,72 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
     private static final ParseField TYPE = new ParseField("type");
     private static final ParseField BUCKET = new ParseField("bucket");
     private static final ParseField PERCENTILE = new ParseField("percentile");
+    private static final ParseField HYSTERESIS = new ParseField("hysteresis");
+    private static final ParseField RAMP_TO = new ParseField("ramp_to");
+    private static final ParseField SEED = new ParseField("seed");
+    private static final ParseField SCOPE = new ParseField("scope");
+    private static final ParseField CLAUSES = new ParseField("clauses");
+    private static final ParseField WEIGHTS = new ParseField("weights");
+    private static final ParseField WEIGHT = new ParseField("weight");
 
     private static final ObjectParser<DegradedRouterQueryBuilder, Void> PARSER;
     private static final ObjectParser<DegradedConditionParserState, Void> COND_PARSER;
+    private static final ObjectParser<LoadClauseParserState, Void> CLAUSE_PARSER;
+    private static final ObjectParser<WeightedMetricParserState, Void> WEIGHT_PARSER;
 
     static {
+        CLAUSE_PARSER = new ObjectParser<>("clause", LoadClauseParserState::new);
+        declareMetricFields(CLAUSE_PARSER, s -> s.metric);
+        for (ConditionDefinition def : ConditionDefinition.values()) {
+            CLAUSE_PARSER.declareInt((s, value) -> s.addPredicate(def, value), def.parseField);
+        }
+
+        WEIGHT_PARSER = new ObjectParser<>("weight", WeightedMetricParserState::new);
+        declareMetricFields(WEIGHT_PARSER, s -> s.metric);
+        WEIGHT_PARSER.declareDouble(WeightedMetricParserState::weight, WEIGHT);
+
         COND_PARSER = new ObjectParser<>("condition", DegradedConditionParserState::new);
-        COND_PARSER.declareString((cps, value) -> cps.type(DegradedConditionType.valueOf(value)), TYPE);
-        COND_PARSER.declareString(DegradedConditionParserState::bucket, BUCKET);
-        COND_PARSER.declareDouble(DegradedConditionParserState::percentile, PERCENTILE);
+        declareMetricFields(COND_PARSER, s -> s.metric);
+        COND_PARSER.declareInt(DegradedConditionParserState::hysteresis, HYSTERESIS);
+        COND_PARSER.declareInt(DegradedConditionParserState::rampTo, RAMP_TO);
         declareConditionFields(COND_PARSER);
 
         PARSER = new ObjectParser<>(NAME.getPreferredName(), DegradedRouterQueryBuilder::new);
         declareStandardFields(PARSER);
+        PARSER.declareField(DegradedRouterQueryBuilder::seed, DegradedRouterQueryBuilder::parseSeed,
+                SEED, ObjectParser.ValueType.VALUE);
+        PARSER.declareString((builder, value) -> builder.scope(LoadScope.valueOf(value)), SCOPE);
         declareRouterFields(PARSER, (p, pc) -> parseCondition(COND_PARSER, p));
     }
 
     // This intentionally is not considered in doEquals or doHashCode, as
     // it's not part of the definition of the qb but a helper service.
     @Nullable private SystemLoad systemLoad;
+    @Nullable private ClusterLoad clusterLoad;
+
+    // Seeds the random draw of ramp_to conditions, so that all shards
+    // take the same decision for a given request.
+    @Nullable private Long seed;
+
+    private LoadScope scope = LoadScope.node;
 
     DegradedRouterQueryBuilder() {
         super();
     }
 
-    public DegradedRouterQueryBuilder(StreamInput in, SystemLoad systemLoad) throws IOException {
+    public DegradedRouterQueryBuilder(StreamInput in, SystemLoad systemLoad, ClusterLoad clusterLoad) throws IOException {
         super(in, DegradedCondition::new);
+        this.seed = in.readOptionalLong();
+        this.scope = in.readEnum(LoadScope.class);
         this.systemLoad = systemLoad;
+        this.clusterLoad = clusterLoad;
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        super.doWriteTo(out);
+        out.writeOptionalLong(seed);
+        out.writeEnum(scope);
     }
 
     @Override
@@ -72,10 +122,11 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
     }
 
     public static DegradedRouterQueryBuilder fromXContent(
-            XContentParser parser, SystemLoad systemLoad
+            XContentParser parser, SystemLoad systemLoad, ClusterLoad clusterLoad
     ) throws IOException {
         DegradedRouterQueryBuilder builder = AbstractRouterQueryBuilder.fromXContent(PARSER, parser);
         builder.systemLoad = systemLoad;
+        builder.clusterLoad = clusterLoad;
         return builder;
     }
 
@@ -85,47 +136,248 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
         // that the results of this rewrite are not cacheable.
         context.nowInMillis();
         if (context.convertToShardContext() == null) {
+            LoadSource cluster = scope == LoadScope.cluster && clusterLoad != null ? clusterLoad.summary() : null;
+            if (cluster != null) {
+                // Pick the branch before the request is sent to the shards,
+                // every shard then runs the same query.
+                LoadSnapshot snapshot = new LoadSnapshot(cluster, clusterLoad.latches());
+                return super.doRewrite(condition -> condition.test(snapshot, draw()));
+            }
             // We want to rewrite on the shard not the coordinating node.
+            // But when the request did not provide a seed pick one here
+            // so that every shard of this request draws the same number.
+            if (seed == null && conditionStream().anyMatch(c -> c.rampTo() != null)) {
+                return copyWithSeed(Randomness.get().nextLong());
+            }
             return this;
         }
-        return super.doRewrite(condition -> condition.test(systemLoad));
+        double draw = draw();
+        LoadSnapshot snapshot = new LoadSnapshot(systemLoad);
+        return super.doRewrite(condition -> condition.test(snapshot, draw));
+    }
+
+    private double draw() {
+        return seed != null ? draw(seed) : Randomness.get().nextDouble();
+    }
+
+    private DegradedRouterQueryBuilder copyWithSeed(long seed) {
+        DegradedRouterQueryBuilder copy = new DegradedRouterQueryBuilder();
+        conditionStream().forEach(copy::condition);
+        copy.fallback(fallback());
+        copy.systemLoad = systemLoad;
+        copy.clusterLoad = clusterLoad;
+        copy.seed = seed;
+        copy.scope = scope;
+        return copy;
+    }
+
+    /**
+     * Uniformly distributed number in [0, 1) derived from the seed.
+     */
+    @VisibleForTesting
+    static double draw(long seed) {
+        return (MurmurHash3.murmur64(seed) >>> 11) * 0x1.0p-53;
+    }
+
+    private static Long parseSeed(XContentParser parser) throws IOException {
+        if (parser.currentToken() == XContentParser.Token.VALUE_NUMBER) {
+            return parser.longValue();
+        }
+        // Most likely a request id, hash it to a number.
+        byte[] bytes = parser.text().getBytes(StandardCharsets.UTF_8);
+        return MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128()).h1;
+    }
+
+    @Override
+    protected void addXContent(XContentBuilder builder, Params params) throws IOException {
+        if (seed != null) {
+            builder.field(SEED.getPreferredName(), seed);
+        }
+        if (scope != LoadScope.node) {
+            builder.field(SCOPE.getPreferredName(), scope);
+        }
+    }
+
+    @Override
+    protected boolean doEquals(DegradedRouterQueryBuilder other) {
+        return super.doEquals(other) && Objects.equals(seed, other.seed) && scope == other.scope;
+    }
+
+    @Override
+    protected int doHashCode() {
+        return Objects.hash(super.doHashCode(), seed, scope);
+    }
+
+    /**
+     * Where the load tested by the conditions comes from.
+     */
+    enum LoadScope {
+        // The node holding the shard, evaluated on each shard.
+        node,
+        // The summary of the cluster load, evaluated once on the coordinating node.
+        cluster
     }
 
     @EqualsAndHashCode(callSuper = true)
     @Getter
     static class DegradedCondition extends AbstractRouterQueryBuilder.Condition {
-        private final String bucket;
-        private final Double percentile;
-        private final DegradedConditionType type;
+        private final LoadMetric metric;
+        private final Integer hysteresis;
+        private final Integer rampTo;
+        // Identifies the condition, regardless of its query, when tracking hysteresis.
+        @EqualsAndHashCode.Exclude
+        private final LatchKey latchKey;
 
         @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
         DegradedCondition(StreamInput in) throws IOException {
             super(in);
+            metric = new LoadMetric(in);
+            hysteresis = in.readOptionalVInt();
+            rampTo = in.readOptionalInt();
+            latchKey = new LatchKey(this);
+        }
+
+        DegradedCondition(ConditionDefinition definition, DegradedConditionType type, String bucket, Double percentile,
+                          Integer hysteresis, Integer rampTo, int value, QueryBuilder query) {
+            this(definition, new LoadMetric(type, bucket, percentile), hysteresis, rampTo, value, query);
+        }
+
+        DegradedCondition(ConditionDefinition definition, LoadMetric metric,
+                          Integer hysteresis, Integer rampTo, int value, QueryBuilder query) {
+            super(definition, value, query);
+            this.metric = Objects.requireNonNull(metric);
+            this.hysteresis = hysteresis;
+            this.rampTo = rampTo;
+            this.latchKey = new LatchKey(this);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            metric.writeTo(out);
+            out.writeOptionalVInt(hysteresis);
+            out.writeOptionalInt(rampTo);
+        }
+
+        DegradedConditionType type() {
+            return metric.type();
+        }
+
+        @Nullable
+        String bucket() {
+            return metric.bucket();
+        }
+
+        @Nullable
+        Double percentile() {
+            return metric.percentile();
+        }
+
+        /**
+         * Test the condition against a fresh view of the system load.
+         */
+        public boolean test(SystemLoad stats, double draw) {
+            return test(new LoadSnapshot(stats), draw);
+        }
+
+        /**
+         * Test the condition.
+         * @param draw random number in [0, 1) shared by all the conditions of the request,
+         *             only used by conditions with a ramp
+         */
+        public boolean test(LoadSnapshot snapshot, double draw) {
+            long value = snapshot.read(metric);
+            if (rampTo != null) {
+                // The probability of meeting the condition grows linearly from
+                // 0 at the threshold to 1 at the end of the ramp, this avoids
+                // moving all the traffic at once to the cheaper branch.
+                return test(value) && draw < (double) Math.abs(value - value()) / Math.abs((long) rampTo - value());
+            }
+            if (hysteresis == null) {
+                return test(value);
+            }
+            // Once triggered the condition is only released when the metric moves back
+            // past the threshold by more than the hysteresis, so that the router does not
+            // flap between branches when the metric hovers around the threshold.
+            Latches latches = snapshot.latches();
+            boolean triggered = latches.isLatched(latchKey)
+                    ? definition().test(value, releaseValue())
+                    : test(value);
+            latches.latch(latchKey, triggered);
+            return triggered;
+        }
+
+        private long releaseValue() {
+            switch (definition()) {
+                case gt:
+                case gte:
+                    return (long) value() - hysteresis;
+                case lt:
+                case lte:
+                    return (long) value() + hysteresis;
+                default:
+                    return value();
+            }
+        }
+
+        void addXContent(XContentBuilder builder, Params params) throws IOException {
+            metric.toXContent(builder, params);
+            if (hysteresis != null) {
+                builder.field(HYSTERESIS.getPreferredName(), hysteresis);
+            }
+            if (rampTo != null) {
+                builder.field(RAMP_TO.getPreferredName(), rampTo);
+            }
+        }
+    }
+
+    /**
+     * The metric a condition is tested against, either read from the system load
+     * or combined from other metrics.
+     */
+    @EqualsAndHashCode
+    @Getter
+    static final class LoadMetric implements Writeable, ToXContentFragment {
+        private final DegradedConditionType type;
+        @Nullable private final String bucket;
+        @Nullable private final Double percentile;
+        // Only set by all and any
+        private final List<LoadClause> clauses;
+        // Only set by score
+        private final List<WeightedMetric> weights;
+
+        LoadMetric(StreamInput in) throws IOException {
             bucket = in.readOptionalString();
             percentile = in.readOptionalDouble();
             type = DegradedConditionType.readFrom(in);
+            clauses = in.readList(LoadClause::new);
+            weights = in.readList(WeightedMetric::new);
         }
 
-        DegradedCondition(ConditionDefinition definition, DegradedConditionType type, String bucket, Double percentile, int value, QueryBuilder query) {
-            super(definition, value, query);
+        LoadMetric(DegradedConditionType type, @Nullable String bucket, @Nullable Double percentile) {
+            this(type, bucket, percentile, emptyList(), emptyList());
+        }
+
+        LoadMetric(DegradedConditionType type, @Nullable String bucket, @Nullable Double percentile,
+                   List<LoadClause> clauses, List<WeightedMetric> weights) {
+            this.type = Objects.requireNonNull(type);
             this.bucket = bucket;
             this.percentile = percentile;
-            this.type = Objects.requireNonNull(type);
+            this.clauses = Objects.requireNonNull(clauses);
+            this.weights = Objects.requireNonNull(weights);
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
-            super.writeTo(out);
             out.writeOptionalString(bucket);
             out.writeOptionalDouble(percentile);
             type.writeTo(out);
+            out.writeList(clauses);
+            out.writeList(weights);
         }
 
-        public boolean test(SystemLoad stats) {
-            return test(type.extract(bucket, percentile, stats));
-        }
-
-        void addXContent(XContentBuilder builder, Params params) throws IOException {
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
             if (bucket != null) {
                 builder.field(BUCKET.getPreferredName(), bucket);
             }
@@ -133,29 +385,208 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
                 builder.field(PERCENTILE.getPreferredName(), percentile);
             }
             builder.field(TYPE.getPreferredName(), type);
+            if (!clauses.isEmpty()) {
+                builder.field(CLAUSES.getPreferredName(), clauses);
+            }
+            if (!weights.isEmpty()) {
+                builder.field(WEIGHTS.getPreferredName(), weights);
+            }
+            return builder;
+        }
+    }
+
+    /**
+     * A metric and a predicate, used by the all and any conditions.
+     */
+    @EqualsAndHashCode
+    @Getter
+    static final class LoadClause implements Writeable, ToXContentObject {
+        private final ConditionDefinition definition;
+        private final int value;
+        private final LoadMetric metric;
+
+        LoadClause(StreamInput in) throws IOException {
+            definition = ConditionDefinition.readFrom(in);
+            value = in.readVInt();
+            metric = new LoadMetric(in);
+        }
+
+        LoadClause(ConditionDefinition definition, int value, LoadMetric metric) {
+            this.definition = Objects.requireNonNull(definition);
+            this.value = value;
+            this.metric = Objects.requireNonNull(metric);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            definition.writeTo(out);
+            out.writeVInt(value);
+            metric.writeTo(out);
+        }
+
+        boolean test(LoadSnapshot snapshot) {
+            return definition.test(snapshot.read(metric), value);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(definition.parseField.getPreferredName(), value);
+            metric.toXContent(builder, params);
+            return builder.endObject();
+        }
+    }
+
+    /**
+     * A weighted metric, used by the score condition.
+     */
+    @EqualsAndHashCode
+    @Getter
+    static final class WeightedMetric implements Writeable, ToXContentObject {
+        private final double weight;
+        private final LoadMetric metric;
+
+        WeightedMetric(StreamInput in) throws IOException {
+            weight = in.readDouble();
+            metric = new LoadMetric(in);
+        }
+
+        WeightedMetric(double weight, LoadMetric metric) {
+            this.weight = weight;
+            this.metric = Objects.requireNonNull(metric);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeDouble(weight);
+            metric.writeTo(out);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(WEIGHT.getPreferredName(), weight);
+            metric.toXContent(builder, params);
+            return builder.endObject();
+        }
+    }
+
+    /**
+     * Values of the metrics as seen by a single rewrite. Each metric is read at most
+     * once from the LoadSource so that all conditions, and all the clauses of composite
+     * conditions, are evaluated against the same values.
+     */
+    static final class LoadSnapshot {
+        private final LoadSource source;
+        private final Latches latches;
+        private final Map<LoadMetric, Long> values = new HashMap<>();
+
+        LoadSnapshot(SystemLoad systemLoad) {
+            this(systemLoad, systemLoad.latches());
+        }
+
+        LoadSnapshot(LoadSource source, Latches latches) {
+            this.source = source;
+            this.latches = latches;
+        }
+
+        LoadSource source() {
+            return source;
+        }
+
+        Latches latches() {
+            return latches;
+        }
+
+        long read(LoadMetric metric) {
+            if (metric.type().isComposite()) {
+                return metric.type().extract(metric, this);
+            }
+            Long value = values.get(metric);
+            if (value == null) {
+                value = metric.type().extract(metric, this);
+                values.put(metric, value);
+            }
+            return value;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class LatchKey {
+        private final ConditionDefinition definition;
+        private final int value;
+        private final LoadMetric metric;
+        private final int hysteresis;
+
+        LatchKey(DegradedCondition condition) {
+            definition = condition.definition();
+            value = condition.value();
+            metric = condition.metric();
+            hysteresis = condition.hysteresis() == null ? 0 : condition.hysteresis();
         }
     }
 
     @FunctionalInterface
     private interface LoadStatSupplier {
-        // It is certainly messy to take in all these extra pieces that only one condition type
-        // needs, but a bigger refactor was decided to be more complex than living with a little
-        // mess.
-        long extract(String bucket, Double percentile, SystemLoad stats);
+        long extract(LoadMetric metric, LoadSnapshot snapshot);
     }
 
     enum DegradedConditionType implements LoadStatSupplier, Writeable {
-        cpu((bucket, percentile, stats) -> stats.getCpuPercent()),
-        load((bucket, percentile, stats) -> stats.get1MinuteLoadAverage()),
-        latency((bucket, percentile, stats) -> stats.getLatency(bucket, percentile)) {
+        cpu((metric, snapshot) -> snapshot.source().getCpuPercent()),
+        load((metric, snapshot) -> snapshot.source().get1MinuteLoadAverage()),
+        latency((metric, snapshot) -> snapshot.source().getLatency(metric.bucket(), metric.percentile())) {
             @Override
-            public void checkValid(@Nullable String bucket, @Nullable Double percentile) {
-                if (bucket == null) {
+            void checkValid(LoadMetric metric) {
+                if (metric.bucket() == null) {
                     throw new IllegalArgumentException("Missing field [bucket] in condition");
                 }
-                if (percentile == null) {
+                if (metric.percentile() == null) {
                     throw new IllegalArgumentException("Missing field [percentile] in condition");
                 }
+                checkNoCompositeFields(metric);
+            }
+        },
+        search_queue((metric, snapshot) -> snapshot.source().getSearchQueueSize()),
+        search_active((metric, snapshot) -> snapshot.source().getSearchActiveThreads()),
+        search_rejected((metric, snapshot) -> snapshot.source().getSearchRejectedDelta()),
+        latency_ewma((metric, snapshot) -> snapshot.source().getLatencyEwma(metric.bucket())) {
+            @Override
+            void checkValid(LoadMetric metric) {
+                if (metric.bucket() == null) {
+                    throw new IllegalArgumentException("Missing field [bucket] in condition");
+                }
+                if (metric.percentile() != null) {
+                    throw new IllegalArgumentException("Extra field [percentile] in condition");
+                }
+                checkNoCompositeFields(metric);
+            }
+        },
+        // Number of clauses that are met
+        all((metric, snapshot) -> metric.clauses().stream().filter(c -> c.test(snapshot)).count()) {
+            @Override
+            void checkValid(LoadMetric metric) {
+                checkValidClauses(metric);
+            }
+        },
+        any((metric, snapshot) -> metric.clauses().stream().filter(c -> c.test(snapshot)).count()) {
+            @Override
+            void checkValid(LoadMetric metric) {
+                checkValidClauses(metric);
+            }
+        },
+        // Weighted sum of the metrics
+        score((metric, snapshot) -> Math.round(metric.weights().stream()
+                .mapToDouble(w -> w.weight() * snapshot.read(w.metric()))
+                .sum())) {
+            @Override
+            void checkValid(LoadMetric metric) {
+                checkNoMetricFields(metric);
+                if (metric.weights().isEmpty()) {
+                    throw new IllegalArgumentException("Missing field [weights] in condition");
+                }
+                if (!metric.clauses().isEmpty()) {
+                    throw new IllegalArgumentException("Extra field [clauses] in condition");
+                }
             }
         };
 
@@ -165,8 +596,15 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
             this.extractor = extractor;
         }
 
-        public long extract(String bucket, Double percentile, SystemLoad stats) {
-            return extractor.extract(bucket, percentile, stats);
+        public long extract(LoadMetric metric, LoadSnapshot snapshot) {
+            return extractor.extract(metric, snapshot);
+        }
+
+        /**
+         * Whether this metric is computed from other metrics.
+         */
+        boolean isComposite() {
+            return this == all || this == any || this == score;
         }
 
         @Override
@@ -182,36 +620,194 @@ public class DegradedRouterQueryBuilder extends AbstractRouterQueryBuilder<Degra
             return values()[ord];
         }
 
-        void checkValid(String bucket, Double percentile) {
-            if (bucket != null) {
+        void checkValid(LoadMetric metric) {
+            checkNoMetricFields(metric);
+            checkNoCompositeFields(metric);
+        }
+
+        private static void checkNoMetricFields(LoadMetric metric) {
+            if (metric.bucket() != null) {
                 throw new IllegalArgumentException("Extra field [bucket] in condition");
             }
-            if (percentile != null) {
+            if (metric.percentile() != null) {
                 throw new IllegalArgumentException("Extra field [percentile] in condition");
             }
         }
 
+        private static void checkNoCompositeFields(LoadMetric metric) {
+            if (!metric.clauses().isEmpty()) {
+                throw new IllegalArgumentException("Extra field [clauses] in condition");
+            }
+            if (!metric.weights().isEmpty()) {
+                throw new IllegalArgumentException("Extra field [weights] in condition");
+            }
+        }
+
+        private static void checkValidClauses(LoadMetric metric) {
+            checkNoMetricFields(metric);
+            if (metric.clauses().isEmpty()) {
+                throw new IllegalArgumentException("Missing field [clauses] in condition");
+            }
+            if (!metric.weights().isEmpty()) {
+                throw new IllegalArgumentException("Extra field [weights] in condition");
+            }
+        }
+
+        /**
+         * Predicate applied when none is provided.
+         * all is met when every clause is met, any when at least one is.
+         */
+        @Nullable
+        LoadClause defaultPredicate(LoadMetric metric) {
+            if (this == all) {
+                return new LoadClause(ConditionDefinition.gte, metric.clauses().size(), metric);
+            } else if (this == any) {
+                return new LoadClause(ConditionDefinition.gte, 1, metric);
+            }
+            return null;
+        }
     }
 
+    /**
+     * Parser state for the fields describing a metric.
+     */
     @Setter
-    private static final class DegradedConditionParserState extends AbstractConditionParserState<DegradedCondition> {
+    private static final class LoadMetricParserState {
         @Nullable private DegradedConditionType type;
         @Nullable private String bucket;
         @Nullable private Double percentile;
+        private List<LoadClause> clauses = emptyList();
+        private List<WeightedMetric> weights = emptyList();
+
+        LoadMetric metric() {
+            if (type == null) {
+                throw new IllegalArgumentException("Missing field [type] in condition");
+            }
+            LoadMetric metric = new LoadMetric(type, bucket, percentile, clauses, weights);
+            type.checkValid(metric);
+            return metric;
+        }
+    }
+
+    /**
+     * Parser state for a clause of all and any conditions.
+     */
+    private static final class LoadClauseParserState {
+        private final LoadMetricParserState metric = new LoadMetricParserState();
+        @Nullable private ConditionDefinition definition;
+        private int value;
+
+        void addPredicate(ConditionDefinition def, int value) {
+            if (this.definition != null) {
+                throw new IllegalArgumentException("Cannot set extra predicate [" + def.parseField + "] " +
+                        "on clause: [" + this.definition.parseField + "] already set");
+            }
+            this.definition = def;
+            this.value = value;
+        }
+
+        LoadClause clause() {
+            LoadMetric m = metric.metric();
+            if (definition == null) {
+                LoadClause clause = m.type().defaultPredicate(m);
+                if (clause == null) {
+                    throw new IllegalArgumentException("Missing condition predicate in clause");
+                }
+                return clause;
+            }
+            return new LoadClause(definition, value, m);
+        }
+    }
+
+    /**
+     * Parser state for a weight of score conditions.
+     */
+    @Setter
+    private static final class WeightedMetricParserState {
+        private final LoadMetricParserState metric = new LoadMetricParserState();
+        @Nullable private Double weight;
+
+        WeightedMetric weightedMetric() {
+            if (weight == null) {
+                throw new IllegalArgumentException("Missing field [weight] in condition");
+            }
+            return new WeightedMetric(weight, metric.metric());
+        }
+    }
+
+    @Setter
+    private static final class DegradedConditionParserState extends AbstractConditionParserState<DegradedCondition> {
+        private final LoadMetricParserState metric = new LoadMetricParserState();
+        @Nullable private Integer hysteresis;
+        @Nullable private Integer rampTo;
+        @Nullable private LoadMetric parsedMetric;
 
         DegradedCondition condition() {
-            return new DegradedCondition(definition, type, bucket, percentile, value, query);
+            return new DegradedCondition(definition, parsedMetric, hysteresis, rampTo, value, query);
         }
 
         @Override
         void checkValid() {
+            parsedMetric = metric.metric();
+            if (definition == null) {
+                LoadClause clause = parsedMetric.type().defaultPredicate(parsedMetric);
+                if (clause != null) {
+                    addPredicate(clause.definition(), clause.value());
+                }
+            }
             super.checkValid();
-            type.checkValid(bucket, percentile);
+            if (hysteresis != null) {
+                if (hysteresis < 0) {
+                    throw new IllegalArgumentException("[hysteresis] must be non-negative");
+                }
+                if (definition == ConditionDefinition.eq || definition == ConditionDefinition.neq) {
+                    throw new IllegalArgumentException("[hysteresis] is not supported with [" + definition + "]");
+                }
+            }
+            if (rampTo != null) {
+                checkValidRamp();
+            }
+        }
+
+        private void checkValidRamp() {
+            if (hysteresis != null) {
+                throw new IllegalArgumentException("[ramp_to] cannot be used with [hysteresis]");
+            }
+            if (definition == ConditionDefinition.gt || definition == ConditionDefinition.gte) {
+                if (rampTo <= value) {
+                    throw new IllegalArgumentException("[ramp_to] must be greater than [" + definition + "]");
+                }
+            } else if (definition == ConditionDefinition.lt || definition == ConditionDefinition.lte) {
+                if (rampTo >= value) {
+                    throw new IllegalArgumentException("[ramp_to] must be lower than [" + definition + "]");
+                }
+            } else {
+                throw new IllegalArgumentException("[ramp_to] is not supported with [" + definition + "]");
+            }
         }
     }
 
+    /**
+     * Declare the fields describing a metric.
+     */
+    private static <S> void declareMetricFields(ObjectParser<S, Void> parser, Function<S, LoadMetricParserState> state) {
+        parser.declareString((s, value) -> state.apply(s).type(DegradedConditionType.valueOf(value)), TYPE);
+        parser.declareString((s, value) -> state.apply(s).bucket(value), BUCKET);
+        parser.declareDouble((s, value) -> state.apply(s).percentile(value), PERCENTILE);
+        parser.declareObjectArray((s, value) -> state.apply(s).clauses(value),
+                (p, c) -> CLAUSE_PARSER.parse(p, null).clause(), CLAUSES);
+        parser.declareObjectArray((s, value) -> state.apply(s).weights(value),
+                (p, c) -> WEIGHT_PARSER.parse(p, null).weightedMetric(), WEIGHTS);
+    }
+
     @VisibleForTesting
     void condition(ConditionDefinition def, DegradedConditionType type, String bucket, Double percentile, int value, QueryBuilder query) {
-        condition(new DegradedCondition(def, type, bucket, percentile, value, query));
+        condition(def, type, bucket, percentile, null, null, value, query);
+    }
+
+    @VisibleForTesting
+    void condition(ConditionDefinition def, DegradedConditionType type, String bucket, Double percentile,
+                   Integer hysteresis, Integer rampTo, int value, QueryBuilder query) {
+        condition(new DegradedCondition(def, type, bucket, percentile, hysteresis, rampTo, value, query));
     }
 }
@@ -0,0 +1,32 @@
+package org.wikimedia.search.extra.router;
+
+import org.opensearch.common.cache.Cache;
+import org.opensearch.common.cache.CacheBuilder;
+
+/**
+ * Outcome of the last evaluation of conditions using hysteresis.
+ */
+final class Latches {
+    // Conditions are provided by queries, bound the number of latches we keep around.
+    private static final long MAX_LATCHES = 1000;
+
+    private final Cache<Object, Boolean> latches = CacheBuilder.<Object, Boolean>builder()
+            .setMaximumWeight(MAX_LATCHES)
+            .build();
+
+    /**
+     * Whether the condition identified by key was triggered by its last evaluation.
+     */
+    boolean isLatched(Object key) {
+        return Boolean.TRUE.equals(latches.get(key));
+    }
+
+    /**
+     * Record the outcome of the last evaluation of the condition identified by key.
+     */
+    void latch(Object key, boolean triggered) {
+        if (triggered != isLatched(key)) {
+            latches.put(key, triggered);
+        }
+    }
+}
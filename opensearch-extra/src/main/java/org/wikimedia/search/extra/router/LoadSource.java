@@ -0,0 +1,24 @@
+package org.wikimedia.search.extra.router;
+
+/**
+ * Source of the metrics tested by the degraded_router, either the
+ * local node or a summary of the cluster.
+ */
+interface LoadSource {
+    long getLatency(String statBucket, double percentile);
+
+    long getLatencyEwma(String statBucket);
+
+    long getCpuPercent();
+
+    long get1MinuteLoadAverage();
+
+    long getSearchQueueSize();
+
+    long getSearchActiveThreads();
+
+    /**
+     * Number of tasks rejected by the search thread pool between the last two samples.
+     */
+    long getSearchRejectedDelta();
+}
@@ -1,28 +1,168 @@
 package org.wikimedia.search.extra.router;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
+
+import org.opensearch.common.lifecycle.AbstractLifecycleComponent;
+import org.opensearch.common.settings.Setting;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
 import org.opensearch.monitor.os.OsService;
+import org.opensearch.monitor.os.OsStats;
+import org.opensearch.threadpool.ThreadPool;
+import org.opensearch.threadpool.ThreadPoolStats;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LoadDetails;
 import org.wikimedia.search.extra.latency.SearchLatencyProbe;
 
-public class SystemLoad {
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Node load as seen by the degraded_router.
+ *
+ * OS and thread pool stats are sampled in the background and published as an
+ * immutable snapshot, evaluating a condition never reaches out to the OS.
+ */
+public class SystemLoad extends AbstractLifecycleComponent implements LoadSource {
+    public static final Setting<TimeValue> SAMPLE_INTERVAL = Setting.timeSetting("extra.system_load.sample_interval",
+            TimeValue.timeValueSeconds(1), TimeValue.timeValueMillis(100), Setting.Property.NodeScope);
+
     private final SearchLatencyProbe latencyProbe;
     private final OsService osService;
+    private final Supplier<ThreadPool> threadPoolSupplier;
+    private final TimeValue sampleInterval;
+    private final Latches latches = new Latches();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    @Nullable private ThreadPool.Cancellable cancelSampling;
 
-    public SystemLoad(SearchLatencyProbe latencyProbe, OsService osService) {
+    public SystemLoad(SearchLatencyProbe latencyProbe, OsService osService, Supplier<ThreadPool> threadPoolSupplier, Settings settings) {
         this.latencyProbe = Objects.requireNonNull(latencyProbe);
         this.osService = Objects.requireNonNull(osService);
+        this.threadPoolSupplier = Objects.requireNonNull(threadPoolSupplier);
+        this.sampleInterval = SAMPLE_INTERVAL.get(settings);
+    }
+
+    @Override
+    protected void doStart() {
+        if (cancelSampling == null) {
+            sample();
+            cancelSampling = threadPoolSupplier.get().scheduleWithFixedDelay(this::sample, sampleInterval, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        if (cancelSampling != null) {
+            cancelSampling.cancel();
+            cancelSampling = null;
+        }
     }
 
-    long getLatency(String statBucket, double percentile) {
+    @Override
+    protected void doClose() {
+    }
+
+    /**
+     * Refresh the snapshot. Only called from the sampling task so that
+     * successive snapshots are never taken concurrently.
+     */
+    @VisibleForTesting
+    void sample() {
+        Snapshot previous = snapshot;
+        OsStats.Cpu cpu = osService.stats().getCpu();
+        double[] loadAverage = cpu.getLoadAverage();
+        ThreadPoolStats.Stats search = searchThreadPoolStats();
+        long rejected = search == null ? 0 : search.getRejected();
+        snapshot = new Snapshot(
+                cpu.getPercent(),
+                loadAverage == null ? 0 : Math.round(loadAverage[0]),
+                search == null ? 0 : search.getQueue(),
+                search == null ? 0 : search.getActive(),
+                rejected,
+                previous == Snapshot.EMPTY ? 0 : rejected - previous.searchRejected);
+    }
+
+    @Override
+    public long getLatency(String statBucket, double percentile) {
         return latencyProbe.getMillisAtPercentile(statBucket, percentile);
     }
 
-    long getCpuPercent() {
-        return osService.stats().getCpu().getPercent();
+    @Override
+    public long getLatencyEwma(String statBucket) {
+        return latencyProbe.getEwmaMillis(statBucket);
+    }
+
+    @Override
+    public long getCpuPercent() {
+        return snapshot.cpuPercent;
+    }
+
+    @Override
+    public long get1MinuteLoadAverage() {
+        return snapshot.loadAverage;
     }
 
-    long get1MinuteLoadAverage() {
-        return Math.round(osService.stats().getCpu().getLoadAverage()[0]);
+    @Override
+    public long getSearchQueueSize() {
+        return snapshot.searchQueue;
+    }
+
+    @Override
+    public long getSearchActiveThreads() {
+        return snapshot.searchActive;
+    }
+
+    @Override
+    public long getSearchRejectedDelta() {
+        return snapshot.searchRejectedDelta;
+    }
+
+    Latches latches() {
+        return latches;
+    }
+
+    /**
+     * Load of this node as reported to the other nodes of the cluster.
+     */
+    public LoadDetails loadDetails() {
+        Snapshot current = snapshot;
+        return new LoadDetails(current.cpuPercent, current.loadAverage, current.searchQueue,
+                current.searchActive, current.searchRejectedDelta, latencyProbe.getEwmaMillisPerBucket());
+    }
+
+    @Nullable
+    private ThreadPoolStats.Stats searchThreadPoolStats() {
+        ThreadPool threadPool = threadPoolSupplier.get();
+        if (threadPool == null) {
+            return null;
+        }
+        for (ThreadPoolStats.Stats stats : threadPool.stats()) {
+            if (ThreadPool.Names.SEARCH.equals(stats.getName())) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+
+        private final long cpuPercent;
+        private final long loadAverage;
+        private final long searchQueue;
+        private final long searchActive;
+        private final long searchRejected;
+        private final long searchRejectedDelta;
+
+        Snapshot(long cpuPercent, long loadAverage, long searchQueue, long searchActive,
+                 long searchRejected, long searchRejectedDelta) {
+            this.cpuPercent = cpuPercent;
+            this.loadAverage = loadAverage;
+            this.searchQueue = searchQueue;
+            this.searchActive = searchActive;
+            this.searchRejected = searchRejected;
+            this.searchRejectedDelta = searchRejectedDelta;
+        }
     }
 }
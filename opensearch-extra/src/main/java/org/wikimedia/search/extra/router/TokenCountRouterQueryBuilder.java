@@ -1,6 +1,7 @@
 package org.wikimedia.search.extra.router;
 
 import java.io.IOException;
+import java.util.Locale;
 import java.util.Objects;
 
 import javax.annotation.Nullable;
@@ -8,6 +9,10 @@ import javax.annotation.Nullable;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.opensearch.Version;
+import org.opensearch.common.cache.Cache;
+import org.opensearch.common.cache.CacheBuilder;
+import org.opensearch.common.unit.TimeValue;
 import org.opensearch.core.ParseField;
 import org.opensearch.core.common.ParsingException;
 import org.opensearch.core.common.io.stream.StreamInput;
@@ -20,10 +25,12 @@ import org.opensearch.index.mapper.MapperService;
 import org.opensearch.index.query.QueryBuilder;
 import org.opensearch.index.query.QueryRewriteContext;
 import org.opensearch.index.query.QueryShardContext;
+import org.opensearch.indices.analysis.PreBuiltAnalyzers;
 import org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.Condition;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -40,7 +47,23 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
     private static final ParseField FIELD = new ParseField("field");
     private static final ParseField ANALYZER = new ParseField("analyzer");
     private static final ParseField DISCOUNT_OVERLAPS = new ParseField("discount_overlaps");
+    private static final ParseField ANALYZE_ON_COORDINATOR = new ParseField("analyze_on_coordinator");
     private static final boolean DEFAULT_DISCOUNT_OVERLAPS = true;
+    // Bounds the memory used by the memo to the length of the texts it holds
+    private static final long MAX_MEMO_CHARS = 1_000_000;
+    // Short enough to not hide analyzers reloaded in place for long
+    private static final TimeValue MEMO_TTL = TimeValue.timeValueSeconds(10);
+
+    /**
+     * Counts recently computed on this node, shared by every request it runs. Keyed on the
+     * identity of the analyzer so that the routers of a request, the shards of an index held
+     * by this node and the requests repeating a text within the TTL analyze it only once.
+     */
+    private static final Cache<CountKey, BoundedCount> COUNTS = CacheBuilder.<CountKey, BoundedCount>builder()
+            .setMaximumWeight(MAX_MEMO_CHARS)
+            .weigher((key, count) -> key.text.length())
+            .setExpireAfterWrite(MEMO_TTL)
+            .build();
 
     private static final ObjectParser<TokenCountRouterQueryBuilder, Void> PARSER;
     private static final ObjectParser<ConditionParserState, Void> COND_PARSER;
@@ -54,6 +77,7 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
         PARSER.declareString(TokenCountRouterQueryBuilder::field, FIELD);
         PARSER.declareString(TokenCountRouterQueryBuilder::analyzer, ANALYZER);
         PARSER.declareBoolean(TokenCountRouterQueryBuilder::discountOverlaps, DISCOUNT_OVERLAPS);
+        PARSER.declareBoolean(TokenCountRouterQueryBuilder::analyzeOnCoordinator, ANALYZE_ON_COORDINATOR);
         declareRouterFields(PARSER, (p, pc) -> parseCondition(COND_PARSER, p));
         declareStandardFields(PARSER);
     }
@@ -62,6 +86,11 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
     @Nullable private String analyzer;
     @Nullable private String field;
     private boolean discountOverlaps = DEFAULT_DISCOUNT_OVERLAPS;
+    /**
+     * Route on the coordinating node when the analyzer is a prebuilt one,
+     * only set it when no index searched redefines its name.
+     */
+    private boolean analyzeOnCoordinator;
     @Nullable private String text;
 
     public TokenCountRouterQueryBuilder() {
@@ -73,6 +102,7 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
         analyzer = in.readOptionalString();
         field = in.readOptionalString();
         discountOverlaps = in.readBoolean();
+        analyzeOnCoordinator = in.readBoolean();
         text = in.readString();
     }
 
@@ -82,6 +112,7 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
         out.writeOptionalString(analyzer);
         out.writeOptionalString(field);
         out.writeBoolean(discountOverlaps);
+        out.writeBoolean(analyzeOnCoordinator);
         out.writeString(text);
     }
 
@@ -101,6 +132,9 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
         if (discountOverlaps != DEFAULT_DISCOUNT_OVERLAPS) {
             builder.field(DISCOUNT_OVERLAPS.getPreferredName(), discountOverlaps);
         }
+        if (analyzeOnCoordinator) {
+            builder.field(ANALYZE_ON_COORDINATOR.getPreferredName(), true);
+        }
         if (text != null) {
             builder.field(TEXT.getPreferredName(), text);
         }
@@ -145,27 +179,82 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
         return luceneAnalyzer;
     }
 
+    /**
+     * The analyzer when the query asked to analyze on the coordinating node
+     * and it is a prebuilt one, null otherwise. The index may redefine a
+     * prebuilt name, which is why it must be asked for.
+     */
+    @Nullable
+    private Analyzer resolveIndexInvariantAnalyzer() {
+        if (!analyzeOnCoordinator || analyzer == null) {
+            return null;
+        }
+        for (PreBuiltAnalyzers prebuilt : PreBuiltAnalyzers.values()) {
+            // default is commonly redefined by the index settings
+            if (prebuilt != PreBuiltAnalyzers.DEFAULT && prebuilt.name().toLowerCase(Locale.ROOT).equals(analyzer)) {
+                return prebuilt.getAnalyzer(Version.CURRENT);
+            }
+        }
+        return null;
+    }
+
     @Override
     public QueryBuilder doRewrite(QueryRewriteContext context) throws IOException {
         QueryShardContext shardContext = context.convertToShardContext();
+        final Analyzer luceneAnalyzer;
         if (shardContext != null) {
-            final Analyzer luceneAnalyzer = resolveAnalyzer(shardContext);
-            final int count = countToken(luceneAnalyzer, text, discountOverlaps);
-            return super.doRewrite((c) -> c.test(count));
+            luceneAnalyzer = resolveAnalyzer(shardContext);
+        } else {
+            // When asked to and the analyzer is a prebuilt one the route is
+            // decided on the coordinating node, before reaching the shards.
+            luceneAnalyzer = resolveIndexInvariantAnalyzer();
+            if (luceneAnalyzer == null || text == null) {
+                return this;
+            }
         }
-        return this;
+        final int count = memoizedCountToken(luceneAnalyzer, text, discountOverlaps, countLimit());
+        return super.doRewrite((c) -> c.test(count));
+    }
+
+    /**
+     * Number of tokens past which the outcome of the conditions can't change:
+     * every predicate is constant over the counts greater than its value.
+     */
+    private int countLimit() {
+        int max = conditionStream().mapToInt(Condition::value).max().orElse(0);
+        return max == Integer.MAX_VALUE ? max : max + 1;
+    }
+
+    @VisibleForTesting
+    static int memoizedCountToken(Analyzer analyzer, String text, boolean discountOverlaps, int limit) throws IOException {
+        CountKey key = new CountKey(analyzer, text, discountOverlaps);
+        BoundedCount count = COUNTS.get(key);
+        if (count == null || !count.covers(limit)) {
+            // Concurrent requests may count the same text, that's fine
+            count = new BoundedCount(countToken(analyzer, text, discountOverlaps, limit), limit);
+            COUNTS.put(key, count);
+        }
+        return count.count;
     }
 
     static int countToken(Analyzer analyzer, String text, boolean discountOverlaps) throws IOException {
+        return countToken(analyzer, text, discountOverlaps, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Count the tokens, stopping the analysis once limit is reached.
+     */
+    static int countToken(Analyzer analyzer, String text, boolean discountOverlaps, int limit) throws IOException {
         try (TokenStream ts = analyzer.tokenStream("", text)) {
             ts.reset();
             int count = 0;
             PositionIncrementAttribute posInc = ts.getAttribute(PositionIncrementAttribute.class);
-            while (ts.incrementToken()) {
+            while (count < limit && ts.incrementToken()) {
                 if (!discountOverlaps || posInc.getPositionIncrement() > 0) {
                     count++;
                 }
             }
+            ts.end();
             return count;
         }
     }
@@ -176,12 +265,46 @@ public class TokenCountRouterQueryBuilder extends AbstractRouterQueryBuilder<Con
                 Objects.equals(text, other.text) &&
                 Objects.equals(field, other.field) &&
                 Objects.equals(analyzer, other.analyzer) &&
-                Objects.equals(discountOverlaps, other.discountOverlaps);
+                Objects.equals(discountOverlaps, other.discountOverlaps) &&
+                analyzeOnCoordinator == other.analyzeOnCoordinator;
     }
 
     @Override
     protected int doHashCode() {
-        return Objects.hash(text, field, analyzer, discountOverlaps, super.doHashCode());
+        return Objects.hash(text, field, analyzer, discountOverlaps, analyzeOnCoordinator, super.doHashCode());
+    }
+
+    /**
+     * Analyzers do not implement equals, this relies on their identity.
+     */
+    @EqualsAndHashCode
+    private static final class CountKey {
+        private final Analyzer analyzer;
+        private final String text;
+        private final boolean discountOverlaps;
+
+        CountKey(Analyzer analyzer, String text, boolean discountOverlaps) {
+            this.analyzer = analyzer;
+            this.text = text;
+            this.discountOverlaps = discountOverlaps;
+        }
+    }
+
+    /**
+     * A token count, exact when lower than the limit it was counted with.
+     */
+    private static final class BoundedCount {
+        private final int count;
+        private final int limit;
+
+        BoundedCount(int count, int limit) {
+            this.count = count;
+            this.limit = limit;
+        }
+
+        boolean covers(int limit) {
+            return count < this.limit || limit <= this.limit;
+        }
     }
 
     @VisibleForTesting
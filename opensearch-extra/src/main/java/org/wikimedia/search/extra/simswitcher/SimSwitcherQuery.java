@@ -21,10 +21,13 @@ import static java.util.Objects.requireNonNull;
 import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.similarities.Similarity;
 
@@ -35,6 +38,11 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * by the IndexSearcher by a custom one.
  * Useful to quickly test the impact of given similarity
  * without reindexing the whole index.
+ *
+ * The searcher is never modified, the weights of the sub query are built
+ * with a view of the searcher using the similarity of this query, so
+ * that a query can be shared by concurrent searches. They are still
+ * created by the searcher, so they are profiled like any other query.
  */
 public class SimSwitcherQuery extends Query {
     private final Similarity similarity;
@@ -74,22 +82,21 @@ public class SimSwitcherQuery extends Query {
         return classHash() + Objects.hash(similarity, subQuery);
     }
 
+    @Override
+    public Query rewrite(IndexSearcher searcher) throws IOException {
+        Query rewritten = subQuery.rewrite(searcher);
+        if (rewritten != subQuery) {
+            return new SimSwitcherQuery(similarity, rewritten);
+        }
+        return super.rewrite(searcher);
+    }
+
     @Override
     public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
         if (!scoreMode.needsScores()) {
             return searcher.createWeight(subQuery, scoreMode, boost);
         }
-        final Similarity oldSim = searcher.getSimilarity();
-        try {
-            // XXX: hackish, this only works because a searcher
-            // is created per SearchContext (multiple queries does not share the
-            // same ContextIndexSearcher)
-            // and that setSimilarity is delegated to super not the real IndexSearcher
-            searcher.setSimilarity(similarity);
-            return searcher.createWeight(subQuery, scoreMode, boost);
-        } finally {
-            searcher.setSimilarity(oldSim);
-        }
+        return new SimilarityOverrideSearcher(searcher, similarity).createWeight(subQuery, scoreMode, boost);
     }
 
     /**
@@ -105,4 +112,84 @@ public class SimSwitcherQuery extends Query {
     public Query getSubQuery() {
         return subQuery;
     }
+
+    /**
+     * View of a searcher with another similarity, only used to create weights.
+     * Statistics are still read from the wrapped searcher as it may provide
+     * the stats aggregated over all the shards (dfs_query_then_fetch), and
+     * weights are created by it so that it can profile or cache them.
+     */
+    private static final class SimilarityOverrideSearcher extends IndexSearcher {
+        private final IndexSearcher in;
+
+        SimilarityOverrideSearcher(IndexSearcher in, Similarity similarity) {
+            // Share the reader context so that the term states built here are valid for the wrapped searcher
+            super(in.getTopReaderContext());
+            this.in = in;
+            setSimilarity(similarity);
+            // Weights needing scores are never cached
+            setQueryCache(null);
+        }
+
+        @Override
+        public TermStatistics termStatistics(Term term, int docFreq, long totalTermFreq) throws IOException {
+            return in.termStatistics(term, docFreq, totalTermFreq);
+        }
+
+        @Override
+        public CollectionStatistics collectionStatistics(String field) throws IOException {
+            return in.collectionStatistics(field);
+        }
+
+        @Override
+        public Weight createWeight(Query query, ScoreMode scoreMode, float boost) throws IOException {
+            if (!scoreMode.needsScores()) {
+                return in.createWeight(query, scoreMode, boost);
+            }
+            return in.createWeight(new SimilarityOverrideQuery(query, this), scoreMode, boost);
+        }
+    }
+
+    /**
+     * Creates the weight of a query with the view of the searcher, nested
+     * queries are handed back to the view. Its description in profiles is
+     * the one of the query it wraps.
+     */
+    private static final class SimilarityOverrideQuery extends Query {
+        private final Query query;
+        private final SimilarityOverrideSearcher searcher;
+
+        SimilarityOverrideQuery(Query query, SimilarityOverrideSearcher searcher) {
+            this.query = query;
+            this.searcher = searcher;
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher ignored, ScoreMode scoreMode, float boost) throws IOException {
+            return query.createWeight(searcher, scoreMode, boost);
+        }
+
+        @Override
+        public void visit(QueryVisitor visitor) {
+            query.visit(visitor);
+        }
+
+        @Override
+        public String toString(String field) {
+            return query.toString(field);
+        }
+
+        @Override
+        @SuppressFBWarnings(value = "BC_EQUALS_METHOD_SHOULD_WORK_FOR_ALL_OBJECTS", justification = "handled by sameClassAs")
+        public boolean equals(Object obj) {
+            return sameClassAs(obj) &&
+                    query.equals(((SimilarityOverrideQuery)obj).query) &&
+                    searcher == ((SimilarityOverrideQuery)obj).searcher;
+        }
+
+        @Override
+        public int hashCode() {
+            return classHash() + query.hashCode();
+        }
+    }
 }
@@ -22,6 +22,9 @@ import java.util.Objects;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.similarities.Similarity;
 import org.opensearch.Version;
+import org.opensearch.common.cache.Cache;
+import org.opensearch.common.cache.CacheBuilder;
+import org.opensearch.common.unit.TimeValue;
 import org.opensearch.core.ParseField;
 import org.opensearch.core.common.ParsingException;
 import org.opensearch.common.TriFunction;
@@ -39,7 +42,10 @@ import org.opensearch.index.query.Rewriteable;
 import org.opensearch.index.similarity.SimilarityService;
 import org.opensearch.script.ScriptService;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.EqualsAndHashCode;
 
 /**
  * QueryBuilder for {@link SimSwitcherQuery}.
@@ -50,6 +56,19 @@ public class SimSwitcherQueryBuilder extends AbstractQueryBuilder<SimSwitcherQue
     public static final ParseField QUERY = new ParseField("query");
     public static final ParseField SIM_TYPE = new ParseField("type");
     public static final ParseField PARAMS = new ParseField("params");
+    // A handful of configurations are usually compared at the same time
+    private static final long MAX_SIMILARITIES = 100;
+    private static final TimeValue SIMILARITY_TTL = TimeValue.timeValueHours(1);
+
+    /**
+     * Similarities built on this node. Similarities are immutable and thread safe
+     * so the searches using the same configuration share the same instance
+     * instead of rebuilding it, and its precomputed tables, for every request.
+     */
+    private static final Cache<SimilarityKey, Similarity> SIMILARITIES = CacheBuilder.<SimilarityKey, Similarity>builder()
+            .setMaximumWeight(MAX_SIMILARITIES)
+            .setExpireAfterAccess(SIMILARITY_TTL)
+            .build();
 
     static {
         PARSER = new ObjectParser<>(NAME, SimSwitcherQueryBuilder::new);
@@ -144,14 +163,44 @@ public class SimSwitcherQueryBuilder extends AbstractQueryBuilder<SimSwitcherQue
 
     @Override
     protected Query doToQuery(QueryShardContext context) throws IOException {
-        if (similarityType.equals("scripted")) {
+        return new SimSwitcherQuery(similarity(similarityType, params != null ? params : Settings.EMPTY), subQuery.toQuery(context));
+    }
+
+    /**
+     * The similarity of this type configured with params, built once per node.
+     */
+    @VisibleForTesting
+    static Similarity similarity(String type, Settings params) {
+        if (type.equals("scripted")) {
             // TODO: To support the "scripted" similarity we might find ways to inject the ScriptService here
             throw new IllegalArgumentException("The similarity [scripted] is not supported by simswitcher");
         }
+        SimilarityKey key = new SimilarityKey(type, params);
+        Similarity sim = SIMILARITIES.get(key);
+        if (sim == null) {
+            TriFunction<Settings, Version, ScriptService, Similarity> provider = SimilarityService.BUILT_IN.get(type);
+            if (provider == null) {
+                throw new IllegalArgumentException("Unknown similarity type [" + type + "]");
+            }
+            // Concurrent requests may build the same similarity, that's fine
+            sim = provider.apply(params, Version.CURRENT, null);
+            SIMILARITIES.put(key, sim);
+        }
+        return sim;
+    }
 
-        TriFunction<Settings, Version, ScriptService, Similarity> provider = SimilarityService.BUILT_IN.get(similarityType);
-        Similarity sim = provider.apply(params != null ? params : Settings.EMPTY, Version.CURRENT, null);
-        return new SimSwitcherQuery(sim, subQuery.toQuery(context));
+    /**
+     * Settings store all their values as strings, equal settings build equal similarities.
+     */
+    @EqualsAndHashCode
+    private static final class SimilarityKey {
+        private final String type;
+        private final Settings params;
+
+        SimilarityKey(String type, Settings params) {
+            this.type = type;
+            this.params = params;
+        }
     }
 
     @Override
@@ -1,8 +1,12 @@
 package org.wikimedia.search.extra.superdetectnoop;
 
+import java.math.BigDecimal;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -18,6 +22,36 @@ public interface ChangeHandler<T> {
     /** Handle a proposed change. */
     Result handle(@Nullable T oldValue, @Nullable T newValue);
 
+    /**
+     * Whether this handler may noop the entire document. These handlers are
+     * checked against the refreshed document before sending the writes held
+     * by the super_noop_bulk action, when enabled.
+     */
+    default boolean mayNoopDocument() {
+        return false;
+    }
+
+    /**
+     * Can two updates of this field, sent one after the other, be merged
+     * into a single update? By default they can unless the earlier one
+     * removes the field, removing and then setting it again can't be
+     * expressed as a single update.
+     */
+    default boolean canMergeUpdates(@Nullable T earlier, @Nullable T later) {
+        return earlier != null || later == null;
+    }
+
+    /**
+     * Merge two updates of this field, sent one after the other, into a
+     * single update. Only called if {@link #canMergeUpdates(Object, Object)}.
+     * By default the later one replaces the earlier one, like most handlers
+     * replace the stored value.
+     */
+    @Nullable
+    default Object mergeUpdates(@Nullable T earlier, @Nullable T later) {
+        return later;
+    }
+
     /**
      * Handler that must be wrapped with the NullSafe handler.
      *
@@ -90,7 +124,10 @@ public interface ChangeHandler<T> {
         }
     }
 
-    /** Objects are only close enough if they are {@link Object#equals(Object)} to each other. */
+    /**
+     * Objects are only close enough if they are equal to each other as json values: numbers are
+     * compared by value, whatever their type, and lists and maps are compared deeply.
+     */
     final class Equal implements ChangeHandler<Object> {
         public static final ChangeHandler<Object> INSTANCE = new Equal();
 
@@ -108,7 +145,108 @@ public interface ChangeHandler<T> {
 
         @Override
         public Result handle(@Nullable Object oldValue, @Nullable Object newValue) {
-            return Changed.forBoolean(Objects.equals(oldValue, newValue), newValue);
+            return Changed.forBoolean(jsonEquals(oldValue, newValue), newValue);
+        }
+
+        /**
+         * Are the two values equal once written as json? Unlike {@link Objects#equals(Object, Object)}
+         * an Integer is equal to the Long or the Double with the same value, the source read back from
+         * the index doesn't always use the types of the update.
+         */
+        static boolean jsonEquals(@Nullable Object a, @Nullable Object b) {
+            if (a == b) {
+                return true;
+            }
+            if (a == null || b == null) {
+                return false;
+            }
+            if (a instanceof Number && b instanceof Number) {
+                return numberEquals((Number) a, (Number) b);
+            }
+            if (a instanceof List && b instanceof List) {
+                return listEquals((List<?>) a, (List<?>) b);
+            }
+            if (a instanceof Map && b instanceof Map) {
+                return mapEquals((Map<?, ?>) a, (Map<?, ?>) b);
+            }
+            return a.equals(b);
+        }
+
+        private static boolean listEquals(List<?> a, List<?> b) {
+            int size = a.size();
+            if (size != b.size()) {
+                return false;
+            }
+            if (a instanceof RandomAccess && b instanceof RandomAccess) {
+                for (int i = 0; i < size; i++) {
+                    if (!jsonEquals(a.get(i), b.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            Iterator<?> bValues = b.iterator();
+            for (Object aValue : a) {
+                if (!jsonEquals(aValue, bValues.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean mapEquals(Map<?, ?> a, Map<?, ?> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : a.entrySet()) {
+                Object bValue = b.get(entry.getKey());
+                if (bValue == null && !b.containsKey(entry.getKey())) {
+                    return false;
+                }
+                if (!jsonEquals(entry.getValue(), bValue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean numberEquals(Number a, Number b) {
+            boolean aIsLong = isLong(a);
+            boolean bIsLong = isLong(b);
+            if (aIsLong && bIsLong) {
+                return a.longValue() == b.longValue();
+            }
+            if ((aIsLong || isDouble(a)) && (bIsLong || isDouble(b))) {
+                if (aIsLong) {
+                    return longEqualsDouble(a.longValue(), b.doubleValue());
+                }
+                if (bIsLong) {
+                    return longEqualsDouble(b.longValue(), a.doubleValue());
+                }
+                double aValue = a.doubleValue();
+                double bValue = b.doubleValue();
+                return aValue == bValue || (Double.isNaN(aValue) && Double.isNaN(bValue));
+            }
+            // BigInteger, BigDecimal and friends, rare enough to afford the conversion
+            try {
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+            } catch (NumberFormatException e) {
+                // NaN or infinite
+                return a.equals(b);
+            }
+        }
+
+        private static boolean longEqualsDouble(long l, double d) {
+            // 2^63 is the double of Long.MAX_VALUE but isn't equal to it
+            return d == (double) l && d != 0x1p63 && (long) d == l;
+        }
+
+        private static boolean isLong(Number n) {
+            return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+        }
+
+        private static boolean isDouble(Number n) {
+            return n instanceof Double || n instanceof Float;
         }
     }
 
@@ -1,18 +1,14 @@
 package org.wikimedia.search.extra.superdetectnoop;
 
-import static java.lang.Boolean.FALSE;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
-
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.TreeMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.collect.ImmutableList;
 
@@ -21,103 +17,228 @@ import com.google.common.collect.ImmutableList;
  * list stored within OpenSearch. The sub sets are updated in their entirety, while unreferenced
  * sets in the source are maintained. Sets can be removed by providing a single tombstone value,
  * __DELETE_GROUPING__.
+ *
+ * Only the groups named in the update are parsed from the source, the values of the other groups
+ * are kept as they are, in place. The cost of an update depends on the size of the groups it
+ * touches rather than on the size of the whole list.
  */
 public class MultiListHandler implements ChangeHandler.NonnullChangeHandler<List<String>> {
     static final String DELETE = "__DELETE_GROUPING__";
     static final ChangeHandler<Object> INSTANCE =
-            ChangeHandler.TypeSafeList.nullAndTypeSafe(
-                    String.class, new MultiListHandler(), ImmutableList.of());
+            new ChangeHandler.NullSafe<Object>(
+                    new ChangeHandler.TypeSafeList<>(String.class, new MultiListHandler()), ImmutableList.of()) {
+                @Override
+                public boolean canMergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+                    return later == null || isStringList(earlier) && isStringList(later);
+                }
+
+                @Override
+                @Nullable
+                @SuppressWarnings("unchecked")
+                public Object mergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+                    return later == null ? null : merge((List<String>) earlier, (List<String>) later);
+                }
+            };
 
     public static final ChangeHandler.Recognizer RECOGNIZER =
             desc -> desc.equals("multilist") ? INSTANCE : null;
 
+    private static final char DELIMITER = '/';
+    private static final String UNNAMED = "__UNNAMED_GROUPING__";
+    private static final String[] EMPTY = new String[0];
+
     @Override
     public ChangeHandler.Result handle(
             @Nonnull List<String> oldValue, @Nonnull List<String> newValue) {
         if (newValue.isEmpty()) {
             throw new IllegalArgumentException("Empty update provided to MultiListHandler");
         }
-        MultiSet original = MultiSet.parse(oldValue);
-        MultiSet update = MultiSet.parse(newValue);
-        if (original.replaceFrom(update)) {
-            return new ChangeHandler.Changed(original.flatten());
-        } else {
+        Groups update = Groups.parse(newValue);
+        // Group of each value of the source, -1 when the update doesn't touch it
+        int[] groupOf = new int[oldValue.size()];
+        int[] currentSizes = new int[update.size()];
+        int i = 0;
+        for (String value : oldValue) {
+            int group = update.indexOf(value);
+            groupOf[i++] = group;
+            if (group >= 0) {
+                currentSizes[group]++;
+            }
+        }
+
+        boolean[] replaced = new boolean[update.size()];
+        boolean changed = false;
+        for (int group = 0; group < update.size(); group++) {
+            if (update.isDeleteMarker(group)) {
+                replaced[group] = currentSizes[group] > 0;
+            } else {
+                replaced[group] = !Arrays.equals(update.values[group], current(oldValue, groupOf, group, currentSizes[group]));
+            }
+            changed |= replaced[group];
+        }
+        if (!changed) {
             return ChangeHandler.CloseEnough.INSTANCE;
         }
+
+        List<String> result = new ArrayList<>(oldValue.size() + newValue.size());
+        i = 0;
+        for (String value : oldValue) {
+            int group = groupOf[i++];
+            if (group < 0 || !replaced[group]) {
+                result.add(value);
+            }
+        }
+        for (int group = 0; group < update.size(); group++) {
+            if (replaced[group] && !update.isDeleteMarker(group)) {
+                Collections.addAll(result, update.values[group]);
+            }
+        }
+        return new ChangeHandler.Changed(result);
     }
 
-    private static final class MultiSet {
-        private static final char DELIMITER = '/';
-        private static final String UNNAMED = "__UNNAMED_GROUPING__";
-        private final Map<String, Set<String>> sets;
+    private static boolean isStringList(@Nullable Object value) {
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            return false;
+        }
+        for (Object v : (List<?>) value) {
+            if (!(v instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        private MultiSet(Map<String, Set<String>> sets) {
-            this.sets = sets;
+    /**
+     * Merge two updates: the groups of the later one replace the same groups
+     * of the earlier one.
+     */
+    static List<String> merge(List<String> earlier, List<String> later) {
+        Groups groups = Groups.parse(later);
+        List<String> merged = new ArrayList<>(earlier.size() + later.size());
+        for (String value : earlier) {
+            if (groups.indexOf(value) < 0) {
+                merged.add(value);
+            }
         }
+        merged.addAll(later);
+        return merged;
+    }
 
-        static MultiSet parse(Collection<String> strings) {
-            return new MultiSet(
-                    strings.stream()
-                            .collect(
-                                    groupingBy(
-                                            val -> {
-                                                int pos = val.indexOf(DELIMITER);
-                                                return pos == -1 ? UNNAMED : val.substring(0, pos);
-                                            },
-                                            toSet())));
+    /**
+     * The distinct values of a group in the source, sorted.
+     */
+    private static String[] current(List<String> oldValue, int[] groupOf, int group, int size) {
+        if (size == 0) {
+            return EMPTY;
         }
+        String[] values = new String[size];
+        int pos = 0;
+        int i = 0;
+        for (String value : oldValue) {
+            if (groupOf[i++] == group) {
+                values[pos++] = value;
+            }
+        }
+        return sortedUnique(values);
+    }
 
-        private <T> Optional<T> onlyElement(Collection<T> foo) {
-            Iterator<T> it = foo.iterator();
-            if (!it.hasNext()) {
-                return Optional.empty();
+    private static String[] sortedUnique(String[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (String value : values) {
+            if (size == 0 || !values[size - 1].equals(value)) {
+                values[size++] = value;
             }
-            T value = it.next();
-            if (it.hasNext()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(value);
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Compare the group of value, delimited by pos, to group without
+     * extracting it from value.
+     */
+    private static int compareGroup(String value, int pos, String group) {
+        if (pos == -1) {
+            return UNNAMED.compareTo(group);
+        }
+        int len = Math.min(pos, group.length());
+        for (int i = 0; i < len; i++) {
+            int diff = value.charAt(i) - group.charAt(i);
+            if (diff != 0) {
+                return diff;
             }
         }
+        return pos - group.length();
+    }
 
-        private boolean isDeleteMarker(String group, Set<String> values) {
-            return onlyElement(values)
-                    .map(
-                            value -> {
-                                // We don't need to verify the group, by construction the prefix must match
-                                // the group. We only need to verify that there isn't additional content. Verify
-                                // by ensuring there is only enough room for the marker and the prefix.
-                                int expectedLength = DELETE.length();
-                                if (!UNNAMED.equals(group)) {
-                                    expectedLength += 1 + group.length();
-                                }
-                                return value.length() == expectedLength && value.endsWith(DELETE);
-                            })
-                    .orElse(FALSE);
-        }
-
-        boolean replaceFrom(MultiSet other) {
-            boolean changed = false;
-            for (Map.Entry<String, Set<String>> entry : other.sets.entrySet()) {
-                Set<String> current = sets.get(entry.getKey());
-                Set<String> updated = entry.getValue();
-                // If we are already holding an equivalent value skip the update.
-                if (current != null && current.equals(updated)) {
-                    continue;
-                }
-                if (!isDeleteMarker(entry.getKey(), updated)) {
-                    // Standard update
-                    changed = true;
-                    sets.put(entry.getKey(), updated);
-                } else if (sets.remove(entry.getKey()) != null) {
-                    changed = true;
+    /**
+     * The groups of an update, as sorted arrays of group names and of their
+     * distinct values.
+     */
+    private static final class Groups {
+        private final String[] names;
+        private final String[][] values;
+
+        private Groups(String[] names, String[][] values) {
+            this.names = names;
+            this.values = values;
+        }
+
+        static Groups parse(List<String> strings) {
+            Map<String, List<String>> groups = new TreeMap<>();
+            for (String value : strings) {
+                int pos = value.indexOf(DELIMITER);
+                groups.computeIfAbsent(pos == -1 ? UNNAMED : value.substring(0, pos), k -> new ArrayList<>()).add(value);
+            }
+            String[] names = new String[groups.size()];
+            String[][] values = new String[groups.size()][];
+            int i = 0;
+            for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+                names[i] = entry.getKey();
+                values[i] = sortedUnique(entry.getValue().toArray(EMPTY));
+                i++;
+            }
+            return new Groups(names, values);
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        /**
+         * Index of the group of value, -1 if it's not part of the update.
+         */
+        int indexOf(String value) {
+            int pos = value.indexOf(DELIMITER);
+            int low = 0;
+            int high = names.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareGroup(value, pos, names[mid]);
+                if (cmp < 0) {
+                    high = mid - 1;
+                } else if (cmp > 0) {
+                    low = mid + 1;
+                } else {
+                    return mid;
                 }
             }
-            return changed;
+            return -1;
         }
 
-        List<String> flatten() {
-            return sets.entrySet().stream().flatMap(entry -> entry.getValue().stream()).collect(toList());
+        boolean isDeleteMarker(int group) {
+            if (values[group].length != 1) {
+                return false;
+            }
+            // We don't need to verify the group, by construction the prefix must match
+            // the group. We only need to verify that there isn't additional content. Verify
+            // by ensuring there is only enough room for the marker and the prefix.
+            String value = values[group][0];
+            int expectedLength = DELETE.length();
+            if (!UNNAMED.equals(names[group])) {
+                expectedLength += 1 + names[group].length();
+            }
+            return value.length() == expectedLength && value.endsWith(DELETE);
         }
     }
 }
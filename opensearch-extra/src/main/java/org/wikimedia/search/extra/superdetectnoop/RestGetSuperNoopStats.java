@@ -0,0 +1,33 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Collections.singletonList;
+
+import java.util.List;
+
+import org.opensearch.client.node.NodeClient;
+import org.opensearch.rest.BaseRestHandler;
+import org.opensearch.rest.RestRequest;
+import org.opensearch.rest.action.RestActions;
+
+public class RestGetSuperNoopStats extends BaseRestHandler {
+
+    @Override
+    public List<Route> routes() {
+        return singletonList(
+                new Route(RestRequest.Method.GET, "/_nodes/superNoopStats")
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "super_noop_stats";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        return channel -> client.execute(
+                SuperNoopStatsAction.INSTANCE,
+                new SuperNoopStatsAction.SuperNoopStatsNodesRequest(),
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
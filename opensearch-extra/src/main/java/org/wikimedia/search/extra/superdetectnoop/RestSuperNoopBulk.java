@@ -0,0 +1,64 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.opensearch.rest.RestRequest.Method.POST;
+import static org.opensearch.rest.RestRequest.Method.PUT;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.support.ActiveShardCount;
+import org.opensearch.client.node.NodeClient;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.rest.BaseRestHandler;
+import org.opensearch.rest.RestRequest;
+import org.opensearch.rest.action.RestStatusToXContentListener;
+import org.opensearch.search.fetch.subphase.FetchSourceContext;
+
+/**
+ * Same body and response as the _bulk api, the super_detect_noop updates of
+ * the same document are coalesced.
+ */
+public class RestSuperNoopBulk extends BaseRestHandler {
+    private final boolean allowExplicitIndex;
+
+    public RestSuperNoopBulk(Settings settings) {
+        this.allowExplicitIndex = MULTI_ALLOW_EXPLICIT_INDEX.get(settings);
+    }
+
+    @Override
+    public List<Route> routes() {
+        return asList(
+                new Route(POST, "/_super_noop_bulk"),
+                new Route(PUT, "/_super_noop_bulk"),
+                new Route(POST, "/{index}/_super_noop_bulk"),
+                new Route(PUT, "/{index}/_super_noop_bulk")
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "super_noop_bulk";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        BulkRequest bulkRequest = new BulkRequest();
+        bulkRequest.setRefreshPolicy(request.param("refresh"));
+        String waitForActiveShards = request.param("wait_for_active_shards");
+        if (waitForActiveShards != null) {
+            bulkRequest.waitForActiveShards(ActiveShardCount.parseString(waitForActiveShards));
+        }
+        bulkRequest.timeout(request.paramAsTime("timeout", bulkRequest.timeout()));
+        bulkRequest.add(request.requiredContent(), request.param("index"), request.param("routing"),
+                FetchSourceContext.parseFromRestRequest(request), request.param("pipeline"),
+                request.paramAsBoolean("require_alias", null), allowExplicitIndex, request.getMediaType());
+        return channel -> client.execute(SuperNoopBulkAction.INSTANCE, bulkRequest, new RestStatusToXContentListener<>(channel));
+    }
+
+    @Override
+    public boolean supportsContentStream() {
+        return true;
+    }
+}
@@ -2,6 +2,8 @@ package org.wikimedia.search.extra.superdetectnoop;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -62,7 +64,7 @@ public class SetHandler implements ChangeHandler<Object> {
          * Note that if the old value isn't a list we just wrap it in one.
          * That's _probably_ the right thing to do here.
          */
-        Collection<Object> value = listify(oldValue);
+        List<Object> value = listify(oldValue);
         Map<String, Object> params;
         try {
             params = ((Map<String, Object>) newValue);
@@ -78,32 +80,141 @@ public class SetHandler implements ChangeHandler<Object> {
                 + String.join(", ", VALID_PARAMS), e);
         }
         List<Object> remove = listify(params.get(PARAM_REMOVE));
-        List<Object> add = listify(params.get(PARAM_ADD))
-            .stream().filter(toAdd -> !remove.contains(toAdd))
-            .collect(Collectors.toList());
-
+        List<Object> add = listify(params.get(PARAM_ADD));
         int maxSize = Optional.ofNullable((Number) params.get(PARAM_MAX_SIZE)).map(Number::intValue)
             .orElse(Integer.MAX_VALUE);
 
-        if (add.size() + remove.size() > maxKeepAsList && minConvert < value.size() && value.size() < maxConvert) {
-            value = new LinkedHashSet<>(value);
+        boolean changed;
+        // The list grows with the values added, scanning it for each of them is quadratic
+        if (add.size() + remove.size() > maxKeepAsList && minConvert < value.size() + add.size() && value.size() < maxConvert) {
+            changed = handleIndexed(value, add, remove, maxSize);
+        } else {
+            changed = handleList(value, add, remove, maxSize);
+        }
+        if (!changed) {
+            return CloseEnough.INSTANCE;
+        }
+        return new Changed(value);
+    }
+
+    /**
+     * Updates can be merged unless they limit the size of the set, the
+     * values dropped depend on the stored ones.
+     */
+    @Override
+    public boolean canMergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+        if (later == null) {
+            return true;
+        }
+        return isMergeable(earlier) && isMergeable(later);
+    }
+
+    private static boolean isMergeable(@Nullable Object update) {
+        return update instanceof Map
+                && VALID_PARAMS.containsAll(((Map<?, ?>) update).keySet())
+                && !((Map<?, ?>) update).containsKey(PARAM_MAX_SIZE);
+    }
+
+    /**
+     * An update removes its values then adds the ones it doesn't remove, so
+     * applying two of them is the same as removing the values removed by
+     * the later one and the values removed by the earlier one that the later
+     * one doesn't add back, then adding the values added by the later one
+     * and the values added by the earlier one that the later one doesn't
+     * remove.
+     */
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public Object mergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+        if (later == null) {
+            return null;
+        }
+        Map<String, Object> earlierParams = (Map<String, Object>) earlier;
+        Map<String, Object> laterParams = (Map<String, Object>) later;
+        List<Object> earlierAdd = listify(earlierParams.get(PARAM_ADD));
+        List<Object> laterAdd = listify(laterParams.get(PARAM_ADD));
+        List<Object> earlierRemove = listify(earlierParams.get(PARAM_REMOVE));
+        List<Object> laterRemove = listify(laterParams.get(PARAM_REMOVE));
+
+        Set<Object> laterAddLookup = new HashSet<>(laterAdd);
+        Set<Object> remove = new LinkedHashSet<>();
+        for (Object value : earlierRemove) {
+            if (!laterAddLookup.contains(value)) {
+                remove.add(value);
+            }
+        }
+        remove.addAll(laterRemove);
+
+        Set<Object> laterRemoveLookup = new HashSet<>(laterRemove);
+        Set<Object> add = new LinkedHashSet<>();
+        for (Object value : earlierAdd) {
+            if (!laterRemoveLookup.contains(value)) {
+                add.add(value);
+            }
         }
-        boolean changed = value.removeAll(remove);
+        add.addAll(laterAdd);
+
+        Map<String, Object> merged = new HashMap<>();
+        merged.put(PARAM_ADD, new ArrayList<>(add));
+        merged.put(PARAM_REMOVE, new ArrayList<>(remove));
+        return merged;
+    }
+
+    /**
+     * Applies the operations by scanning the lists, cheaper than hashing
+     * for small lists or a handful of operations.
+     */
+    private boolean handleList(List<Object> value, List<Object> add, List<Object> remove, int maxSize) {
+        Collection<Object> removeLookup = lookup(remove);
+        boolean changed = value.removeAll(removeLookup);
         long remainingAddCount = Math.min(Math.max(0, maxSize - value.size()), add.size());
 
         final Iterator<Object> adderator = add.iterator();
         while (remainingAddCount > 0 && adderator.hasNext()) {
             final Object toAdd = adderator.next();
-            if (!value.contains(toAdd)) {
+            if (!removeLookup.contains(toAdd) && !value.contains(toAdd)) {
                 value.add(toAdd);
                 changed = true;
                 --remainingAddCount;
             }
         }
-        if (!changed) {
-            return CloseEnough.INSTANCE;
+        return changed;
+    }
+
+    /**
+     * Applies the operations with the existing values hashed once, keeping
+     * the list as is, in order and with its duplicates, when nothing changes.
+     */
+    private boolean handleIndexed(List<Object> value, List<Object> add, List<Object> remove, int maxSize) {
+        Set<Object> present = new HashSet<>(value);
+        Collection<Object> removeLookup = lookup(remove);
+        boolean changed = false;
+        for (Object toRemove : remove) {
+            changed |= present.remove(toRemove);
+        }
+        if (changed) {
+            value.removeIf(v -> !present.contains(v));
+        }
+        long remainingAddCount = Math.min(Math.max(0, maxSize - value.size()), add.size());
+
+        final Iterator<Object> adderator = add.iterator();
+        while (remainingAddCount > 0 && adderator.hasNext()) {
+            final Object toAdd = adderator.next();
+            if (!removeLookup.contains(toAdd) && present.add(toAdd)) {
+                value.add(toAdd);
+                changed = true;
+                --remainingAddCount;
+            }
         }
-        return new Changed(value instanceof List ? value : new ArrayList<>(value));
+        return changed;
+    }
+
+    /**
+     * The values to remove, hashed when there are enough of them.
+     */
+    private Collection<Object> lookup(List<Object> remove) {
+        return remove.size() > maxKeepAsList ? new HashSet<>(remove) : remove;
     }
 
     /**
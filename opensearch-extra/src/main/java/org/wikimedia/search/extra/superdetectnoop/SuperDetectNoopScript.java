@@ -1,16 +1,23 @@
 package org.wikimedia.search.extra.superdetectnoop;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
+import org.opensearch.common.cache.Cache;
+import org.opensearch.common.cache.CacheBuilder;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.util.concurrent.ThreadContext;
 import org.opensearch.index.mapper.SourceFieldMapper;
 import org.opensearch.script.ScriptContext;
 import org.opensearch.script.ScriptEngine;
@@ -23,10 +30,45 @@ import org.opensearch.script.UpdateScript;
 public class SuperDetectNoopScript extends UpdateScript {
 
     public static class SuperNoopScriptEngineService implements ScriptEngine {
+        // Updates are usually sent by a handful of clients with the same handlers
+        private static final long MAX_HANDLER_CONFIGS = 1000;
+        private static final TimeValue HANDLER_CONFIG_TTL = TimeValue.timeValueHours(1);
+
         private final Set<ChangeHandler.Recognizer> changeHandlerRecognizers;
+        private final Supplier<ThreadContext> threadContext;
+        /**
+         * Plans compiled from the handlers configs seen by this node. Change
+         * handlers are stateless so the updates sent with the same config share
+         * them instead of running every recognizer on every path of every update.
+         */
+        private final Cache<Map<String, String>, UpdatePlan> handlersCache =
+                CacheBuilder.<Map<String, String>, UpdatePlan>builder()
+                        .setMaximumWeight(MAX_HANDLER_CONFIGS)
+                        .setExpireAfterAccess(HANDLER_CONFIG_TTL)
+                        .build();
+        private final SuperNoopStats stats = new SuperNoopStats(() -> new SuperNoopStats.CacheCounts(handlersCache.stats()));
+        // Shared by the updates sent without handlers
+        private final UpdatePlan noHandlersPlan = new UpdatePlan(Collections.emptyMap(), this::handler);
 
         public SuperNoopScriptEngineService(Set<ChangeHandler.Recognizer> changeHandlerRecognizers) {
+            this(changeHandlerRecognizers, () -> null);
+        }
+
+        /**
+         * @param threadContext context of the update, where the changed paths header is added, null when
+         * unavailable
+         */
+        public SuperNoopScriptEngineService(Set<ChangeHandler.Recognizer> changeHandlerRecognizers,
+                                            Supplier<ThreadContext> threadContext) {
             this.changeHandlerRecognizers = changeHandlerRecognizers;
+            this.threadContext = threadContext;
+        }
+
+        /**
+         * Stats of the updates run on this node.
+         */
+        public SuperNoopStats stats() {
+            return stats;
         }
 
         @Override
@@ -53,16 +95,23 @@ public class SuperDetectNoopScript extends UpdateScript {
         }
 
         protected Map<String, ChangeHandler<Object>> handlers(Map<String, Object> params) {
+            return plan(params).handlers();
+        }
+
+        UpdatePlan plan(Map<String, Object> params) {
             @SuppressWarnings("unchecked")
             Map<String, String> detectorConfigs = (Map<String, String>) params.get("handlers");
-            if (detectorConfigs == null) {
-                return Collections.emptyMap();
+            if (detectorConfigs == null || detectorConfigs.isEmpty()) {
+                return noHandlersPlan;
             }
-            Map<String, ChangeHandler<Object>> handlers = new HashMap<>();
-            for (Map.Entry<String, String> detectorConfig : detectorConfigs.entrySet()) {
-                handlers.put(detectorConfig.getKey(), handler(detectorConfig.getValue()));
+            UpdatePlan plan = handlersCache.get(detectorConfigs);
+            if (plan == null) {
+                // Concurrent updates may compile the same config, that's fine
+                plan = new UpdatePlan(detectorConfigs, this::handler);
+                // The params are owned by the update request, keep a copy of the config
+                handlersCache.put(Collections.unmodifiableMap(new HashMap<>(detectorConfigs)), plan);
             }
-            return Collections.unmodifiableMap(handlers);
+            return plan;
         }
 
         protected ChangeHandler<Object> handler(String config) {
@@ -76,25 +125,75 @@ public class SuperDetectNoopScript extends UpdateScript {
         }
     }
 
+    /**
+     * Response header listing the paths changed by the update, added when
+     * the changed_paths_header param is true.
+     */
+    public static final String CHANGED_PATHS_HEADER = "X-Super-Detect-Noop-Changed-Paths";
+    // Handler of the fields without one
+    private static final String DEFAULT_HANDLER = "equals";
+
     private final Map<String, Object> source;
-    private final Map<String, ChangeHandler<Object>> pathToHandler;
+    private final UpdatePlan plan;
+    private final SuperNoopStats stats;
+    private final Supplier<ThreadContext> threadContext;
+    @Nullable private final List<String> changedPaths;
 
     public SuperDetectNoopScript(Map<String, Object> params, Map<String, Object> ctx, SuperNoopScriptEngineService service) {
         super(params, ctx);
         @SuppressWarnings("unchecked")
         Map<String, Object> source = (Map<String, Object>) Objects.requireNonNull(params.get("source"), "source must be specified");
         this.source = source;
-        this.pathToHandler = service.handlers(params);
+        this.plan = service.plan(params);
+        this.stats = service.stats;
+        this.threadContext = service.threadContext;
+        this.changedPaths = Boolean.TRUE.equals(params.get("changed_paths_header")) ? new ArrayList<>() : null;
     }
 
     @Override
     public void execute() {
         @SuppressWarnings("unchecked")
         Map<String, Object> oldSource = (Map<String, Object>) super.getCtx().get(SourceFieldMapper.NAME);
-        UpdateStatus changed = update(oldSource, source, "");
-        if (changed != UpdateStatus.UPDATED) {
-            super.getCtx().put("op", "none");
+        UpdateStatus changed = update(oldSource, source, plan.root());
+        switch (changed) {
+            case UPDATED:
+                stats.onUpdated();
+                addChangedPathsHeader();
+                break;
+            case NOOP_DOCUMENT:
+                stats.onNoopDocument();
+                super.getCtx().put("op", "none");
+                break;
+            default:
+                stats.onNoop();
+                super.getCtx().put("op", "none");
+        }
+    }
+
+    private void addChangedPathsHeader() {
+        if (changedPaths == null) {
+            return;
+        }
+        ThreadContext context = threadContext.get();
+        if (context != null) {
+            context.addResponseHeader(CHANGED_PATHS_HEADER, String.join(",", changedPaths));
+        }
+    }
+
+    /**
+     * The value at the path made of segments, null if one of its parents is
+     * missing or isn't a map.
+     */
+    @Nullable
+    static Object valueAt(Map<String, Object> map, String[] segments) {
+        Object value = map;
+        for (String segment : segments) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?, ?>) value).get(segment);
         }
+        return value;
     }
 
     private enum UpdateStatus {
@@ -118,16 +217,24 @@ public class SuperDetectNoopScript extends UpdateScript {
 
     /**
      * Update old with the source and detector configuration of this script.
+     *
+     * @param node node of the plan for the path of the maps
      */
-    UpdateStatus update(Map<String, Object> oldSource, Map<String, Object> newSource, String path) {
+    UpdateStatus update(Map<String, Object> oldSource, Map<String, Object> newSource, UpdatePlan.Node node) {
         UpdateStatus modified = UpdateStatus.NOT_UPDATED;
         for (Map.Entry<String, Object> newEntry : newSource.entrySet()) {
             String key = newEntry.getKey();
-            String entryPath = path + key;
-            ChangeHandler<Object> handler = pathToHandler.get(entryPath);
+            UpdatePlan.Node entryNode = node.child(key);
+            ChangeHandler<Object> handler = entryNode.handler();
             if (handler == null) {
                 Object newValueRaw = newEntry.getValue();
                 if (newValueRaw instanceof Map) {
+                    Object oldValueRaw = oldSource.get(key);
+                    if (!entryNode.hasHandlers() && ChangeHandler.Equal.jsonEquals(newValueRaw, oldValueRaw)) {
+                        // Merging it would not change anything, count it as a single field
+                        stats.onField(entryNode.path(), DEFAULT_HANDLER, false);
+                        continue;
+                    }
                     // Apply this::update recursively when provided a map as the value to
                     // update to and no handler is defined. Boldly assume (i.e. fail if not)
                     // that if the update is a map, the source document must be either empty
@@ -137,7 +244,7 @@ public class SuperDetectNoopScript extends UpdateScript {
                             key, x -> new LinkedHashMap<String, Object>());
                     @SuppressWarnings("unchecked")
                     Map<String, Object> newValue = (Map<String, Object>)newValueRaw;
-                    modified = modified.merge(update(oldValue, newValue, entryPath + "."));
+                    modified = modified.merge(update(oldValue, newValue, entryNode));
                     if (modified == UpdateStatus.NOOP_DOCUMENT) {
                         return modified;
                     }
@@ -151,14 +258,20 @@ public class SuperDetectNoopScript extends UpdateScript {
                 result = handler.handle(oldSource.get(key), newEntry.getValue());
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException(String.format(Locale.ROOT,
-                        "Failed updating document property %s", entryPath), e);
+                        "Failed updating document property %s", entryNode.path()), e);
             }
             if (result.isDocumentNooped()) {
                 return UpdateStatus.NOOP_DOCUMENT;
             }
+            String config = entryNode.config() == null ? DEFAULT_HANDLER : entryNode.config();
             if (result.isCloseEnough()) {
+                stats.onField(entryNode.path(), config, false);
                 continue;
             }
+            stats.onField(entryNode.path(), config, true);
+            if (changedPaths != null) {
+                changedPaths.add(entryNode.path());
+            }
             applyUpdate(oldSource, key, result.newValue());
             modified = UpdateStatus.UPDATED;
         }
@@ -0,0 +1,18 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import org.opensearch.action.ActionType;
+import org.opensearch.action.bulk.BulkResponse;
+
+/**
+ * Bulk whose super_detect_noop updates of the same document are coalesced
+ * by the {@link SuperNoopCoalescer} of the coordinating node.
+ */
+public final class SuperNoopBulkAction extends ActionType<BulkResponse> {
+
+    static final String NAME = "indices:data/write/extra-super-noop-bulk";
+    public static final SuperNoopBulkAction INSTANCE = new SuperNoopBulkAction();
+
+    private SuperNoopBulkAction() {
+        super(NAME, BulkResponse::new);
+    }
+}
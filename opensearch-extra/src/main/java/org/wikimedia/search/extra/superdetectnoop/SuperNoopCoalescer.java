@@ -0,0 +1,498 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static org.opensearch.index.seqno.SequenceNumbers.UNASSIGNED_PRIMARY_TERM;
+import static org.opensearch.index.seqno.SequenceNumbers.UNASSIGNED_SEQ_NO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.DocWriteResponse;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.index.IndexRequest;
+import org.opensearch.action.search.SearchResponse;
+import org.opensearch.action.support.ActiveShardCount;
+import org.opensearch.action.support.ContextPreservingActionListener;
+import org.opensearch.action.support.WriteRequest.RefreshPolicy;
+import org.opensearch.action.update.UpdateRequest;
+import org.opensearch.action.update.UpdateResponse;
+import org.opensearch.client.Client;
+import org.opensearch.common.settings.Setting;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.util.concurrent.ThreadContext;
+import org.opensearch.core.action.ActionListener;
+import org.opensearch.core.concurrency.OpenSearchRejectedExecutionException;
+import org.opensearch.script.Script;
+import org.opensearch.script.ScriptType;
+import org.opensearch.threadpool.ThreadPool;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Holds the writes sent to the super_noop_bulk action for a short window
+ * and merges the super_detect_noop updates of the same document, so they are
+ * applied by a single get-modify-reindex cycle.
+ *
+ * The writes are spread over partitions by document. The writes held by a
+ * partition are sent in a single bulk once its window closes, the writes of
+ * the same document in the order they were received. Each partition has at
+ * most one bulk in flight so the writes of a document sent in different
+ * windows are never reordered, the partitions flush independently.
+ *
+ * The bulks carry the writes of several callers, they are sent with the
+ * context of this plugin rather than the one of the caller that opened the
+ * window. Callers are authorized by the super_noop_bulk action itself.
+ *
+ * When enabled the stale updates of a batch are found by a single search,
+ * see {@link VersionPrecheck}, and answered without being sent.
+ */
+public class SuperNoopCoalescer {
+    public static final Setting<TimeValue> WINDOW = Setting.timeSetting("extra.super_detect_noop.coalesce_window",
+            TimeValue.timeValueMillis(500), TimeValue.ZERO, Setting.Property.NodeScope);
+    public static final Setting<Integer> PARTITIONS = Setting.intSetting("extra.super_detect_noop.coalesce_partitions",
+            16, 1, Setting.Property.NodeScope);
+    public static final Setting<Boolean> VERSION_PRECHECK = Setting.boolSetting("extra.super_detect_noop.version_precheck",
+            false, Setting.Property.NodeScope);
+    /**
+     * Writes held by a partition past which new ones are rejected, when the
+     * bulks can't keep up.
+     */
+    @VisibleForTesting
+    static final int MAX_PENDING_WRITES = 10_000;
+    private static final String LANG = "super_detect_noop";
+    private static final String ORIGIN = "super_detect_noop";
+
+    private final Supplier<Client> clientSupplier;
+    private final Supplier<ThreadPool> threadPoolSupplier;
+    private final SuperDetectNoopScript.SuperNoopScriptEngineService service;
+    private final TimeValue window;
+    private final boolean versionPrecheck;
+    private final Partition[] partitions;
+    // Spreads the writes without id, they are never merged
+    private final AtomicInteger writesWithoutId = new AtomicInteger();
+
+    public SuperNoopCoalescer(Supplier<Client> clientSupplier, Supplier<ThreadPool> threadPoolSupplier,
+                              SuperDetectNoopScript.SuperNoopScriptEngineService service, Settings settings) {
+        this.clientSupplier = Objects.requireNonNull(clientSupplier);
+        this.threadPoolSupplier = Objects.requireNonNull(threadPoolSupplier);
+        this.service = Objects.requireNonNull(service);
+        this.window = WINDOW.get(settings);
+        this.versionPrecheck = VERSION_PRECHECK.get(settings);
+        this.partitions = new Partition[PARTITIONS.get(settings)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Hold a write until the window of its partition closes.
+     *
+     * @param bulk the bulk the write was sent with, its refresh policy, timeout and wait for active
+     * shards are applied to the bulk the write is sent with, the strictest of those of all the
+     * bulks it carries writes from
+     * @param listener notified, in the context of the caller, with the response of the write it was
+     * merged into, the response headers of the bulk sent are added to the context
+     */
+    public void submit(DocWriteRequest<?> request, BulkRequest bulk, ActionListener<BulkItemResponse> listener) {
+        ThreadPool threadPool = threadPoolSupplier.get();
+        if (threadPool == null) {
+            listener.onFailure(new IllegalStateException("Node not started"));
+            return;
+        }
+        ThreadContext threadContext = threadPool.getThreadContext();
+        partitions[partition(request.index(), request.id())]
+                .submit(request, bulk, new ContextPreservingActionListener<>(threadContext.newRestorableContext(true), listener));
+    }
+
+    @VisibleForTesting
+    int partition(String index, @Nullable String id) {
+        if (id == null) {
+            return Math.floorMod(writesWithoutId.getAndIncrement(), partitions.length);
+        }
+        return Math.floorMod(31 * index.hashCode() + id.hashCode(), partitions.length);
+    }
+
+    /**
+     * What happened to a write merged into an earlier one.
+     */
+    @VisibleForTesting
+    enum Merge {
+        /** Not merged, the write is sent on its own. */
+        NONE,
+        /** Merged into the earlier write. */
+        MERGED,
+        /** Dropped, it would be a noop after the earlier write. */
+        DROPPED
+    }
+
+    /**
+     * Merge later into earlier if both are super_detect_noop updates that can be merged.
+     */
+    @VisibleForTesting
+    Merge merge(DocWriteRequest<?> earlier, DocWriteRequest<?> later) {
+        if (!(earlier instanceof UpdateRequest && later instanceof UpdateRequest)) {
+            return Merge.NONE;
+        }
+        UpdateRequest earlierUpdate = (UpdateRequest) earlier;
+        UpdateRequest laterUpdate = (UpdateRequest) later;
+        if (!isSuperDetectNoop(earlierUpdate) || !isSuperDetectNoop(laterUpdate)
+                || !Objects.equals(earlierUpdate.routing(), laterUpdate.routing())
+                || !Objects.equals(earlierUpdate.fetchSource(), laterUpdate.fetchSource())
+                || !sameScriptedUpsert(earlierUpdate, laterUpdate)) {
+            return Merge.NONE;
+        }
+        Script script = earlierUpdate.script();
+        Map<String, Object> params;
+        try {
+            params = UpdateMerger.merge(service.plan(script.getParams()), script.getParams(), laterUpdate.script().getParams());
+        } catch (IllegalArgumentException | ClassCastException e) {
+            // Invalid handlers, let the update report it
+            return Merge.NONE;
+        }
+        if (params == null) {
+            return Merge.NONE;
+        }
+        if (params == script.getParams()) {
+            return Merge.DROPPED;
+        }
+        earlierUpdate.script(new Script(script.getType(), script.getLang(), script.getIdOrCode(), script.getOptions(), params));
+        earlierUpdate.retryOnConflict(Math.max(earlierUpdate.retryOnConflict(), laterUpdate.retryOnConflict()));
+        return Merge.MERGED;
+    }
+
+    static boolean isSuperDetectNoop(UpdateRequest request) {
+        Script script = request.script();
+        return script != null
+                && script.getType() == ScriptType.INLINE
+                && LANG.equals(script.getLang())
+                && request.doc() == null
+                && !request.docAsUpsert()
+                && request.ifSeqNo() == UNASSIGNED_SEQ_NO
+                && request.ifPrimaryTerm() == UNASSIGNED_PRIMARY_TERM;
+    }
+
+    /**
+     * A plain upsert creates the document without running the script, the
+     * later update would have been run on it.
+     */
+    private static boolean sameScriptedUpsert(UpdateRequest earlier, UpdateRequest later) {
+        IndexRequest earlierUpsert = earlier.upsertRequest();
+        IndexRequest laterUpsert = later.upsertRequest();
+        if (earlierUpsert == null || laterUpsert == null) {
+            return earlierUpsert == laterUpsert;
+        }
+        return earlier.scriptedUpsert() && later.scriptedUpsert()
+                && Objects.equals(earlierUpsert.source(), laterUpsert.source());
+    }
+
+    /**
+     * The response of a write dropped after the one it was merged into: a
+     * noop of the same document.
+     */
+    private static BulkItemResponse noop(BulkItemResponse item) {
+        if (item.isFailed()) {
+            return item;
+        }
+        DocWriteResponse response = item.getResponse();
+        return new BulkItemResponse(item.getItemId(), DocWriteRequest.OpType.UPDATE, new UpdateResponse(response.getShardId(),
+                response.getId(), response.getSeqNo(), response.getPrimaryTerm(), response.getVersion(), DocWriteResponse.Result.NOOP));
+    }
+
+    private static RefreshPolicy stricter(RefreshPolicy current, RefreshPolicy other) {
+        if (current == RefreshPolicy.IMMEDIATE || other == RefreshPolicy.IMMEDIATE) {
+            return RefreshPolicy.IMMEDIATE;
+        }
+        return current == RefreshPolicy.WAIT_UNTIL ? current : other;
+    }
+
+    private static TimeValue stricter(@Nullable TimeValue current, TimeValue other) {
+        return current == null || other.compareTo(current) > 0 ? other : current;
+    }
+
+    /**
+     * The largest count asked for, a count asked for explicitly wins over
+     * the default of the index.
+     */
+    private static ActiveShardCount stricter(ActiveShardCount current, ActiveShardCount other) {
+        if (ActiveShardCount.ALL.equals(current) || ActiveShardCount.ALL.equals(other)) {
+            return ActiveShardCount.ALL;
+        }
+        if (ActiveShardCount.DEFAULT.equals(current)) {
+            return other;
+        }
+        if (ActiveShardCount.DEFAULT.equals(other)) {
+            return current;
+        }
+        // The count is only exposed by toString
+        return Integer.parseInt(other.toString()) > Integer.parseInt(current.toString()) ? other : current;
+    }
+
+    private static void fail(List<Pending> writes, Exception e) {
+        for (Pending write : writes) {
+            for (ActionListener<BulkItemResponse> listener : write.listeners) {
+                listener.onFailure(e);
+            }
+        }
+    }
+
+    private final class Partition {
+        // Guarded by this
+        private Map<Object, List<Pending>> pending = new LinkedHashMap<>();
+        private int pendingWrites;
+        private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+        @Nullable private TimeValue timeout;
+        private ActiveShardCount waitForActiveShards = ActiveShardCount.DEFAULT;
+        // A flush is scheduled or its bulk is in flight
+        private boolean flushing;
+
+        void submit(DocWriteRequest<?> request, BulkRequest bulk, ActionListener<BulkItemResponse> listener) {
+            boolean accepted;
+            boolean schedule = false;
+            synchronized (this) {
+                accepted = pendingWrites < MAX_PENDING_WRITES;
+                if (accepted) {
+                    pendingWrites++;
+                    add(request, listener);
+                    refreshPolicy = stricter(refreshPolicy, bulk.getRefreshPolicy());
+                    timeout = stricter(timeout, bulk.timeout());
+                    waitForActiveShards = stricter(waitForActiveShards, bulk.waitForActiveShards());
+                    schedule = !flushing;
+                    flushing = true;
+                }
+            }
+            if (!accepted) {
+                listener.onFailure(new OpenSearchRejectedExecutionException(
+                        "Too many writes waiting to be coalesced: " + MAX_PENDING_WRITES));
+            } else if (schedule) {
+                schedule();
+            }
+        }
+
+        private void add(DocWriteRequest<?> request, ActionListener<BulkItemResponse> listener) {
+            // Writes without id are never merged
+            Object key = request.id() == null ? new Object() : Arrays.asList(request.index(), request.id());
+            List<Pending> writes = pending.computeIfAbsent(key, k -> new ArrayList<>(1));
+            if (!writes.isEmpty()) {
+                Pending last = writes.get(writes.size() - 1);
+                switch (merge(last.request, request)) {
+                    case MERGED:
+                        last.listeners.add(listener);
+                        return;
+                    case DROPPED:
+                        last.listeners.add(ActionListener.map(listener, SuperNoopCoalescer::noop));
+                        return;
+                    default:
+                }
+            }
+            writes.add(new Pending(request, listener, writes.isEmpty()));
+        }
+
+        private void schedule() {
+            ThreadPool threadPool = threadPoolSupplier.get();
+            try {
+                if (threadPool == null) {
+                    throw new IllegalStateException("Node not started");
+                }
+                ThreadContext threadContext = threadPool.getThreadContext();
+                // The scheduled flush keeps the context it's scheduled from
+                ThreadContext.StoredContext stored = threadContext.stashWithOrigin(ORIGIN);
+                try {
+                    threadContext.markAsSystemContext();
+                    threadPool.schedule(this::flush, window, ThreadPool.Names.GENERIC);
+                } finally {
+                    stored.restore();
+                }
+            } catch (RuntimeException e) {
+                // Shutting down
+                Batch batch;
+                synchronized (this) {
+                    batch = swap();
+                    flushing = false;
+                }
+                fail(batch.writes, e);
+            }
+        }
+
+        private void flush() {
+            Batch batch = swap();
+            if (batch.writes.isEmpty()) {
+                done();
+                return;
+            }
+            if (versionPrecheck) {
+                precheck(batch);
+            } else {
+                send(batch, Collections.emptyMap());
+            }
+        }
+
+        /**
+         * Send the batch once its stale updates are found.
+         */
+        private void precheck(Batch batch) {
+            VersionPrecheck precheck = new VersionPrecheck(service);
+            for (int i = 0; i < batch.writes.size(); i++) {
+                Pending write = batch.writes.get(i);
+                // The writes before it in the batch may change the stored version
+                if (write.firstOfDocument) {
+                    precheck.add(i, write.request);
+                }
+            }
+            if (precheck.isEmpty()) {
+                send(batch, Collections.emptyMap());
+                return;
+            }
+            try {
+                Client client = clientSupplier.get();
+                if (client == null) {
+                    throw new IllegalStateException("Node not started");
+                }
+                ThreadContext threadContext = threadPoolSupplier.get().getThreadContext();
+                // Not wrapped, the batch must be sent once whatever happens to the listeners
+                client.search(precheck.request(), new ContextPreservingActionListener<>(threadContext.newRestorableContext(false),
+                        new ActionListener<SearchResponse>() {
+                            @Override
+                            public void onResponse(SearchResponse response) {
+                                send(batch, precheck.stale(response.getHits()));
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                // The script checks the versions anyway
+                                send(batch, Collections.emptyMap());
+                            }
+                        }));
+            } catch (RuntimeException e) {
+                fail(batch.writes, e);
+                done();
+            }
+        }
+
+        /**
+         * Answer the stale updates and send the others.
+         *
+         * @param stale noop responses of the stale updates by position in the batch
+         */
+        private void send(Batch batch, Map<Integer, BulkItemResponse> stale) {
+            List<Pending> writes = stale.isEmpty() ? batch.writes : new ArrayList<>(batch.writes.size() - stale.size());
+            for (int i = 0; i < batch.writes.size() && !stale.isEmpty(); i++) {
+                BulkItemResponse noop = stale.get(i);
+                if (noop == null) {
+                    writes.add(batch.writes.get(i));
+                    continue;
+                }
+                for (ActionListener<BulkItemResponse> listener : batch.writes.get(i).listeners) {
+                    listener.onResponse(noop);
+                }
+            }
+            if (writes.isEmpty()) {
+                done();
+                return;
+            }
+            BulkRequest bulk = new BulkRequest();
+            bulk.setRefreshPolicy(batch.refreshPolicy);
+            if (batch.timeout != null) {
+                bulk.timeout(batch.timeout);
+            }
+            bulk.waitForActiveShards(batch.waitForActiveShards);
+            for (Pending write : writes) {
+                bulk.add(write.request);
+            }
+            try {
+                Client client = clientSupplier.get();
+                if (client == null) {
+                    throw new IllegalStateException("Node not started");
+                }
+                client.bulk(bulk, ActionListener.wrap(
+                        response -> respond(writes, response),
+                        e -> {
+                            fail(writes, e);
+                            done();
+                        }));
+            } catch (RuntimeException e) {
+                fail(writes, e);
+                done();
+            }
+        }
+
+        private void respond(List<Pending> writes, BulkResponse response) {
+            try {
+                BulkItemResponse[] items = response.getItems();
+                for (int i = 0; i < items.length; i++) {
+                    for (ActionListener<BulkItemResponse> listener : writes.get(i).listeners) {
+                        listener.onResponse(items[i]);
+                    }
+                }
+            } finally {
+                done();
+            }
+        }
+
+        /**
+         * Take the writes held so far.
+         */
+        private synchronized Batch swap() {
+            List<Pending> writes = new ArrayList<>(pending.size());
+            pending.values().forEach(writes::addAll);
+            Batch batch = new Batch(writes, refreshPolicy, timeout, waitForActiveShards);
+            pending = new LinkedHashMap<>();
+            pendingWrites = 0;
+            refreshPolicy = RefreshPolicy.NONE;
+            timeout = null;
+            waitForActiveShards = ActiveShardCount.DEFAULT;
+            return batch;
+        }
+
+        /**
+         * The bulk completed, schedule the next one if writes came in meanwhile.
+         */
+        private void done() {
+            synchronized (this) {
+                flushing = !pending.isEmpty();
+                if (!flushing) {
+                    return;
+                }
+            }
+            schedule();
+        }
+    }
+
+    private static final class Batch {
+        private final List<Pending> writes;
+        private final RefreshPolicy refreshPolicy;
+        @Nullable private final TimeValue timeout;
+        private final ActiveShardCount waitForActiveShards;
+
+        Batch(List<Pending> writes, RefreshPolicy refreshPolicy, @Nullable TimeValue timeout, ActiveShardCount waitForActiveShards) {
+            this.writes = writes;
+            this.refreshPolicy = refreshPolicy;
+            this.timeout = timeout;
+            this.waitForActiveShards = waitForActiveShards;
+        }
+    }
+
+    private static final class Pending {
+        private final DocWriteRequest<?> request;
+        private final List<ActionListener<BulkItemResponse>> listeners = new ArrayList<>(1);
+        // No other write of the document comes before it in the batch
+        private final boolean firstOfDocument;
+
+        Pending(DocWriteRequest<?> request, ActionListener<BulkItemResponse> listener, boolean firstOfDocument) {
+            this.request = request;
+            this.firstOfDocument = firstOfDocument;
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.opensearch.common.cache.Cache;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.common.io.stream.Writeable;
+import org.opensearch.core.xcontent.ToXContentObject;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Counts the updates run by super_detect_noop on this node and the fields
+ * they changed, per field path and per handler, to find out which fields
+ * cause the documents to be rewritten. Also reports how well the handlers
+ * compiled from the handlers configs are shared.
+ */
+public class SuperNoopStats {
+    /**
+     * Paths and handlers are user provided, those seen past this number are
+     * counted together.
+     */
+    static final int MAX_TRACKED_KEYS = 1000;
+    static final String OTHER = "_other";
+
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder noop = new LongAdder();
+    private final LongAdder noopDocument = new LongAdder();
+    private final ConcurrentMap<String, FieldCounter> paths = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FieldCounter> handlers = new ConcurrentHashMap<>();
+    private final Supplier<CacheCounts> handlersCache;
+
+    public SuperNoopStats() {
+        this(() -> CacheCounts.EMPTY);
+    }
+
+    /**
+     * @param handlersCache counts of the cache of the handlers compiled from the handlers configs
+     */
+    public SuperNoopStats(Supplier<CacheCounts> handlersCache) {
+        this.handlersCache = requireNonNull(handlersCache);
+    }
+
+    void onUpdated() {
+        updated.increment();
+    }
+
+    void onNoop() {
+        noop.increment();
+    }
+
+    void onNoopDocument() {
+        noopDocument.increment();
+    }
+
+    /**
+     * Count a field of an update.
+     *
+     * @param path path of the field
+     * @param handler config of the handler that checked the field
+     * @param changed whether the field was changed
+     */
+    void onField(String path, String handler, boolean changed) {
+        counter(paths, path).add(changed);
+        counter(handlers, handler).add(changed);
+    }
+
+    private static FieldCounter counter(ConcurrentMap<String, FieldCounter> counters, String key) {
+        FieldCounter counter = counters.get(key);
+        if (counter == null) {
+            // Might let a few more keys in when racing, that's fine
+            counter = counters.computeIfAbsent(counters.size() < MAX_TRACKED_KEYS ? key : OTHER, k -> new FieldCounter());
+        }
+        return counter;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(updated.sum(), noop.sum(), noopDocument.sum(), snapshot(paths), snapshot(handlers),
+                handlersCache.get());
+    }
+
+    private static Map<String, Counts> snapshot(Map<String, FieldCounter> counters) {
+        Map<String, Counts> counts = new TreeMap<>();
+        counters.forEach((k, v) -> counts.put(k, new Counts(v.changed.sum(), v.unchanged.sum())));
+        return counts;
+    }
+
+    private static final class FieldCounter {
+        private final LongAdder changed = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+
+        void add(boolean isChanged) {
+            (isChanged ? changed : unchanged).increment();
+        }
+    }
+
+    /**
+     * Number of times a field was changed or left as is.
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static class Counts implements Writeable, ToXContentObject {
+        private final long changed;
+        private final long unchanged;
+
+        public Counts(long changed, long unchanged) {
+            this.changed = changed;
+            this.unchanged = unchanged;
+        }
+
+        Counts(StreamInput in) throws IOException {
+            changed = in.readVLong();
+            unchanged = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(changed);
+            out.writeVLong(unchanged);
+        }
+
+        Counts add(Counts other) {
+            return new Counts(changed + other.changed, unchanged + other.unchanged);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("changed", changed);
+            builder.field("unchanged", unchanged);
+            return builder.endObject();
+        }
+    }
+
+    /**
+     * Hits, misses and evictions of a cache.
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static class CacheCounts implements Writeable, ToXContentObject {
+        public static final CacheCounts EMPTY = new CacheCounts(0, 0, 0);
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public CacheCounts(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public CacheCounts(Cache.CacheStats stats) {
+            this(stats.getHits(), stats.getMisses(), stats.getEvictions());
+        }
+
+        CacheCounts(StreamInput in) throws IOException {
+            hits = in.readVLong();
+            misses = in.readVLong();
+            evictions = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(hits);
+            out.writeVLong(misses);
+            out.writeVLong(evictions);
+        }
+
+        CacheCounts add(CacheCounts other) {
+            return new CacheCounts(hits + other.hits, misses + other.misses, evictions + other.evictions);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("hits", hits);
+            builder.field("misses", misses);
+            builder.field("evictions", evictions);
+            return builder.endObject();
+        }
+    }
+
+    /**
+     * Stats of a node at some point in time.
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static class Snapshot implements Writeable, ToXContentObject {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, new TreeMap<>(), new TreeMap<>(), CacheCounts.EMPTY);
+
+        private final long updated;
+        private final long noop;
+        private final long noopDocument;
+        private final Map<String, Counts> paths;
+        private final Map<String, Counts> handlers;
+        private final CacheCounts handlersCache;
+
+        public Snapshot(long updated, long noop, long noopDocument, Map<String, Counts> paths, Map<String, Counts> handlers,
+                        CacheCounts handlersCache) {
+            this.updated = updated;
+            this.noop = noop;
+            this.noopDocument = noopDocument;
+            this.paths = requireNonNull(paths);
+            this.handlers = requireNonNull(handlers);
+            this.handlersCache = requireNonNull(handlersCache);
+        }
+
+        public Snapshot(StreamInput in) throws IOException {
+            updated = in.readVLong();
+            noop = in.readVLong();
+            noopDocument = in.readVLong();
+            paths = new TreeMap<>(in.readMap(StreamInput::readString, Counts::new));
+            handlers = new TreeMap<>(in.readMap(StreamInput::readString, Counts::new));
+            handlersCache = new CacheCounts(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(updated);
+            out.writeVLong(noop);
+            out.writeVLong(noopDocument);
+            out.writeMap(paths, StreamOutput::writeString, (o, c) -> c.writeTo(o));
+            out.writeMap(handlers, StreamOutput::writeString, (o, c) -> c.writeTo(o));
+            handlersCache.writeTo(out);
+        }
+
+        /**
+         * Stats of several nodes summed up.
+         */
+        public static Snapshot sum(Collection<Snapshot> snapshots) {
+            long updated = 0;
+            long noop = 0;
+            long noopDocument = 0;
+            Map<String, Counts> paths = new TreeMap<>();
+            Map<String, Counts> handlers = new TreeMap<>();
+            CacheCounts handlersCache = CacheCounts.EMPTY;
+            for (Snapshot snapshot : snapshots) {
+                updated += snapshot.updated;
+                noop += snapshot.noop;
+                noopDocument += snapshot.noopDocument;
+                snapshot.paths.forEach((k, v) -> paths.merge(k, v, Counts::add));
+                snapshot.handlers.forEach((k, v) -> handlers.merge(k, v, Counts::add));
+                handlersCache = handlersCache.add(snapshot.handlersCache);
+            }
+            return new Snapshot(updated, noop, noopDocument, paths, handlers, handlersCache);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.startObject("documents");
+            builder.field("updated", updated);
+            builder.field("noop", noop);
+            builder.field("noopDocument", noopDocument);
+            builder.endObject();
+            builder.field("paths", paths);
+            builder.field("handlers", handlers);
+            builder.field("handlersCache", handlersCache);
+            return builder.endObject();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opensearch.action.ActionType;
+import org.opensearch.action.FailedNodeException;
+import org.opensearch.action.support.nodes.BaseNodeResponse;
+import org.opensearch.action.support.nodes.BaseNodesRequest;
+import org.opensearch.action.support.nodes.BaseNodesResponse;
+import org.opensearch.cluster.ClusterName;
+import org.opensearch.cluster.node.DiscoveryNode;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.common.io.stream.Writeable;
+import org.opensearch.core.xcontent.ToXContent;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+import lombok.Getter;
+
+public final class SuperNoopStatsAction extends ActionType<SuperNoopStatsAction.SuperNoopStatsNodesResponse> {
+
+    static final String NAME = "cluster:monitor/extra-super-noop-stats";
+    public static final SuperNoopStatsAction INSTANCE = new SuperNoopStatsAction();
+
+    private SuperNoopStatsAction() {
+        super(NAME, SuperNoopStatsNodesResponse::new);
+    }
+
+    @Override
+    public Writeable.Reader<SuperNoopStatsNodesResponse> getResponseReader() {
+        return SuperNoopStatsNodesResponse::new;
+    }
+
+    public static class SuperNoopStatsNodesResponse extends BaseNodesResponse<SuperNoopStatsNodeResponse>
+            implements ToXContent {
+
+        @Getter
+        private final SuperNoopStats.Snapshot allNodes;
+
+        SuperNoopStatsNodesResponse(StreamInput in) throws IOException {
+            super(in);
+            allNodes = new SuperNoopStats.Snapshot(in);
+        }
+
+        SuperNoopStatsNodesResponse(ClusterName clusterName, List<SuperNoopStatsNodeResponse> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+            allNodes = SuperNoopStats.Snapshot.sum(nodes.stream().map(n -> n.stats).collect(toList()));
+        }
+
+        @Override
+        protected List<SuperNoopStatsNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(SuperNoopStatsNodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<SuperNoopStatsNodeResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            allNodes.writeTo(out);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("all", allNodes);
+            builder.startObject("nodes");
+            for (SuperNoopStatsNodeResponse resp : super.getNodes()) {
+                builder.startObject(resp.getNode().getId());
+                builder.field("name", resp.getNode().getName());
+                builder.field("hostname", resp.getNode().getHostName());
+                builder.field("stats", resp.stats);
+                builder.endObject();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    public static class SuperNoopStatsNodesRequest extends BaseNodesRequest<SuperNoopStatsNodesRequest> {
+        SuperNoopStatsNodesRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        public SuperNoopStatsNodesRequest(String... nodesIds) {
+            super(nodesIds);
+        }
+    }
+
+    @Getter
+    public static class SuperNoopStatsNodeResponse extends BaseNodeResponse {
+        private final SuperNoopStats.Snapshot stats;
+
+        SuperNoopStatsNodeResponse(DiscoveryNode node, SuperNoopStats.Snapshot stats) {
+            super(node);
+            this.stats = stats;
+        }
+
+        SuperNoopStatsNodeResponse(StreamInput in) throws IOException {
+            super(in);
+            stats = new SuperNoopStats.Snapshot(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            stats.writeTo(out);
+        }
+    }
+}
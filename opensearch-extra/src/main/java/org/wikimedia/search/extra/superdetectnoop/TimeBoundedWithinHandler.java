@@ -0,0 +1,133 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensearch.OpenSearchParseException;
+import org.opensearch.common.unit.TimeValue;
+
+/**
+ * Checks if a number is different by some percentage or absolute amount, like
+ * the within handlers, but also updates it once the stored value gets too
+ * old. Bounds the staleness of fields receiving small steady changes, like
+ * popularity scores, without writing them on every update.
+ *
+ * The values are objects holding the number and the time it was computed at:
+ * <code>{"value": 0.0042, "timestamp": 1700000000000}</code>, the timestamp
+ * being in milliseconds since the epoch. The age is measured between the
+ * timestamps of the update and of the stored value, an update older than the
+ * stored value never replaces it.
+ */
+public class TimeBoundedWithinHandler implements ChangeHandler.NonnullChangeHandler<Object> {
+    static final String VALUE = "value";
+    static final String TIMESTAMP = "timestamp";
+
+    public static class Recognizer implements ChangeHandler.Recognizer {
+        private static final String PREFIX = "within ";
+        private static final String SEPARATOR = " or ";
+        private static final String PERCENTAGE_SUFFIX = "%";
+
+        @Override
+        @Nullable
+        public ChangeHandler<Object> build(String description) {
+            if (!description.startsWith(PREFIX)) {
+                return null;
+            }
+            int separator = description.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                return null;
+            }
+            String difference = description.substring(PREFIX.length(), separator);
+            TimeValue maxAge;
+            try {
+                maxAge = TimeValue.parseTimeValue(description.substring(separator + SEPARATOR.length()), "super_detect_noop");
+            } catch (OpenSearchParseException | IllegalArgumentException e) {
+                return null;
+            }
+            ChangeHandler.NonnullChangeHandler<Number> within;
+            try {
+                if (difference.endsWith(PERCENTAGE_SUFFIX)) {
+                    double percentage = Double.parseDouble(difference.substring(0, difference.length() - PERCENTAGE_SUFFIX.length()));
+                    within = new WithinPercentageHandler(percentage / 100);
+                } else {
+                    within = new WithinAbsoluteHandler(Double.parseDouble(difference));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return new ChangeHandler.NullSafe<Object>(new TimeBoundedWithinHandler(within, maxAge.millis())) {
+                @Override
+                public boolean canMergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+                    return later == null || timestamp(earlier) != null && timestamp(later) != null;
+                }
+
+                @Override
+                @Nullable
+                public Object mergeUpdates(@Nullable Object earlier, @Nullable Object later) {
+                    if (later == null) {
+                        return null;
+                    }
+                    // An out of order update doesn't replace a fresher one
+                    return timestamp(later).longValue() < timestamp(earlier).longValue() ? earlier : later;
+                }
+            };
+        }
+    }
+
+    private final ChangeHandler.NonnullChangeHandler<Number> within;
+    private final long maxAgeMillis;
+
+    /**
+     * @param within checks if the value changed enough to be updated
+     * @param maxAgeMillis age of the stored value past which it's updated anyway
+     */
+    public TimeBoundedWithinHandler(ChangeHandler.NonnullChangeHandler<Number> within, long maxAgeMillis) {
+        this.within = within;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public ChangeHandler.Result handle(@Nonnull Object oldValue, @Nonnull Object newValue) {
+        if (!(newValue instanceof Map)) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Expected an object with a %s and a %s", VALUE, TIMESTAMP));
+        }
+        Number newNumber = number((Map<?, ?>) newValue, VALUE);
+        Number newTimestamp = number((Map<?, ?>) newValue, TIMESTAMP);
+        if (newNumber == null || newTimestamp == null) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Expected an object with a numeric %s and %s", VALUE, TIMESTAMP));
+        }
+        if (!(oldValue instanceof Map)) {
+            return new ChangeHandler.Changed(newValue);
+        }
+        Number oldNumber = number((Map<?, ?>) oldValue, VALUE);
+        Number oldTimestamp = number((Map<?, ?>) oldValue, TIMESTAMP);
+        if (oldNumber == null || oldTimestamp == null) {
+            return new ChangeHandler.Changed(newValue);
+        }
+        long age = newTimestamp.longValue() - oldTimestamp.longValue();
+        if (age < 0) {
+            // Out of order update, the stored value is fresher
+            return ChangeHandler.CloseEnough.INSTANCE;
+        }
+        if (age >= maxAgeMillis) {
+            return new ChangeHandler.Changed(newValue);
+        }
+        return ChangeHandler.Changed.forBoolean(within.handle(oldNumber, newNumber).isCloseEnough(), newValue);
+    }
+
+    @Nullable
+    private static Number timestamp(@Nullable Object value) {
+        return value instanceof Map && number((Map<?, ?>) value, VALUE) != null ? number((Map<?, ?>) value, TIMESTAMP) : null;
+    }
+
+    @Nullable
+    private static Number number(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? (Number) value : null;
+    }
+}
@@ -0,0 +1,66 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.support.ActionFilters;
+import org.opensearch.action.support.HandledTransportAction;
+import org.opensearch.common.inject.Inject;
+import org.opensearch.core.action.ActionListener;
+import org.opensearch.tasks.Task;
+import org.opensearch.transport.TransportService;
+
+public class TransportSuperNoopBulkAction extends HandledTransportAction<BulkRequest, BulkResponse> {
+    private final SuperNoopCoalescer coalescer;
+
+    @Inject
+    public TransportSuperNoopBulkAction(TransportService transportService, ActionFilters actionFilters,
+                                        SuperNoopCoalescer coalescer) {
+        super(SuperNoopBulkAction.NAME, transportService, actionFilters, BulkRequest::new);
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    protected void doExecute(Task task, BulkRequest request, ActionListener<BulkResponse> listener) {
+        long start = System.nanoTime();
+        List<DocWriteRequest<?>> writes = request.requests();
+        BulkItemResponse[] items = new BulkItemResponse[writes.size()];
+        if (items.length == 0) {
+            listener.onResponse(new BulkResponse(items, 0));
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(items.length);
+        for (int i = 0; i < items.length; i++) {
+            int itemId = i;
+            DocWriteRequest<?> write = writes.get(i);
+            coalescer.submit(write, request, new ActionListener<BulkItemResponse>() {
+                @Override
+                public void onResponse(BulkItemResponse response) {
+                    // The response of the write this one was merged into
+                    if (response.isFailed()) {
+                        complete(new BulkItemResponse(itemId, write.opType(), response.getFailure()));
+                    } else {
+                        complete(new BulkItemResponse(itemId, write.opType(), response.getResponse()));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    complete(new BulkItemResponse(itemId, write.opType(), new BulkItemResponse.Failure(write.index(), write.id(), e)));
+                }
+
+                private void complete(BulkItemResponse item) {
+                    items[itemId] = item;
+                    if (remaining.decrementAndGet() == 0) {
+                        listener.onResponse(new BulkResponse(items, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                    }
+                }
+            });
+        }
+    }
+}
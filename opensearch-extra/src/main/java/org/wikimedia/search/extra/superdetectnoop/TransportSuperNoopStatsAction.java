@@ -0,0 +1,74 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opensearch.action.FailedNodeException;
+import org.opensearch.action.support.ActionFilters;
+import org.opensearch.action.support.nodes.BaseNodeRequest;
+import org.opensearch.action.support.nodes.TransportNodesAction;
+import org.opensearch.cluster.service.ClusterService;
+import org.opensearch.common.inject.Inject;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.threadpool.ThreadPool;
+import org.opensearch.transport.TransportService;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopStatsAction.SuperNoopStatsNodeResponse;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopStatsAction.SuperNoopStatsNodesRequest;
+import org.wikimedia.search.extra.superdetectnoop.SuperNoopStatsAction.SuperNoopStatsNodesResponse;
+
+public class TransportSuperNoopStatsAction extends TransportNodesAction<SuperNoopStatsNodesRequest,
+        SuperNoopStatsNodesResponse, TransportSuperNoopStatsAction.SuperNoopStatsNodeRequest,
+        SuperNoopStatsNodeResponse> {
+    private final SuperNoopStats stats;
+
+    @Inject
+    public TransportSuperNoopStatsAction(ThreadPool threadPool,
+                ClusterService clusterService, TransportService transportService,
+                ActionFilters actionFilters, SuperNoopStats stats) {
+        super(SuperNoopStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                SuperNoopStatsNodesRequest::new, SuperNoopStatsNodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                SuperNoopStatsNodeResponse.class);
+        this.stats = stats;
+    }
+
+    @Override
+    protected SuperNoopStatsNodesResponse newResponse(SuperNoopStatsNodesRequest request, List<SuperNoopStatsNodeResponse> responses,
+                                                      List<FailedNodeException> failures) {
+        return new SuperNoopStatsNodesResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected SuperNoopStatsNodeRequest newNodeRequest(SuperNoopStatsNodesRequest nodesRequest) {
+        return new SuperNoopStatsNodeRequest(nodesRequest);
+    }
+
+    @Override
+    protected SuperNoopStatsNodeResponse newNodeResponse(StreamInput streamInput) throws IOException {
+        return new SuperNoopStatsNodeResponse(streamInput);
+    }
+
+    @Override
+    protected SuperNoopStatsNodeResponse nodeOperation(SuperNoopStatsNodeRequest request) {
+        return new SuperNoopStatsNodeResponse(clusterService.localNode(), stats.snapshot());
+    }
+
+    static class SuperNoopStatsNodeRequest extends BaseNodeRequest {
+        private final SuperNoopStatsNodesRequest request;
+
+        SuperNoopStatsNodeRequest(StreamInput in) throws IOException {
+            super(in);
+            request = new SuperNoopStatsNodesRequest(in);
+        }
+
+        SuperNoopStatsNodeRequest(SuperNoopStatsNodesRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Merges the params of super_detect_noop updates of the same document, sent
+ * one after the other, into the params of a single update having the same
+ * effect. Fields are merged following the handlers of the update plan.
+ */
+final class UpdateMerger {
+    private static final String SOURCE = "source";
+
+    private UpdateMerger() {
+        // Static methods only
+    }
+
+    /**
+     * Merge the params of two updates.
+     *
+     * @return the params of the merged update, earlier itself if the later update would be a noop
+     * after it, null if they can't be merged
+     */
+    @Nullable
+    static Map<String, Object> merge(UpdatePlan plan, Map<String, Object> earlier, Map<String, Object> later) {
+        if (!sameParamsBesideSource(earlier, later)) {
+            return null;
+        }
+        Map<String, Object> earlierSource = source(earlier);
+        Map<String, Object> laterSource = source(later);
+        if (earlierSource == null || laterSource == null) {
+            return null;
+        }
+        switch (checkVersions(plan, earlierSource, laterSource)) {
+            case DROP_LATER:
+                return earlier;
+            case UNMERGEABLE:
+                return null;
+            default:
+        }
+        Map<String, Object> source = merge(plan.root(), earlierSource, laterSource);
+        if (source == null) {
+            return null;
+        }
+        Map<String, Object> params = new HashMap<>(later);
+        params.put(SOURCE, source);
+        return params;
+    }
+
+    private static boolean sameParamsBesideSource(Map<String, Object> earlier, Map<String, Object> later) {
+        if (earlier.size() != later.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : earlier.entrySet()) {
+            if (!SOURCE.equals(entry.getKey())
+                    && !(later.containsKey(entry.getKey()) && Objects.equals(entry.getValue(), later.get(entry.getKey())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> source(Map<String, Object> params) {
+        Object source = params.get(SOURCE);
+        return source instanceof Map ? (Map<String, Object>) source : null;
+    }
+
+    private enum VersionCheck {
+        MERGE, DROP_LATER, UNMERGEABLE
+    }
+
+    /**
+     * The later update is noop'd if its version is older than the earlier
+     * one, whether the earlier one was applied or not. Updates with different
+     * versions can't be merged otherwise, which of their fields end up in the
+     * document depends on the version stored.
+     */
+    private static VersionCheck checkVersions(UpdatePlan plan, Map<String, Object> earlierSource, Map<String, Object> laterSource) {
+        List<UpdatePlan.Node> nodes = plan.documentNoopNodes();
+        for (UpdatePlan.Node node : nodes) {
+            Object earlierVersion = SuperDetectNoopScript.valueAt(earlierSource, node.segments());
+            Object laterVersion = SuperDetectNoopScript.valueAt(laterSource, node.segments());
+            if (earlierVersion == null && laterVersion == null) {
+                continue;
+            }
+            if (earlierVersion == null || laterVersion == null) {
+                return VersionCheck.UNMERGEABLE;
+            }
+            ChangeHandler.Result result;
+            try {
+                result = node.handler().handle(earlierVersion, laterVersion);
+            } catch (IllegalArgumentException e) {
+                return VersionCheck.UNMERGEABLE;
+            }
+            if (result.isDocumentNooped()) {
+                // With several versions the earlier one may be noop'd by another version than the later one
+                return nodes.size() == 1 ? VersionCheck.DROP_LATER : VersionCheck.UNMERGEABLE;
+            }
+            if (!result.isCloseEnough()) {
+                return VersionCheck.UNMERGEABLE;
+            }
+        }
+        return VersionCheck.MERGE;
+    }
+
+    /**
+     * Merge the maps of two updates at the path of node.
+     *
+     * @return the merged map, null if they can't be merged
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merge(UpdatePlan.Node node, Map<String, Object> earlier, Map<String, Object> later) {
+        Map<String, Object> merged = new LinkedHashMap<>(earlier);
+        for (Map.Entry<String, Object> entry : later.entrySet()) {
+            String key = entry.getKey();
+            Object laterValue = entry.getValue();
+            if (!merged.containsKey(key)) {
+                merged.put(key, laterValue);
+                continue;
+            }
+            Object earlierValue = merged.get(key);
+            UpdatePlan.Node child = node.child(key);
+            ChangeHandler<Object> handler = child.handler();
+            if (handler != null) {
+                if (!handler.canMergeUpdates(earlierValue, laterValue)) {
+                    return null;
+                }
+                merged.put(key, handler.mergeUpdates(earlierValue, laterValue));
+            } else if (laterValue instanceof Map) {
+                // Maps without handlers are merged into the stored one, the earlier update must have been merged the same way
+                if (!(earlierValue instanceof Map)) {
+                    return null;
+                }
+                Map<String, Object> value = merge(child, (Map<String, Object>) earlierValue, (Map<String, Object>) laterValue);
+                if (value == null) {
+                    return null;
+                }
+                merged.put(key, value);
+            } else {
+                // Replaced by equals
+                merged.put(key, laterValue);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,199 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/**
+ * The handlers of an update compiled into a tree of path segments, walked
+ * alongside the source so the handler and the path of a field are found
+ * without building its path.
+ *
+ * Plans are shared by the updates sent with the same handlers. The fields
+ * they don't handle are added to the tree the first time they are seen so
+ * their paths, needed by the stats, are only built once.
+ */
+final class UpdatePlan {
+    /**
+     * Fields without handlers kept in the tree, those seen past this number
+     * get their path built on every update.
+     */
+    static final int MAX_UNPLANNED_NODES = 1000;
+
+    private final Map<String, ChangeHandler<Object>> handlers;
+    private final Node root = new Node("", "");
+    private final List<Node> documentNoopNodes;
+    private final AtomicInteger unplannedNodes = new AtomicInteger();
+
+    /**
+     * @param configs handler configs by path
+     * @param resolve builds the handler of a config
+     */
+    UpdatePlan(Map<String, String> configs, Function<String, ChangeHandler<Object>> resolve) {
+        Map<String, ChangeHandler<Object>> handlers = new HashMap<>();
+        for (Map.Entry<String, String> config : configs.entrySet()) {
+            ChangeHandler<Object> handler = resolve.apply(config.getValue());
+            handlers.put(config.getKey(), handler);
+            Node node = root;
+            for (String segment : split(config.getKey())) {
+                node.hasHandlers = true;
+                Node parent = node;
+                node = parent.children.computeIfAbsent(segment, parent::newChild);
+            }
+            node.hasHandlers = true;
+            node.handler = handler;
+            node.config = config.getValue();
+        }
+        this.handlers = Collections.unmodifiableMap(handlers);
+        List<Node> documentNoopNodes = new ArrayList<>();
+        collectDocumentNoopNodes(root, documentNoopNodes);
+        this.documentNoopNodes = documentNoopNodes.isEmpty() ? Collections.emptyList() : documentNoopNodes;
+    }
+
+    /**
+     * The handlers by path.
+     */
+    Map<String, ChangeHandler<Object>> handlers() {
+        return handlers;
+    }
+
+    /**
+     * The node of the source itself.
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Nodes of the handlers that may noop the entire document and that an
+     * update would reach, i.e. no handler is set on one of their parents.
+     */
+    List<Node> documentNoopNodes() {
+        return documentNoopNodes;
+    }
+
+    private static void collectDocumentNoopNodes(Node node, List<Node> nodes) {
+        if (node.handler != null) {
+            if (node.handler.mayNoopDocument()) {
+                node.segments = split(node.path);
+                nodes.add(node);
+            }
+            // Update won't look any further
+            return;
+        }
+        for (Node child : node.children.values()) {
+            collectDocumentNoopNodes(child, nodes);
+        }
+    }
+
+    /**
+     * Split a path on its dots, keeping the empty segments.
+     */
+    static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', start)) {
+            segments.add(path.substring(start, dot));
+            start = dot + 1;
+        }
+        segments.add(path.substring(start));
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * A path of the source.
+     */
+    final class Node {
+        private final String path;
+        private final String childPrefix;
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        // Only set while compiling the plan, before it's shared
+        @Nullable private ChangeHandler<Object> handler;
+        @Nullable private String config;
+        private boolean hasHandlers;
+        @Nullable private String[] segments;
+
+        private Node(String path, String childPrefix) {
+            this.path = path;
+            this.childPrefix = childPrefix;
+        }
+
+        private Node newChild(String key) {
+            String childPath = childPrefix + key;
+            return new Node(childPath, childPath + ".");
+        }
+
+        String path() {
+            return path;
+        }
+
+        /**
+         * The segments of the path, only set on the document noop nodes.
+         */
+        @Nullable
+        String[] segments() {
+            return segments;
+        }
+
+        /**
+         * The handler of this path, null if it has none.
+         */
+        @Nullable
+        ChangeHandler<Object> handler() {
+            return handler;
+        }
+
+        /**
+         * The config of the handler of this path, null if it has none.
+         */
+        @Nullable
+        String config() {
+            return config;
+        }
+
+        /**
+         * Whether this path or one below it has a handler.
+         */
+        boolean hasHandlers() {
+            return hasHandlers;
+        }
+
+        /**
+         * The node of a key of the map at this path.
+         */
+        Node child(String key) {
+            Node child = children.get(key);
+            if (child != null) {
+                return child;
+            }
+            if (key.indexOf('.') >= 0) {
+                // The key b.c of the map a has the same path as the key c of the map b in a
+                child = this;
+                for (String segment : split(key)) {
+                    child = child.children.get(segment);
+                    if (child == null) {
+                        break;
+                    }
+                }
+                if (child != null) {
+                    return child;
+                }
+            }
+            if (unplannedNodes.get() >= MAX_UNPLANNED_NODES) {
+                return newChild(key);
+            }
+            return children.computeIfAbsent(key, k -> {
+                unplannedNodes.incrementAndGet();
+                return newChild(k);
+            });
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.DocWriteResponse;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.action.support.IndicesOptions;
+import org.opensearch.action.update.UpdateRequest;
+import org.opensearch.action.update.UpdateResponse;
+import org.opensearch.common.document.DocumentField;
+import org.opensearch.index.mapper.IndexFieldMapper;
+import org.opensearch.index.query.BoolQueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.search.SearchHit;
+import org.opensearch.search.SearchHits;
+import org.opensearch.search.builder.SearchSourceBuilder;
+
+/**
+ * Finds the super_detect_noop updates of a batch that a documentVersion
+ * handler would noop, comparing their version with the one the document had
+ * when its index was last refreshed, read from doc values. A single search
+ * checks the whole batch and the stale updates are answered without the
+ * _source of their document being loaded and parsed.
+ *
+ * Versions only go up so the refreshed one is never newer than the stored
+ * one: an update it doesn't find stale is sent and checked again by the
+ * script. Only updates sent to the concrete index of their document are
+ * checked. A document deleted since the last refresh is still found, the
+ * updates of its older versions get a noop rather than recreating it.
+ */
+final class VersionPrecheck {
+    private final SuperDetectNoopScript.SuperNoopScriptEngineService service;
+    private final Map<List<String>, Check> checks = new LinkedHashMap<>();
+
+    VersionPrecheck(SuperDetectNoopScript.SuperNoopScriptEngineService service) {
+        this.service = service;
+    }
+
+    /**
+     * Check a write if it is a super_detect_noop update with a version.
+     *
+     * @param position position of the write in the batch
+     */
+    void add(int position, DocWriteRequest<?> write) {
+        if (!(write instanceof UpdateRequest) || write.id() == null) {
+            return;
+        }
+        UpdateRequest update = (UpdateRequest) write;
+        if (!SuperNoopCoalescer.isSuperDetectNoop(update)) {
+            return;
+        }
+        Map<String, Object> params = update.script().getParams();
+        List<UpdatePlan.Node> nodes;
+        try {
+            nodes = service.plan(params).documentNoopNodes();
+        } catch (IllegalArgumentException | ClassCastException e) {
+            // Invalid handlers, let the update report it
+            return;
+        }
+        if (nodes.isEmpty() || !(params.get("source") instanceof Map)) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> source = (Map<String, Object>) params.get("source");
+        Map<UpdatePlan.Node, Object> versions = new HashMap<>();
+        for (UpdatePlan.Node node : nodes) {
+            Object version = SuperDetectNoopScript.valueAt(source, node.segments());
+            if (version != null) {
+                versions.put(node, version);
+            }
+        }
+        if (!versions.isEmpty()) {
+            checks.put(Arrays.asList(update.index(), update.id()), new Check(position, versions));
+        }
+    }
+
+    boolean isEmpty() {
+        return checks.isEmpty();
+    }
+
+    /**
+     * The search reading the refreshed versions of the documents checked.
+     */
+    SearchRequest request() {
+        Map<String, List<String>> idsByIndex = new LinkedHashMap<>();
+        Set<String> fields = new LinkedHashSet<>();
+        for (Map.Entry<List<String>, Check> check : checks.entrySet()) {
+            idsByIndex.computeIfAbsent(check.getKey().get(0), k -> new ArrayList<>()).add(check.getKey().get(1));
+            for (UpdatePlan.Node node : check.getValue().versions.keySet()) {
+                fields.add(node.path());
+            }
+        }
+        BoolQueryBuilder query = QueryBuilders.boolQuery();
+        for (Map.Entry<String, List<String>> ids : idsByIndex.entrySet()) {
+            query.should(QueryBuilders.boolQuery()
+                    .filter(QueryBuilders.termQuery(IndexFieldMapper.NAME, ids.getKey()))
+                    .filter(QueryBuilders.idsQuery().addIds(ids.getValue().toArray(new String[0]))));
+        }
+        SearchSourceBuilder search = new SearchSourceBuilder()
+                .query(QueryBuilders.constantScoreQuery(query))
+                .size(checks.size())
+                .fetchSource(false)
+                .version(true)
+                .seqNoAndPrimaryTerm(true)
+                .trackTotalHits(false);
+        fields.forEach(search::docValueField);
+        return new SearchRequest(idsByIndex.keySet().toArray(new String[0]))
+                .source(search)
+                .indicesOptions(IndicesOptions.lenientExpandOpen());
+    }
+
+    /**
+     * The noop responses of the stale updates found, by position in the batch.
+     */
+    Map<Integer, BulkItemResponse> stale(SearchHits hits) {
+        Map<Integer, BulkItemResponse> stale = null;
+        for (SearchHit hit : hits) {
+            Check check = checks.get(Arrays.asList(hit.getIndex(), hit.getId()));
+            if (check == null || hit.getShard() == null || !check.isStale(hit)) {
+                continue;
+            }
+            if (stale == null) {
+                stale = new HashMap<>();
+            }
+            stale.put(check.position, new BulkItemResponse(check.position, DocWriteRequest.OpType.UPDATE,
+                    new UpdateResponse(hit.getShard().getShardId(), hit.getId(), hit.getSeqNo(), hit.getPrimaryTerm(),
+                            hit.getVersion(), DocWriteResponse.Result.NOOP)));
+        }
+        return stale == null ? Collections.emptyMap() : stale;
+    }
+
+    private static final class Check {
+        private final int position;
+        private final Map<UpdatePlan.Node, Object> versions;
+
+        Check(int position, Map<UpdatePlan.Node, Object> versions) {
+            this.position = position;
+            this.versions = versions;
+        }
+
+        boolean isStale(SearchHit hit) {
+            for (Map.Entry<UpdatePlan.Node, Object> version : versions.entrySet()) {
+                DocumentField field = hit.field(version.getKey().path());
+                Object refreshed = field == null ? null : field.getValue();
+                try {
+                    if (version.getKey().handler().handle(refreshed, version.getValue()).isDocumentNooped()) {
+                        return true;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Not a number, let the update report it
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package org.wikimedia.search.extra.superdetectnoop;
 
-import static org.wikimedia.search.extra.superdetectnoop.ChangeHandler.TypeSafe.nullAndTypeSafe;
-
 import javax.annotation.Nonnull;
 
 /**
@@ -26,7 +24,12 @@ public final class VersionedDocumentHandler implements ChangeHandler.NonnullChan
     }
 
     private static final ChangeHandler<Object> INSTANCE =
-            nullAndTypeSafe(Number.class, new VersionedDocumentHandler());
+            new ChangeHandler.NullSafe<Object>(new ChangeHandler.TypeSafe<>(Number.class, new VersionedDocumentHandler())) {
+                @Override
+                public boolean mayNoopDocument() {
+                    return true;
+                }
+            };
 
     private VersionedDocumentHandler() {
         // Only a single instance is used
@@ -0,0 +1,202 @@
+package org.wikimedia.search.extra.termfreq;
+
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.gt;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.gte;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.lt;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.lte;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.opensearch.core.ParseField;
+import org.opensearch.core.common.ParsingException;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.common.io.stream.Writeable;
+import org.opensearch.core.xcontent.ObjectParser;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.core.xcontent.XContentParser;
+import org.wikimedia.search.extra.util.ConcreteIntPredicate;
+
+/**
+ * Range of term frequencies accepted by the term_freq queries.
+ */
+public class FreqRange implements Writeable {
+    private static final ParseField GT = new ParseField("gt");
+    private static final ParseField GTE = new ParseField("gte");
+    private static final ParseField LT = new ParseField("lt");
+    private static final ParseField LTE = new ParseField("lte");
+    private static final ParseField EQ = new ParseField("eq");
+
+    private Integer to;
+    private boolean includeTo;
+    private Integer from;
+    private boolean includeFrom;
+    private Integer equal;
+
+    public FreqRange() {
+    }
+
+    public FreqRange(StreamInput input) throws IOException {
+        from = input.readOptionalVInt();
+        to = input.readOptionalVInt();
+        equal = input.readOptionalVInt();
+        includeFrom = input.readBoolean();
+        includeTo = input.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput streamOutput) throws IOException {
+        streamOutput.writeOptionalVInt(this.from);
+        streamOutput.writeOptionalVInt(this.to);
+        streamOutput.writeOptionalVInt(this.equal);
+        streamOutput.writeBoolean(this.includeFrom);
+        streamOutput.writeBoolean(this.includeTo);
+    }
+
+    /**
+     * Declare the range fields on the parser of an object holding a range.
+     */
+    static <T> void declareFields(ObjectParser<T, Void> parser, Function<T, FreqRange> range) {
+        parser.declareInt((o, v) -> range.apply(o).setToStrict(v), LT);
+        parser.declareInt((o, v) -> range.apply(o).setTo(v), LTE);
+        parser.declareInt((o, v) -> range.apply(o).setFromStrict(v), GT);
+        parser.declareInt((o, v) -> range.apply(o).setFrom(v), GTE);
+        parser.declareInt((o, v) -> range.apply(o).setEqual(v), EQ);
+    }
+
+    void validate(XContentParser parser) {
+        if (equal != null) {
+            if (from != null || to != null) {
+                throw new ParsingException(parser.getTokenLocation(), EQ.getPreferredName() + " cannot be used with other comparators");
+            }
+        } else if (from == null && to == null) {
+            throw new ParsingException(parser.getTokenLocation(), "Invalid range provided eq or lt[e] and gt[e] must be provided");
+        }
+        if (from != null && to != null) {
+            int minDiff = (includeTo ? 0 : 1) + (includeFrom ? 0 : 1);
+            int diff = to - from;
+            if (diff < minDiff) {
+                throw new ParsingException(parser.getTokenLocation(),
+                        "Invalid range provided invalid range provided [" + from + "," + to + "]");
+            }
+        }
+    }
+
+    /**
+     * Add the range fields to the object being built.
+     */
+    void addXContent(XContentBuilder xContentBuilder) throws IOException {
+        if (equal != null) {
+            xContentBuilder.field(EQ.getPreferredName(), equal);
+        }
+        if (from != null) {
+            String gt = includeFrom ? GTE.getPreferredName() : GT.getPreferredName();
+            xContentBuilder.field(gt, from);
+        }
+        if (to != null) {
+            String lt = includeTo ? LTE.getPreferredName() : LT.getPreferredName();
+            xContentBuilder.field(lt, to);
+        }
+    }
+
+    ConcreteIntPredicate buildPredicate() {
+        if (equal != null) {
+            return ConcreteIntPredicate.eq(equal);
+        }
+        ConcreteIntPredicate predicate = null;
+        if (from != null) {
+            predicate = buildFromPredicate();
+        }
+        if (to != null) {
+            predicate = predicate != null ? predicate.and(buildToPredicate()) : buildToPredicate();
+        }
+        if (predicate == null) {
+            throw new IllegalStateException("at least equal, from or to must be non null");
+        }
+        return predicate;
+    }
+
+    private ConcreteIntPredicate buildFromPredicate() {
+        if (includeFrom) {
+            return gte(from);
+        } else {
+            return gt(from);
+        }
+    }
+
+    private ConcreteIntPredicate buildToPredicate() {
+        if (includeTo) {
+            return lte(to);
+        } else {
+            return lt(to);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FreqRange that = (FreqRange) o;
+        return includeTo == that.includeTo &&
+                includeFrom == that.includeFrom &&
+                Objects.equals(that.from, from) &&
+                Objects.equals(that.to, to) &&
+                Objects.equals(that.equal, equal);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(includeFrom, from, includeTo, to, equal);
+    }
+
+    public Integer getTo() {
+        return to;
+    }
+
+    public FreqRange setTo(Integer to) {
+        this.to = to;
+        this.includeTo = true;
+        return this;
+    }
+
+    public FreqRange setToStrict(Integer to) {
+        this.to = to;
+        this.includeTo = false;
+        return this;
+    }
+
+    public Integer getEqual() {
+        return equal;
+    }
+
+    public FreqRange setEqual(Integer equal) {
+        this.equal = equal;
+        return this;
+    }
+
+    public Integer getFrom() {
+        return from;
+    }
+
+    public FreqRange setFrom(Integer from) {
+        this.from = from;
+        this.includeFrom = true;
+        return this;
+    }
+
+    public FreqRange setFromStrict(Integer from) {
+        this.from = from;
+        this.includeFrom = false;
+        return this;
+    }
+
+    public boolean isIncludeTo() {
+        return includeTo;
+    }
+
+    public boolean isIncludeFrom() {
+        return includeFrom;
+    }
+}
@@ -4,18 +4,24 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.function.IntPredicate;
 
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ImpactsDISI;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MaxScoreCache;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.Similarity.SimScorer;
 import org.wikimedia.search.extra.util.ConcreteIntPredicate;
 
 public class TermFreqFilterQuery extends Query {
@@ -71,17 +77,47 @@ public class TermFreqFilterQuery extends Query {
 
     @Override
     public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) {
-        return new TermFreqFilterWeight(this, term, predicate);
+        return new TermFreqFilterWeight(this, term, predicate, scoreMode);
+    }
+
+    /**
+     * Scores documents by term frequency, which makes the impacts of the
+     * postings an upper bound of the scores.
+     */
+    static final SimScorer FREQ_SCORER = new SimScorer() {
+        @Override
+        public float score(float freq, long norm) {
+            return freq;
+        }
+    };
+
+    /**
+     * The lowest frequency passing a predicate as a score, 0 when every
+     * posting may pass it.
+     */
+    static float minFreqScore(int lowerBound) {
+        if (lowerBound <= 1) {
+            // Every posting has a frequency of at least 1
+            return 0;
+        }
+        float score = lowerBound;
+        // Don't let the float rounding skip matching documents
+        return (long) score > lowerBound ? Math.nextDown(score) : score;
     }
 
     private static final class TermFreqFilterWeight extends Weight {
         private final Term term;
         private final IntPredicate predicate;
+        private final ScoreMode scoreMode;
+        // Lowest frequency passing the predicate, as a score
+        private final float minFreq;
 
-        private TermFreqFilterWeight(Query q, Term term, IntPredicate predicate) {
+        private TermFreqFilterWeight(Query q, Term term, ConcreteIntPredicate predicate, ScoreMode scoreMode) {
             super(q);
             this.term = term;
             this.predicate = predicate;
+            this.scoreMode = scoreMode;
+            this.minFreq = minFreqScore(predicate.lowerBound());
         }
 
         @Override
@@ -101,53 +137,95 @@ public class TermFreqFilterQuery extends Query {
 
         @Override
         public Scorer scorer(LeafReaderContext leafReaderContext) throws IOException {
-            PostingsEnum innerDocs = leafReaderContext.reader().postings(term);
-            if (innerDocs == null) {
+            Terms terms = leafReaderContext.reader().terms(term.field());
+            if (terms == null) {
                 return null;
             }
-            TwoPhaseIterator iter = new TwoPhaseIterator(innerDocs) {
-                @Override
-                public boolean matches() throws IOException {
-                    return predicate.test(innerDocs.freq());
-                }
+            TermsEnum termsEnum = terms.iterator();
+            if (!termsEnum.seekExact(term.bytes())) {
+                return null;
+            }
+            if (scoreMode == ScoreMode.TOP_SCORES || minFreq > 0) {
+                // Expose block max scores so that top-k collection can skip
+                // blocks that can't compete, and skip the blocks where no
+                // document has a frequency high enough to pass the predicate.
+                ImpactsEnum impacts = termsEnum.impacts(PostingsEnum.FREQS);
+                MaxScoreCache maxScoreCache = new MaxScoreCache(impacts, FREQ_SCORER);
+                ImpactsDISI approximation = new ImpactsDISI(impacts, maxScoreCache);
+                approximation.setMinCompetitiveScore(minFreq);
+                return new TermFreqScorer(this, impacts, approximation) {
+                    @Override
+                    public int advanceShallow(int target) throws IOException {
+                        return maxScoreCache.advanceShallow(target);
+                    }
+
+                    @Override
+                    public float getMaxScore(int upTo) throws IOException {
+                        return maxScoreCache.getMaxScore(upTo);
+                    }
+
+                    @Override
+                    public void setMinCompetitiveScore(float minScore) {
+                        approximation.setMinCompetitiveScore(Math.max(minScore, minFreq));
+                    }
+                };
+            }
+            PostingsEnum postings = termsEnum.postings(null, PostingsEnum.FREQS);
+            return new TermFreqScorer(this, postings, postings);
+        }
 
-                @Override
-                public float matchCost() {
-                    return 3;
-                }
-            };
+        @Override
+        public boolean isCacheable(LeafReaderContext leafReaderContext) {
+            return true;
+        }
 
-            return new Scorer(this) {
-                @Override
-                public int docID() {
-                    return innerDocs.docID();
-                }
+        /**
+         * Matches the documents whose frequency of the term passes the predicate.
+         */
+        private class TermFreqScorer extends Scorer {
+            private final PostingsEnum innerDocs;
+            private final TwoPhaseIterator iter;
+
+            TermFreqScorer(Weight weight, PostingsEnum innerDocs, DocIdSetIterator approximation) {
+                super(weight);
+                this.innerDocs = innerDocs;
+                this.iter = new TwoPhaseIterator(approximation) {
+                    @Override
+                    public boolean matches() throws IOException {
+                        return predicate.test(innerDocs.freq());
+                    }
+
+                    @Override
+                    public float matchCost() {
+                        return 3;
+                    }
+                };
+            }
 
-                @Override
-                public float score() throws IOException {
-                    return innerDocs.freq();
-                }
+            @Override
+            public int docID() {
+                return innerDocs.docID();
+            }
 
-                @Override
-                public DocIdSetIterator iterator() {
-                    return innerDocs;
-                }
+            @Override
+            public float score() throws IOException {
+                return innerDocs.freq();
+            }
 
-                @Override
-                public TwoPhaseIterator twoPhaseIterator() {
-                    return iter;
-                }
+            @Override
+            public DocIdSetIterator iterator() {
+                return TwoPhaseIterator.asDocIdSetIterator(iter);
+            }
 
-                @Override
-                public float getMaxScore(int upTo) {
-                    return Float.MAX_VALUE;
-                }
-            };
-        }
+            @Override
+            public TwoPhaseIterator twoPhaseIterator() {
+                return iter;
+            }
 
-        @Override
-        public boolean isCacheable(LeafReaderContext leafReaderContext) {
-            return true;
+            @Override
+            public float getMaxScore(int upTo) throws IOException {
+                return Float.MAX_VALUE;
+            }
         }
     }
 }
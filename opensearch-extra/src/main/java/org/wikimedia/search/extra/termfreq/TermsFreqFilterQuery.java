@@ -0,0 +1,366 @@
+package org.wikimedia.search.extra.termfreq;
+
+import static org.wikimedia.search.extra.termfreq.TermFreqFilterQuery.FREQ_SCORER;
+import static org.wikimedia.search.extra.termfreq.TermFreqFilterQuery.minFreqScore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.ConjunctionUtils;
+import org.apache.lucene.search.DisiPriorityQueue;
+import org.apache.lucene.search.DisiWrapper;
+import org.apache.lucene.search.DisjunctionDISIApproximation;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ImpactsDISI;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MaxScoreCache;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
+import org.wikimedia.search.extra.util.ConcreteIntPredicate;
+
+/**
+ * Filters on the frequencies of several terms of a field at once.
+ *
+ * The postings of all the terms are read through a single conjunction or
+ * disjunction and the predicates are checked by a single two-phase iterator,
+ * instead of building one {@link TermFreqFilterQuery} per term in a boolean
+ * query. The score of a matching document is the sum of the frequencies of
+ * the terms whose predicate passes.
+ */
+public class TermsFreqFilterQuery extends Query {
+    private final String field;
+    // Sorted so that the terms are looked up in a single pass over the terms dictionary
+    private final SortedMap<BytesRef, ConcreteIntPredicate> predicates;
+    private final boolean conjunction;
+
+    /**
+     * @param conjunction true if every term must pass its predicate, false if one is enough
+     */
+    public TermsFreqFilterQuery(String field, Map<BytesRef, ConcreteIntPredicate> predicates, boolean conjunction) {
+        if (predicates.isEmpty()) {
+            throw new IllegalArgumentException("At least one term must be provided");
+        }
+        this.field = Objects.requireNonNull(field);
+        this.predicates = Collections.unmodifiableSortedMap(new TreeMap<>(predicates));
+        this.conjunction = conjunction;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public SortedMap<BytesRef, ConcreteIntPredicate> getPredicates() {
+        return predicates;
+    }
+
+    public boolean isConjunction() {
+        return conjunction;
+    }
+
+    @Override
+    public String toString(String field) {
+        StringBuilder buffer = new StringBuilder("terms_freq(");
+        if (!this.field.equals(field)) {
+            buffer.append(this.field);
+            buffer.append(':');
+        }
+        String separator = conjunction ? " AND " : " OR ";
+        boolean first = true;
+        for (Map.Entry<BytesRef, ConcreteIntPredicate> entry : predicates.entrySet()) {
+            if (!first) {
+                buffer.append(separator);
+            }
+            first = false;
+            buffer.append('[');
+            buffer.append(entry.getKey().utf8ToString());
+            buffer.append(',');
+            buffer.append(entry.getValue());
+            buffer.append(']');
+        }
+        buffer.append(')');
+        return buffer.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TermsFreqFilterQuery that = (TermsFreqFilterQuery) o;
+        return conjunction == that.conjunction &&
+                Objects.equals(field, that.field) &&
+                Objects.equals(predicates, that.predicates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(classHash(), field, predicates, conjunction);
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+        if (visitor.acceptField(field)) {
+            Term[] terms = predicates.keySet().stream().map(t -> new Term(field, t)).toArray(Term[]::new);
+            visitor.getSubVisitor(conjunction ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD, this)
+                    .consumeTerms(this, terms);
+        }
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) {
+        return new TermsFreqFilterWeight(this);
+    }
+
+    private final class TermsFreqFilterWeight extends Weight {
+        private TermsFreqFilterWeight(Query q) {
+            super(q);
+        }
+
+        @Override
+        public Explanation explain(LeafReaderContext leafReaderContext, int i) throws IOException {
+            List<Explanation> details = new ArrayList<>(predicates.size());
+            int matching = 0;
+            long sum = 0;
+            for (Map.Entry<BytesRef, ConcreteIntPredicate> entry : predicates.entrySet()) {
+                Term term = new Term(field, entry.getKey());
+                PostingsEnum postings = leafReaderContext.reader().postings(term);
+                if (postings != null && postings.advance(i) == i) {
+                    String desc = "freq:" + postings.freq() + " " + entry.getValue() + " (" + term + ")";
+                    if (entry.getValue().test(postings.freq())) {
+                        matching++;
+                        sum += postings.freq();
+                        details.add(Explanation.match(postings.freq(), desc));
+                    } else {
+                        details.add(Explanation.noMatch(desc));
+                    }
+                } else {
+                    details.add(Explanation.noMatch("(" + term + ")"));
+                }
+            }
+            boolean match = conjunction ? matching == predicates.size() : matching > 0;
+            String desc = conjunction ? "all of:" : "any of:";
+            return match ? Explanation.match(sum, desc, details) : Explanation.noMatch(desc, details);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext leafReaderContext) throws IOException {
+            Terms terms = leafReaderContext.reader().terms(field);
+            if (terms == null) {
+                return null;
+            }
+            TermsEnum termsEnum = terms.iterator();
+            List<ClauseScorer> clauses = new ArrayList<>(predicates.size());
+            for (Map.Entry<BytesRef, ConcreteIntPredicate> entry : predicates.entrySet()) {
+                if (termsEnum.seekExact(entry.getKey())) {
+                    clauses.add(clause(termsEnum, entry.getValue()));
+                } else if (conjunction) {
+                    return null;
+                }
+            }
+            if (clauses.isEmpty()) {
+                return null;
+            }
+            return conjunction ? new ConjunctionScorer(this, clauses) : new DisjunctionScorer(this, clauses);
+        }
+
+        private ClauseScorer clause(TermsEnum termsEnum, ConcreteIntPredicate predicate) throws IOException {
+            float minFreq = minFreqScore(predicate.lowerBound());
+            if (minFreq > 0) {
+                // Skip the blocks where no document passes the predicate
+                ImpactsEnum impacts = termsEnum.impacts(PostingsEnum.FREQS);
+                ImpactsDISI approximation = new ImpactsDISI(impacts, new MaxScoreCache(impacts, FREQ_SCORER));
+                approximation.setMinCompetitiveScore(minFreq);
+                return new ClauseScorer(this, impacts, approximation, predicate);
+            }
+            PostingsEnum postings = termsEnum.postings(null, PostingsEnum.FREQS);
+            return new ClauseScorer(this, postings, postings, predicate);
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext leafReaderContext) {
+            return true;
+        }
+    }
+
+    /**
+     * Postings of a single term, only used to iterate the docs of the combined
+     * approximations and to check its predicate on the current doc.
+     */
+    private static final class ClauseScorer extends Scorer {
+        private final PostingsEnum postings;
+        private final DocIdSetIterator approximation;
+        private final ConcreteIntPredicate predicate;
+
+        ClauseScorer(Weight weight, PostingsEnum postings, DocIdSetIterator approximation, ConcreteIntPredicate predicate) {
+            super(weight);
+            this.postings = postings;
+            this.approximation = approximation;
+            this.predicate = predicate;
+        }
+
+        /**
+         * The frequency of the term in the current doc, 0 when it does not pass the predicate.
+         */
+        int matchingFreq() throws IOException {
+            int freq = postings.freq();
+            return predicate.test(freq) ? freq : 0;
+        }
+
+        @Override
+        public int docID() {
+            return approximation.docID();
+        }
+
+        @Override
+        public float score() throws IOException {
+            return postings.freq();
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return approximation;
+        }
+
+        @Override
+        public float getMaxScore(int upTo) throws IOException {
+            return Float.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Matches the documents where the frequencies of the terms pass the predicates,
+     * scored by the sum of these frequencies.
+     */
+    private abstract static class TermsFreqScorer extends Scorer {
+        private final DocIdSetIterator approximation;
+        private final TwoPhaseIterator iter;
+        // Sum of the matching frequencies, computed when checking the current doc
+        private long freqs;
+
+        TermsFreqScorer(Weight weight, DocIdSetIterator approximation, int nbClauses) {
+            super(weight);
+            this.approximation = approximation;
+            this.iter = new TwoPhaseIterator(approximation) {
+                @Override
+                public boolean matches() throws IOException {
+                    freqs = matchingFreqs();
+                    return freqs > 0;
+                }
+
+                @Override
+                public float matchCost() {
+                    return 3 * nbClauses;
+                }
+            };
+        }
+
+        /**
+         * Sum of the frequencies of the clauses passing their predicates
+         * on the current doc, 0 if the doc does not match.
+         */
+        abstract long matchingFreqs() throws IOException;
+
+        @Override
+        public int docID() {
+            return approximation.docID();
+        }
+
+        @Override
+        public float score() throws IOException {
+            return freqs;
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return TwoPhaseIterator.asDocIdSetIterator(iter);
+        }
+
+        @Override
+        public TwoPhaseIterator twoPhaseIterator() {
+            return iter;
+        }
+
+        @Override
+        public float getMaxScore(int upTo) throws IOException {
+            return Float.MAX_VALUE;
+        }
+    }
+
+    private static final class ConjunctionScorer extends TermsFreqScorer {
+        private final List<ClauseScorer> clauses;
+
+        ConjunctionScorer(Weight weight, List<ClauseScorer> clauses) {
+            super(weight, intersect(clauses), clauses.size());
+            this.clauses = clauses;
+        }
+
+        private static DocIdSetIterator intersect(List<ClauseScorer> clauses) {
+            if (clauses.size() == 1) {
+                return clauses.get(0).iterator();
+            }
+            return ConjunctionUtils.intersectScorers(new ArrayList<>(clauses));
+        }
+
+        @Override
+        long matchingFreqs() throws IOException {
+            long sum = 0;
+            for (ClauseScorer clause : clauses) {
+                int freq = clause.matchingFreq();
+                if (freq == 0) {
+                    return 0;
+                }
+                sum += freq;
+            }
+            return sum;
+        }
+    }
+
+    private static final class DisjunctionScorer extends TermsFreqScorer {
+        private final DisiPriorityQueue queue;
+
+        DisjunctionScorer(Weight weight, List<ClauseScorer> clauses) {
+            this(weight, queue(clauses), clauses.size());
+        }
+
+        private DisjunctionScorer(Weight weight, DisiPriorityQueue queue, int nbClauses) {
+            super(weight, new DisjunctionDISIApproximation(queue), nbClauses);
+            this.queue = queue;
+        }
+
+        private static DisiPriorityQueue queue(List<ClauseScorer> clauses) {
+            DisiPriorityQueue queue = new DisiPriorityQueue(clauses.size());
+            for (ClauseScorer clause : clauses) {
+                queue.add(new DisiWrapper(clause));
+            }
+            return queue;
+        }
+
+        @Override
+        long matchingFreqs() throws IOException {
+            long sum = 0;
+            // Only the clauses positioned on the current doc
+            for (DisiWrapper w = queue.topList(); w != null; w = w.next) {
+                sum += ((ClauseScorer) w.scorer).matchingFreq();
+            }
+            return sum;
+        }
+    }
+}
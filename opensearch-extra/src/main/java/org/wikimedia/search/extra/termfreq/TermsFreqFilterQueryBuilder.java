@@ -0,0 +1,223 @@
+package org.wikimedia.search.extra.termfreq;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.opensearch.core.ParseField;
+import org.opensearch.core.common.ParsingException;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.xcontent.ObjectParser;
+import org.opensearch.core.xcontent.XContentBuilder;
+import org.opensearch.core.xcontent.XContentParser;
+import org.opensearch.index.mapper.MappedFieldType;
+import org.opensearch.index.query.AbstractQueryBuilder;
+import org.opensearch.index.query.Operator;
+import org.opensearch.index.query.QueryShardContext;
+import org.wikimedia.search.extra.util.ConcreteIntPredicate;
+
+/**
+ * Builds a terms_freq query, a term_freq query on several terms of the same field.
+ */
+public class TermsFreqFilterQueryBuilder extends AbstractQueryBuilder<TermsFreqFilterQueryBuilder> {
+    public static final String NAME = "terms_freq";
+
+    private static final ParseField FIELD = new ParseField("field");
+    private static final ParseField TERMS = new ParseField("terms");
+    private static final ParseField OPERATOR = new ParseField("operator");
+    private static final ParseField SUM_FREQS = new ParseField("sum_freqs");
+
+    private static final ObjectParser<TermsFreqFilterQueryBuilder, Void> PARSER = new ObjectParser<>(NAME, TermsFreqFilterQueryBuilder::new);
+    private static final ObjectParser<FreqRange, Void> RANGE_PARSER = new ObjectParser<>("range", FreqRange::new);
+
+    static {
+        PARSER.declareString(TermsFreqFilterQueryBuilder::setField, FIELD);
+        PARSER.declareObject((builder, terms) -> builder.terms.putAll(terms), (p, c) -> parseTerms(p), TERMS);
+        PARSER.declareString((builder, op) -> builder.setOperator(Operator.fromString(op)), OPERATOR);
+        PARSER.declareBoolean(TermsFreqFilterQueryBuilder::setSumFreqs, SUM_FREQS);
+        AbstractQueryBuilder.declareStandardFields(PARSER);
+
+        FreqRange.declareFields(RANGE_PARSER, range -> range);
+    }
+
+    private String field;
+    private final Map<String, FreqRange> terms = new TreeMap<>();
+    private Operator operator = Operator.OR;
+    private boolean sumFreqs;
+
+    public TermsFreqFilterQueryBuilder() {
+    }
+
+    public TermsFreqFilterQueryBuilder(String field) {
+        this.field = field;
+    }
+
+    public TermsFreqFilterQueryBuilder(StreamInput input) throws IOException {
+        super(input);
+        field = input.readString();
+        int size = input.readVInt();
+        for (int i = 0; i < size; i++) {
+            terms.put(input.readString(), new FreqRange(input));
+        }
+        operator = Operator.readFromStream(input);
+        sumFreqs = input.readBoolean();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput streamOutput) throws IOException {
+        streamOutput.writeString(field);
+        streamOutput.writeVInt(terms.size());
+        for (Map.Entry<String, FreqRange> entry : terms.entrySet()) {
+            streamOutput.writeString(entry.getKey());
+            entry.getValue().writeTo(streamOutput);
+        }
+        operator.writeTo(streamOutput);
+        streamOutput.writeBoolean(sumFreqs);
+    }
+
+    public static TermsFreqFilterQueryBuilder fromXContent(XContentParser parser) throws IOException {
+        TermsFreqFilterQueryBuilder builder;
+        try {
+            builder = PARSER.parse(parser, null);
+        } catch (IllegalArgumentException iae) {
+            throw new ParsingException(parser.getTokenLocation(), iae.getMessage(), iae);
+        }
+
+        if (builder.field == null) {
+            throw new ParsingException(parser.getTokenLocation(), FIELD.getPreferredName() + " is mandatory");
+        }
+        if (builder.terms.isEmpty()) {
+            throw new ParsingException(parser.getTokenLocation(), TERMS.getPreferredName() + " is mandatory");
+        }
+        for (FreqRange range : builder.terms.values()) {
+            range.validate(parser);
+        }
+        return builder;
+    }
+
+    private static Map<String, FreqRange> parseTerms(XContentParser parser) throws IOException {
+        Map<String, FreqRange> terms = new TreeMap<>();
+        String term = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                term = parser.currentName();
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                terms.put(term, RANGE_PARSER.parse(parser, null));
+            } else {
+                throw new ParsingException(parser.getTokenLocation(),
+                        TERMS.getPreferredName() + " expects an object per term, got [" + token + "]");
+            }
+        }
+        return terms;
+    }
+
+    @Override
+    protected void doXContent(XContentBuilder xContentBuilder, Params params) throws IOException {
+        xContentBuilder.startObject(NAME);
+        if (field != null) {
+            xContentBuilder.field(FIELD.getPreferredName(), field);
+        }
+        xContentBuilder.startObject(TERMS.getPreferredName());
+        for (Map.Entry<String, FreqRange> entry : terms.entrySet()) {
+            xContentBuilder.startObject(entry.getKey());
+            entry.getValue().addXContent(xContentBuilder);
+            xContentBuilder.endObject();
+        }
+        xContentBuilder.endObject();
+        if (operator != Operator.OR) {
+            xContentBuilder.field(OPERATOR.getPreferredName(), operator.name().toLowerCase(Locale.ROOT));
+        }
+        if (sumFreqs) {
+            xContentBuilder.field(SUM_FREQS.getPreferredName(), sumFreqs);
+        }
+        printBoostAndQueryName(xContentBuilder);
+        xContentBuilder.endObject();
+    }
+
+    @Override
+    protected Query doToQuery(QueryShardContext queryShardContext) throws IOException {
+        String fieldName = field;
+        MappedFieldType mapper = queryShardContext.fieldMapper(field);
+        if (mapper != null) {
+            if (!mapper.isSearchable()) {
+                throw new IllegalArgumentException("Cannot search on field [" + field + "] since it is not indexed.");
+            }
+            fieldName = mapper.name();
+        }
+        Map<BytesRef, ConcreteIntPredicate> predicates = new TreeMap<>();
+        for (Map.Entry<String, FreqRange> entry : terms.entrySet()) {
+            predicates.put(new BytesRef(entry.getKey()), entry.getValue().buildPredicate());
+        }
+        Query query = new TermsFreqFilterQuery(fieldName, predicates, operator == Operator.AND);
+        return sumFreqs ? query : new ConstantScoreQuery(query);
+    }
+
+    @Override
+    protected boolean doEquals(TermsFreqFilterQueryBuilder other) {
+        return sumFreqs == other.sumFreqs &&
+                operator == other.operator &&
+                Objects.equals(field, other.field) &&
+                Objects.equals(terms, other.terms);
+    }
+
+    @Override
+    protected int doHashCode() {
+        return Objects.hash(field, terms, operator, sumFreqs);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public Map<String, FreqRange> getTerms() {
+        return Collections.unmodifiableMap(terms);
+    }
+
+    /**
+     * Filter on the frequency of term.
+     */
+    public TermsFreqFilterQueryBuilder addTerm(String term, FreqRange range) {
+        terms.put(term, range);
+        return this;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Whether one (OR) or all (AND) the terms must pass their range.
+     */
+    public void setOperator(Operator operator) {
+        this.operator = Objects.requireNonNull(operator);
+    }
+
+    public boolean isSumFreqs() {
+        return sumFreqs;
+    }
+
+    /**
+     * Score the documents with the sum of the frequencies of the terms
+     * passing their range, instead of a constant score.
+     */
+    public void setSumFreqs(boolean sumFreqs) {
+        this.sumFreqs = sumFreqs;
+    }
+}
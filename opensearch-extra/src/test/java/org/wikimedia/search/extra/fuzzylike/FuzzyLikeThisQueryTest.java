@@ -0,0 +1,175 @@
+package org.wikimedia.search.extra.fuzzylike;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.junit.After;
+import org.junit.Before;
+
+@Deprecated
+public class FuzzyLikeThisQueryTest extends LuceneTestCase {
+    private static final String FIELD = "text";
+
+    private final Analyzer analyzer = new WhitespaceAnalyzer();
+    private Directory dir;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    @Before
+    public void setupIndex() throws IOException {
+        dir = newDirectory();
+        try (IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(analyzer))) {
+            for (int i = 0; i < 10; i++) {
+                addDoc(writer, "fuzzy concept");
+                if (i % 3 == 0) {
+                    // spread the docs over several segments
+                    writer.commit();
+                }
+            }
+            addDoc(writer, "fuzzi border");
+            addDoc(writer, "fuzzyy fuzzyy thing");
+            addDoc(writer, "sharp image");
+        }
+        reader = DirectoryReader.open(dir);
+        searcher = new IndexSearcher(reader);
+    }
+
+    private static void addDoc(IndexWriter writer, String text) throws IOException {
+        Document doc = new Document();
+        doc.add(new TextField(FIELD, text, Field.Store.NO));
+        writer.addDocument(doc);
+    }
+
+    public void testVariantsShareSourceTermStats() throws IOException {
+        List<TermQuery> variants = variantQueries(rewrite("fuzzy", false));
+        assertEquals(3, variants.size());
+        int df = reader.docFreq(new Term(FIELD, "fuzzy"));
+        long ttf = reader.totalTermFreq(new Term(FIELD, "fuzzy"));
+        for (TermQuery variant : variants) {
+            assertEquals(variant.getTerm().text(), df, variant.getTermStates().docFreq());
+            assertEquals(variant.getTerm().text(), ttf, variant.getTermStates().totalTermFreq());
+        }
+    }
+
+    public void testUnknownSourceTermUsesAverageStats() throws IOException {
+        List<TermQuery> variants = variantQueries(rewrite("fuzzz", false));
+        assertEquals(3, variants.size());
+        // fuzzy: 10 docs, fuzzi: 1 doc, fuzzyy: 1 doc
+        for (TermQuery variant : variants) {
+            assertEquals(variant.getTerm().text(), 4, variant.getTermStates().docFreq());
+        }
+    }
+
+    public void testExactTermScoresBest() throws IOException {
+        // the variants do not benefit from being rarer than the source term
+        int best = searcher.search(fuzzyLikeThis("fuzzy", false), 1).scoreDocs[0].doc;
+        assertTrue(searcher.explain(new TermQuery(new Term(FIELD, "fuzzy")), best).isMatch());
+    }
+
+    public void testCandidatesAreCachedPerSegment() throws IOException {
+        FuzzyLikeThisQuery.CANDIDATES.invalidateAll();
+        Query first = rewrite("fuzzy image", false);
+        assertEquals(2 * reader.leaves().size(), FuzzyLikeThisQuery.CANDIDATES.count());
+        Query second = rewrite("fuzzy image", false);
+        assertEquals(2 * reader.leaves().size(), FuzzyLikeThisQuery.CANDIDATES.count());
+        assertEquals(first, second);
+
+        // A refresh only expands the new segments
+        try (IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(analyzer).setMergePolicy(NoMergePolicy.INSTANCE))) {
+            addDoc(writer, "fuzzi image");
+        }
+        DirectoryReader refreshed = DirectoryReader.openIfChanged(reader);
+        assertNotNull(refreshed);
+        try {
+            Set<IndexReader.CacheKey> segments = new HashSet<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                segments.add(leaf.reader().getCoreCacheHelper().getKey());
+            }
+            for (LeafReaderContext leaf : refreshed.leaves()) {
+                segments.add(leaf.reader().getCoreCacheHelper().getKey());
+            }
+            Query query = fuzzyLikeThis("fuzzy image", false).rewrite(new IndexSearcher(refreshed));
+            assertEquals(2 * segments.size(), FuzzyLikeThisQuery.CANDIDATES.count());
+            assertEquals(4, variantQueries(query).size());
+        } finally {
+            refreshed.close();
+        }
+        // The segments of refreshed only are closed
+        assertEquals(2 * reader.leaves().size(), FuzzyLikeThisQuery.CANDIDATES.count());
+        reader.close();
+        assertEquals(0, FuzzyLikeThisQuery.CANDIDATES.count());
+        reader = DirectoryReader.open(dir);
+    }
+
+    public void testIgnoreTF() throws IOException {
+        BooleanQuery query = (BooleanQuery) rewrite("fuzzy", true);
+        for (BooleanClause clause : ((BooleanQuery) query.clauses().get(0).getQuery()).clauses()) {
+            assertThat(clause.getQuery(), instanceOf(BoostQuery.class));
+            assertThat(((BoostQuery) clause.getQuery()).getQuery(), instanceOf(ConstantScoreQuery.class));
+        }
+    }
+
+    public void testNoVariants() throws IOException {
+        assertThat(rewrite("unrelated", false), instanceOf(MatchNoDocsQuery.class));
+        FuzzyLikeThisQuery query = new FuzzyLikeThisQuery(25, analyzer);
+        query.addTerms("fuzzy", "unknown_field", 2, 0);
+        assertThat(query.rewrite(searcher), instanceOf(MatchNoDocsQuery.class));
+    }
+
+    private FuzzyLikeThisQuery fuzzyLikeThis(String text, boolean ignoreTF) {
+        FuzzyLikeThisQuery query = new FuzzyLikeThisQuery(25, analyzer);
+        query.addTerms(text, FIELD, 2, 0);
+        query.setIgnoreTF(ignoreTF);
+        return query;
+    }
+
+    private Query rewrite(String text, boolean ignoreTF) throws IOException {
+        return fuzzyLikeThis(text, ignoreTF).rewrite(searcher);
+    }
+
+    private static List<TermQuery> variantQueries(Query query) {
+        List<TermQuery> variants = new ArrayList<>();
+        if (query instanceof BooleanQuery) {
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                variants.addAll(variantQueries(clause.getQuery()));
+            }
+        } else if (query instanceof BoostQuery) {
+            variants.addAll(variantQueries(((BoostQuery) query).getQuery()));
+        } else if (query instanceof TermQuery) {
+            variants.add((TermQuery) query);
+        }
+        return variants;
+    }
+
+    @After
+    public void closeStuff() throws IOException {
+        reader.close();
+        dir.close();
+    }
+}
@@ -83,6 +83,26 @@ public class SearchLatencyListenerTest extends RandomizedTest {
         assertEquals(tookInNanos, stat.getLatency().nanos(), delta(tookInNanos));
     }
 
+    @Test
+    public void ewmaFollowsIntervalMeans() {
+        SearchLatencyListener listener = newListener();
+        SearchContext context = mockSearchContext(Collections.singletonList("foo"));
+        assertEquals(0L, listener.getEwmaMillis("foo"));
+
+        listener.onQueryPhase(context, TimeValue.timeValueMillis(100).nanos());
+        listener.rotate();
+        assertEquals(100D, listener.getEwmaMillis("foo"), delta(100D));
+
+        listener.onQueryPhase(context, TimeValue.timeValueMillis(1000).nanos());
+        listener.rotate();
+        double expected = SearchLatencyListener.EWMA_ALPHA * 1000 + (1 - SearchLatencyListener.EWMA_ALPHA) * 100;
+        assertEquals(expected, listener.getEwmaMillis("foo"), delta(expected));
+
+        // rotating without any data should not change the average
+        listener.rotate();
+        assertEquals(expected, listener.getEwmaMillis("foo"), delta(expected));
+    }
+
     @Test
     public void histogramIsApproximatelyCorrect() {
         SearchLatencyListener listener = newListener();
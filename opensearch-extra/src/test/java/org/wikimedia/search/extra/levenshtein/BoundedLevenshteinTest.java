@@ -0,0 +1,95 @@
+package org.wikimedia.search.extra.levenshtein;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.search.spell.LevenshteinDistance;
+import org.junit.Test;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+public class BoundedLevenshteinTest extends RandomizedTest {
+    private final LevenshteinDistance levenshtein = new LevenshteinDistance();
+
+    @Test
+    public void sameScoresAsLuceneWithinMaxDistance() {
+        for (int i = 0; i < 1000; i++) {
+            String target = randomText();
+            int maxDistance = randomIntBetween(0, 12);
+            BoundedLevenshtein bounded = new BoundedLevenshtein(target, maxDistance);
+            for (int j = 0; j < 10; j++) {
+                String other = randomBoolean() ? randomText() : mutate(target);
+                float expected = levenshtein.getDistance(target, other);
+                int distance = exactDistance(target, other);
+                String msg = target + " / " + other + " max " + maxDistance;
+                if (distance <= maxDistance) {
+                    assertEquals(msg, distance, bounded.distance(other));
+                    assertEquals(msg, expected, bounded.score(other, -1), 0F);
+                } else {
+                    assertTrue(msg, bounded.distance(other) > maxDistance);
+                    assertEquals(msg, -1, bounded.score(other, -1), 0F);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unbounded() {
+        BoundedLevenshtein bounded = new BoundedLevenshtein("kitten", Integer.MAX_VALUE);
+        assertEquals(3, bounded.distance("sitting"));
+        assertEquals(6, bounded.distance(""));
+        assertEquals(levenshtein.getDistance("kitten", "sitting"), bounded.score("sitting", 0), 0F);
+    }
+
+    @Test
+    public void emptyStrings() {
+        BoundedLevenshtein bounded = new BoundedLevenshtein("", 2);
+        assertEquals(1F, bounded.score("", 0), 0F);
+        assertEquals(0F, bounded.score("ab", -1), 0F);
+        assertEquals(-1F, bounded.score("abc", -1), 0F);
+    }
+
+    private static String randomText() {
+        return randomAsciiLettersOfLengthBetween(0, 3) + (randomBoolean() ? randomAsciiLettersOfLengthBetween(0, 20) : "");
+    }
+
+    private static String mutate(String text) {
+        StringBuilder sb = new StringBuilder(text);
+        int edits = randomIntBetween(0, 6);
+        for (int i = 0; i < edits; i++) {
+            int pos = sb.length() == 0 ? 0 : randomIntBetween(0, sb.length() - 1);
+            switch (randomIntBetween(0, 2)) {
+                case 0:
+                    sb.insert(pos, randomAsciiLettersOfLength(1));
+                    break;
+                case 1:
+                    if (sb.length() > 0) {
+                        sb.deleteCharAt(pos);
+                    }
+                    break;
+                default:
+                    if (sb.length() > 0) {
+                        sb.setCharAt(pos, randomAsciiLettersOfLength(1).charAt(0));
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int exactDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1, d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
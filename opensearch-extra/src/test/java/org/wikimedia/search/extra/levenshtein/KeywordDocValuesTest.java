@@ -0,0 +1,49 @@
+package org.wikimedia.search.extra.levenshtein;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.apache.lucene.util.BytesRef;
+import org.opensearch.OpenSearchException;
+
+public class KeywordDocValuesTest extends LuceneTestCase {
+    public void testReadValues() throws IOException {
+        try (Directory dir = newDirectory()) {
+            try (IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig())) {
+                writer.addDocument(doc("Haste makes waste"));
+                writer.addDocument(doc());
+                writer.addDocument(doc("Ignorance is bliss"));
+                writer.addDocument(doc("Paste makes waste", "Ignorance is strength"));
+                writer.forceMerge(1);
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                LeafReader leaf = reader.leaves().get(0).reader();
+                KeywordDocValues values = new KeywordDocValues(leaf, "content");
+                assertEquals("Haste makes waste", values.get(0));
+                // same doc twice, as when explaining
+                assertEquals("Haste makes waste", values.get(0));
+                assertNull(values.get(1));
+                assertEquals("Ignorance is bliss", values.get(2));
+                // out of order
+                assertEquals("Haste makes waste", values.get(0));
+                expectThrows(OpenSearchException.class, () -> values.get(3));
+
+                assertNull(new KeywordDocValues(leaf, "unknown").get(0));
+            }
+        }
+    }
+
+    private static Document doc(String... values) {
+        Document doc = new Document();
+        for (String value : values) {
+            doc.add(new SortedSetDocValuesField("content", new BytesRef(value)));
+        }
+        return doc;
+    }
+}
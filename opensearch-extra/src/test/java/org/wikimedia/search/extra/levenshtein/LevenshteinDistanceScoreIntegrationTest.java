@@ -25,9 +25,11 @@ public class LevenshteinDistanceScoreIntegrationTest extends AbstractPluginInteg
                 jsonBuilder().startObject().startObject("properties")
                         .startObject("content").field("type", "text")
                             .field("store", false)
-                            .field("copy_to", "content_stored").endObject()
+                            .array("copy_to", "content_stored", "content_keyword").endObject()
                         .startObject("content_stored")
                             .field("type", "text").field("store", true).endObject()
+                        .startObject("content_keyword")
+                            .field("type", "keyword").endObject()
                         .endObject().endObject()).get());
 
         client().prepareIndex("test").setId("1").setSource("content", "Haste makes waste").get();
@@ -44,6 +46,8 @@ public class LevenshteinDistanceScoreIntegrationTest extends AbstractPluginInteg
         assertions("content");
         // Test with data loaded from stored values
         assertions("content_stored");
+        // Test with data loaded from doc values
+        assertions("content_keyword");
 
         assertFailures(client().prepareSearch("test").setExplain(randomBoolean())
                 .setQuery(functionScoreQuery(termQuery("content", "ignorance"),
@@ -20,6 +20,7 @@ import org.wikimedia.search.extra.ExtraCorePlugin;
 
 public class LevenshteinDistanceScoreOpenSearchTest extends AbstractQueryTestCase<FunctionScoreQueryBuilder> {
     private boolean hasMissing;
+    private Integer maxDistance;
 
     private static final String MY_FIELD = "my_test_field";
 
@@ -42,6 +43,8 @@ public class LevenshteinDistanceScoreOpenSearchTest extends AbstractQueryTestCas
         if (this.hasMissing) {
             scoreBuilder.missing("missing value");
         }
+        this.maxDistance = randomBoolean() ? randomIntBetween(0, 10) : null;
+        scoreBuilder.maxDistance(this.maxDistance);
         return QueryBuilders.functionScoreQuery(scoreBuilder);
     }
 
@@ -56,5 +59,6 @@ public class LevenshteinDistanceScoreOpenSearchTest extends AbstractQueryTestCas
         assertEquals(MY_FIELD, lfunction.getFieldType().name());
         assertEquals("text value", lfunction.getValue());
         assertEquals(this.hasMissing ? "missing value" : null, lfunction.getMissing());
+        assertEquals(this.maxDistance, lfunction.getMaxDistance());
     }
 }
@@ -0,0 +1,92 @@
+package org.wikimedia.search.extra.router;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
+import org.junit.Test;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodeResponse;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LatencyStatsNodesResponse;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LoadDetails;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.StatDetails;
+import org.wikimedia.search.extra.latency.SearchLatencyProbe.LatencyStat;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+public class ClusterLoadTest extends RandomizedTest {
+    @Test
+    public void averagesNodes() {
+        ClusterLoad clusterLoad = new ClusterLoad(() -> null, () -> null, Settings.EMPTY);
+        assertNull(clusterLoad.summary());
+
+        clusterLoad.update(response(
+                asList(new LoadDetails(20, 1, 10, 4, 0, singletonMap("bucket", 100L)),
+                        new LoadDetails(60, 3, 30, 8, 2, emptyMap())),
+                asList(latency("bucket", 50, 40), latency("bucket", 95, 200))));
+        LoadSource summary = clusterLoad.summary();
+        assertNotNull(summary);
+        assertEquals(40, summary.getCpuPercent());
+        assertEquals(2, summary.get1MinuteLoadAverage());
+        assertEquals(20, summary.getSearchQueueSize());
+        assertEquals(6, summary.getSearchActiveThreads());
+        assertEquals(1, summary.getSearchRejectedDelta());
+        // Only the nodes reporting the bucket are averaged
+        assertEquals(100, summary.getLatencyEwma("bucket"));
+        assertEquals(0, summary.getLatencyEwma("unknown"));
+
+        assertEquals(40, summary.getLatency("bucket", 50));
+        // Closest reported percentile above
+        assertEquals(200, summary.getLatency("bucket", 75));
+        assertEquals(200, summary.getLatency("bucket", 99));
+        assertEquals(0, summary.getLatency("unknown", 50));
+    }
+
+    @Test
+    public void summaryExpires() {
+        AtomicLong now = new AtomicLong(randomLong());
+        ClusterLoad clusterLoad = new ClusterLoad(() -> null, () -> null, Settings.EMPTY, now::get);
+        clusterLoad.update(response(asList(new LoadDetails(20, 1, 10, 4, 0, emptyMap())), asList()));
+        assertNotNull(clusterLoad.summary());
+
+        now.addAndGet(ClusterLoad.REFRESH_INTERVAL.get(Settings.EMPTY).nanos() * 3);
+        assertNotNull(clusterLoad.summary());
+        // Nodes reporting nothing do not refresh the summary
+        clusterLoad.update(response(asList(), asList()));
+        now.incrementAndGet();
+        assertNull(clusterLoad.summary());
+    }
+
+    static LatencyStatsNodesResponse response(List<LoadDetails> nodes, List<LatencyStat> latencies) {
+        LatencyStatsNodesResponse response = mock(LatencyStatsNodesResponse.class);
+        List<LatencyStatsNodeResponse> nodeResponses = new ArrayList<>();
+        for (LoadDetails load : nodes) {
+            LatencyStatsNodeResponse node = mock(LatencyStatsNodeResponse.class);
+            when(node.getLoadDetails()).thenReturn(load);
+            nodeResponses.add(node);
+        }
+        StatDetails allNodes = mock(StatDetails.class);
+        when(allNodes.getLatencies()).thenReturn(latencies);
+        when(response.getNodes()).thenReturn(nodeResponses);
+        when(response.getAllNodes()).thenReturn(allNodes);
+        return response;
+    }
+
+    private static LatencyStat latency(String bucket, double percentile, long millis) {
+        LatencyStat stat = mock(LatencyStat.class);
+        when(stat.getBucket()).thenReturn(bucket);
+        when(stat.getPercentile()).thenReturn(percentile);
+        when(stat.getLatency()).thenReturn(TimeValue.timeValueMillis(millis));
+        return stat;
+    }
+}
@@ -8,6 +8,8 @@ import static org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.Condi
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.lucene.index.Term;
@@ -18,6 +20,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.opensearch.core.common.ParsingException;
 import org.opensearch.common.compress.CompressedXContent;
+import org.opensearch.common.settings.Settings;
 import org.opensearch.index.mapper.MapperService;
 import org.opensearch.index.query.MatchNoneQueryBuilder;
 import org.opensearch.index.query.QueryBuilder;
@@ -33,7 +36,12 @@ import org.junit.runner.RunWith;
 import org.wikimedia.search.extra.ExtraCorePlugin;
 import org.wikimedia.search.extra.latency.SearchLatencyProbe;
 import org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.ConditionDefinition;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.DegradedCondition;
 import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.DegradedConditionType;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadClause;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadMetric;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadScope;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.WeightedMetric;
 
 @RunWith(com.carrotsearch.randomizedtesting.RandomizedRunner.class)
 public class DegradedRouterBuilderOpenSearchTest extends AbstractQueryTestCase<DegradedRouterQueryBuilder> {
@@ -79,6 +87,8 @@ public class DegradedRouterBuilderOpenSearchTest extends AbstractQueryTestCase<D
         DegradedRouterQueryBuilder builder = newBuilder();
         builder.systemLoad(new MockSystemLoad());
         builder.fallback(new MatchNoneQueryBuilder());
+        builder.seed(randomLong());
+        builder.scope(randomFrom(LoadScope.values()));
         for (int i = randomIntBetween(1, 10); i > 0; i--) {
             addCondition(builder);
         }
@@ -89,9 +99,10 @@ public class DegradedRouterBuilderOpenSearchTest extends AbstractQueryTestCase<D
     @Override
     protected void doAssertLuceneQuery(DegradedRouterQueryBuilder builder, Query query, QueryShardContext context) throws IOException {
         SystemLoad stats = builder.systemLoad();
+        double draw = DegradedRouterQueryBuilder.draw(builder.seed());
 
-        Optional<DegradedRouterQueryBuilder.DegradedCondition> cond = builder.conditionStream()
-                .filter(x -> x.test(stats))
+        Optional<DegradedCondition> cond = builder.conditionStream()
+                .filter(x -> x.test(stats, draw))
                 .findFirst();
 
         query = rewrite(query);
@@ -154,28 +165,56 @@ public class DegradedRouterBuilderOpenSearchTest extends AbstractQueryTestCase<D
         private long latency;
         private long cpuPercent;
         private long loadAverage;
+        private long latencyEwma;
+        private long searchQueueSize;
+        private long searchActiveThreads;
+        private long searchRejectedDelta;
 
         MockSystemLoad() {
-            super(mock(SearchLatencyProbe.class), mock(OsService.class));
+            super(mock(SearchLatencyProbe.class), mock(OsService.class), () -> null, Settings.EMPTY);
             latency = randomIntBetween(0, 5000);
             cpuPercent = randomIntBetween(0, 100);
             loadAverage = randomIntBetween(0, 100);
+            latencyEwma = randomIntBetween(0, 5000);
+            searchQueueSize = randomIntBetween(0, 1000);
+            searchActiveThreads = randomIntBetween(0, 100);
+            searchRejectedDelta = randomIntBetween(0, 100);
         }
 
         @Override
-        long getLatency(String statBucket, double percentile) {
+        public long getLatency(String statBucket, double percentile) {
             return latency;
         }
 
         @Override
-        long getCpuPercent() {
+        public long getCpuPercent() {
             return cpuPercent;
         }
 
         @Override
-        long get1MinuteLoadAverage() {
+        public long get1MinuteLoadAverage() {
             return loadAverage;
         }
+
+        @Override
+        public long getLatencyEwma(String statBucket) {
+            return latencyEwma;
+        }
+
+        @Override
+        public long getSearchQueueSize() {
+            return searchQueueSize;
+        }
+
+        @Override
+        public long getSearchActiveThreads() {
+            return searchActiveThreads;
+        }
+
+        @Override
+        public long getSearchRejectedDelta() {
+            return searchRejectedDelta;
+        }
     }
 
     private void addCondition(DegradedRouterQueryBuilder builder) {
@@ -183,18 +222,41 @@ public class DegradedRouterBuilderOpenSearchTest extends AbstractQueryTestCase<D
     }
 
     private void addCondition(DegradedRouterQueryBuilder builder, QueryBuilder query) {
-        DegradedConditionType type = randomFrom(DegradedConditionType.values());
+        LoadMetric metric = randomMetric(true);
         ConditionDefinition cond = randomFrom(ConditionDefinition.values());
         int value = randomInt(10);
+        Integer rampTo = null;
+        if (randomBoolean()) {
+            if (cond == ConditionDefinition.gt || cond == ConditionDefinition.gte) {
+                rampTo = value + randomIntBetween(1, 100);
+            } else if (cond == ConditionDefinition.lt || cond == ConditionDefinition.lte) {
+                rampTo = value - randomIntBetween(1, 100);
+            }
+        }
+        if (query == null) {
+            query = new TermQueryBuilder(MY_FIELD, metric.type().name() + ":" + cond.name() + ":" + value);
+        }
+        builder.condition(new DegradedCondition(cond, metric, null, rampTo, value, query));
+    }
+
+    private LoadMetric randomMetric(boolean allowComposite) {
+        DegradedConditionType type = randomValueOtherThanMany(t -> !allowComposite && t.isComposite(),
+                () -> randomFrom(DegradedConditionType.values()));
         String bucket = null;
         Double percentile = null;
+        List<LoadClause> clauses = Collections.emptyList();
+        List<WeightedMetric> weights = Collections.emptyList();
         if (type == DegradedConditionType.latency) {
             bucket = "testbucket";
             percentile = randomDoubleBetween(0D, 100D, false);
+        } else if (type == DegradedConditionType.latency_ewma) {
+            bucket = "testbucket";
+        } else if (type == DegradedConditionType.all || type == DegradedConditionType.any) {
+            clauses = randomList(1, 3, () -> new LoadClause(randomFrom(ConditionDefinition.values()), randomInt(10),
+                    randomMetric(false)));
+        } else if (type == DegradedConditionType.score) {
+            weights = randomList(1, 3, () -> new WeightedMetric(randomDoubleBetween(0D, 2D, true), randomMetric(false)));
         }
-        if (query == null) {
-            query = new TermQueryBuilder(MY_FIELD, type.name() + ":" + cond.name() + ":" + value);
-        }
-        builder.condition(cond, type, bucket, percentile, value, query);
+        return new LoadMetric(type, bucket, percentile, clauses, weights);
     }
 }
@@ -1,17 +1,37 @@
 package org.wikimedia.search.extra.router;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
 
 import org.apache.lucene.tests.util.LuceneTestCase;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.core.common.ParsingException;
 import org.opensearch.index.query.MatchNoneQueryBuilder;
 import org.opensearch.index.query.MatchPhraseQueryBuilder;
 import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryRewriteContext;
+import org.opensearch.monitor.os.OsService;
 import org.junit.Test;
 import org.wikimedia.search.extra.QueryBuilderTestUtils;
+import org.wikimedia.search.extra.latency.LatencyStatsAction.LoadDetails;
+import org.wikimedia.search.extra.latency.SearchLatencyListener;
 import org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.ConditionDefinition;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.DegradedCondition;
 import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.DegradedConditionType;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadClause;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadMetric;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadScope;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.LoadSnapshot;
+import org.wikimedia.search.extra.router.DegradedRouterQueryBuilder.WeightedMetric;
+import org.wikimedia.search.extra.util.Suppliers.MutableSupplier;
 
 public class DegradedRouterQueryBuilderTest extends LuceneTestCase {
     @Test
@@ -51,4 +71,355 @@ public class DegradedRouterQueryBuilderTest extends LuceneTestCase {
         expected.fallback(new MatchNoneQueryBuilder());
         assertEquals(expected, qb);
     }
+
+    @Test
+    public void testParseHysteresis() throws IOException {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gte\": 800,\n" +
+                "           \"type\": \"latency_ewma\",\n" +
+                "           \"bucket\": \"some_bucket\",\n" +
+                "           \"hysteresis\": 200,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        DegradedRouterQueryBuilder qb = (DegradedRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json);
+        DegradedCondition cond = qb.conditionStream().findFirst().get();
+        assertEquals(DegradedConditionType.latency_ewma, cond.type());
+        assertEquals("some_bucket", cond.bucket());
+        assertEquals(Integer.valueOf(200), cond.hysteresis());
+
+        DegradedRouterQueryBuilder expected = new DegradedRouterQueryBuilder();
+        expected.condition(ConditionDefinition.gte, DegradedConditionType.latency_ewma, "some_bucket", null, 200, null, 800,
+                new MatchNoneQueryBuilder());
+        expected.fallback(new MatchNoneQueryBuilder());
+        assertEquals(expected, qb);
+    }
+
+    @Test
+    public void testHysteresisRequiresDirectionalPredicate() {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"eq\": 10,\n" +
+                "           \"type\": \"search_queue\",\n" +
+                "           \"hysteresis\": 2,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        ParsingException e = expectThrows(ParsingException.class, () -> QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json));
+        assertThat(e.getMessage(), containsString("failed to parse field [conditions]"));
+    }
+
+    @Test
+    public void testHysteresisMustBeNonNegative() throws IOException {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gt\": 10,\n" +
+                "           \"type\": \"search_queue\",\n" +
+                "           \"hysteresis\": %d,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        DegradedRouterQueryBuilder builder = (DegradedRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED
+                .parseQuery(String.format(Locale.ROOT, json, 0));
+        assertEquals(Integer.valueOf(0), builder.conditionStream().findFirst().get().hysteresis());
+        ParsingException e = expectThrows(ParsingException.class,
+                () -> QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(String.format(Locale.ROOT, json, -1)));
+        assertThat(e.getMessage(), containsString("failed to parse field [conditions]"));
+    }
+
+    @Test
+    public void testHysteresis() throws IOException {
+        FixedSystemLoad load = new FixedSystemLoad();
+        DegradedCondition cond = new DegradedCondition(ConditionDefinition.gt, DegradedConditionType.search_queue,
+                null, null, 5, null, 10, new MatchNoneQueryBuilder());
+
+        load.searchQueueSize = 8;
+        assertFalse(cond.test(load, 0D));
+        load.searchQueueSize = 11;
+        assertTrue(cond.test(load, 0D));
+        // Stays triggered until the metric drops below the threshold minus the hysteresis
+        load.searchQueueSize = 8;
+        assertTrue(cond.test(load, 0D));
+        load.searchQueueSize = 6;
+        assertTrue(cond.test(load, 0D));
+        load.searchQueueSize = 5;
+        assertFalse(cond.test(load, 0D));
+        load.searchQueueSize = 8;
+        assertFalse(cond.test(load, 0D));
+
+        // The same condition, parsed again for another request, shares the state
+        load.searchQueueSize = 11;
+        assertTrue(cond.test(load, 0D));
+        DegradedCondition other = new DegradedCondition(ConditionDefinition.gt, DegradedConditionType.search_queue,
+                null, null, 5, null, 10, new MatchPhraseQueryBuilder("text", "input query"));
+        load.searchQueueSize = 8;
+        assertTrue(other.test(load, 0D));
+    }
+
+    @Test
+    public void testParseRamp() throws IOException {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"seed\": \"some-request-id\",\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gt\": 10,\n" +
+                "           \"type\": \"search_queue\",\n" +
+                "           \"ramp_to\": 30,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        DegradedRouterQueryBuilder qb = (DegradedRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json);
+        assertEquals(Integer.valueOf(30), qb.conditionStream().findFirst().get().rampTo());
+        assertNotNull(qb.seed());
+        // string seeds are hashed consistently
+        assertEquals(qb, QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json));
+        // and round trip as numbers
+        assertEquals(qb, QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(qb.toString()));
+    }
+
+    @Test
+    public void testRampRequiresIncreasingBound() {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gt\": 10,\n" +
+                "           \"type\": \"search_queue\",\n" +
+                "           \"ramp_to\": 5,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        expectThrows(ParsingException.class, () -> QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json));
+    }
+
+    @Test
+    public void testRamp() throws IOException {
+        FixedSystemLoad load = new FixedSystemLoad();
+        DegradedCondition cond = new DegradedCondition(ConditionDefinition.gt, DegradedConditionType.search_queue,
+                null, null, null, 30, 10, new MatchNoneQueryBuilder());
+
+        load.searchQueueSize = 10;
+        assertFalse(cond.test(load, 0D));
+        load.searchQueueSize = 30;
+        assertTrue(cond.test(load, Math.nextDown(1D)));
+        load.searchQueueSize = 20;
+        assertTrue(cond.test(load, 0.49));
+        assertFalse(cond.test(load, 0.51));
+
+        int seeds = 10000;
+        int met = 0;
+        load.searchQueueSize = 15;
+        for (long seed = 0; seed < seeds; seed++) {
+            double draw = DegradedRouterQueryBuilder.draw(seed);
+            assertEquals(draw, DegradedRouterQueryBuilder.draw(seed), 0D);
+            if (cond.test(load, draw)) {
+                met++;
+            }
+        }
+        assertEquals(0.25, met / (double) seeds, 0.02);
+    }
+
+    @Test
+    public void testParseComposite() throws IOException {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"type\": \"all\",\n" +
+                "           \"clauses\": [\n" +
+                "               {\"type\": \"latency\", \"bucket\": \"b\", \"percentile\": 95, \"gt\": 800},\n" +
+                "               {\"type\": \"any\", \"clauses\": [\n" +
+                "                   {\"type\": \"cpu\", \"gt\": 80},\n" +
+                "                   {\"type\": \"search_queue\", \"gt\": 100}\n" +
+                "               ]}\n" +
+                "           ],\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       },\n" +
+                "       {\n" +
+                "           \"type\": \"score\",\n" +
+                "           \"weights\": [\n" +
+                "               {\"type\": \"cpu\", \"weight\": 1},\n" +
+                "               {\"type\": \"latency_ewma\", \"bucket\": \"b\", \"weight\": 0.1}\n" +
+                "           ],\n" +
+                "           \"gte\": 150,\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        DegradedRouterQueryBuilder qb = (DegradedRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json);
+        List<DegradedCondition> conditions = qb.conditionStream().collect(Collectors.toList());
+        assertEquals(2, conditions.size());
+
+        DegradedCondition all = conditions.get(0);
+        assertEquals(DegradedConditionType.all, all.type());
+        // all defaults to every clause being met
+        assertEquals(ConditionDefinition.gte, all.definition());
+        assertEquals(2, all.value());
+        LoadClause any = all.metric().clauses().get(1);
+        assertEquals(DegradedConditionType.any, any.metric().type());
+        assertEquals(ConditionDefinition.gte, any.definition());
+        assertEquals(1, any.value());
+        assertEquals(2, any.metric().clauses().size());
+
+        DegradedCondition score = conditions.get(1);
+        assertEquals(DegradedConditionType.score, score.type());
+        assertEquals(2, score.metric().weights().size());
+        assertEquals(0.1D, score.metric().weights().get(1).weight(), 0D);
+
+        assertEquals(qb, QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(qb.toString()));
+    }
+
+    @Test
+    public void testCompositeRequiresClauses() {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"type\": \"all\",\n" +
+                "           \"query\": { \"match_none\": {} }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        expectThrows(ParsingException.class, () -> QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json));
+    }
+
+    @Test
+    public void testComposite() throws IOException {
+        FixedSystemLoad load = new FixedSystemLoad();
+        LoadMetric queue = new LoadMetric(DegradedConditionType.search_queue, null, null);
+        LoadMetric cpu = new LoadMetric(DegradedConditionType.cpu, null, null);
+        List<LoadClause> clauses = Arrays.asList(
+                new LoadClause(ConditionDefinition.gt, 10, queue),
+                new LoadClause(ConditionDefinition.gt, 80, cpu));
+        DegradedCondition all = new DegradedCondition(ConditionDefinition.gte,
+                new LoadMetric(DegradedConditionType.all, null, null, clauses, Collections.emptyList()),
+                null, null, 2, new MatchNoneQueryBuilder());
+        DegradedCondition any = new DegradedCondition(ConditionDefinition.gte,
+                new LoadMetric(DegradedConditionType.any, null, null, clauses, Collections.emptyList()),
+                null, null, 1, new MatchNoneQueryBuilder());
+        DegradedCondition score = new DegradedCondition(ConditionDefinition.gte,
+                new LoadMetric(DegradedConditionType.score, null, null, Collections.emptyList(), Arrays.asList(
+                        new WeightedMetric(2, queue), new WeightedMetric(0.5, cpu))),
+                null, null, 70, new MatchNoneQueryBuilder());
+
+        load.searchQueueSize = 20;
+        load.cpuPercent = 50;
+        assertFalse(all.test(load, 0D));
+        assertTrue(any.test(load, 0D));
+        assertFalse(score.test(load, 0D));
+
+        load.cpuPercent = 90;
+        assertTrue(all.test(load, 0D));
+        assertTrue(any.test(load, 0D));
+        assertTrue(score.test(load, 0D));
+
+        load.searchQueueSize = 5;
+        load.cpuPercent = 10;
+        assertFalse(all.test(load, 0D));
+        assertFalse(any.test(load, 0D));
+        assertFalse(score.test(load, 0D));
+    }
+
+    @Test
+    public void testSnapshotReadsMetricsOnce() throws IOException {
+        FixedSystemLoad load = new FixedSystemLoad();
+        LoadMetric queue = new LoadMetric(DegradedConditionType.search_queue, null, null);
+        List<LoadClause> clauses = Arrays.asList(
+                new LoadClause(ConditionDefinition.gt, 10, queue),
+                new LoadClause(ConditionDefinition.lt, 100, queue));
+        DegradedCondition all = new DegradedCondition(ConditionDefinition.gte,
+                new LoadMetric(DegradedConditionType.all, null, null, clauses, Collections.emptyList()),
+                null, null, 2, new MatchNoneQueryBuilder());
+        DegradedCondition simple = new DegradedCondition(ConditionDefinition.gt, queue, null, null, 10,
+                new MatchNoneQueryBuilder());
+
+        load.searchQueueSize = 20;
+        LoadSnapshot snapshot = new LoadSnapshot(load);
+        assertTrue(all.test(snapshot, 0D));
+        // The value read first sticks for the whole snapshot
+        load.searchQueueSize = 5;
+        assertTrue(simple.test(snapshot, 0D));
+        assertEquals(1, load.searchQueueReads);
+        assertFalse(simple.test(new LoadSnapshot(load), 0D));
+    }
+
+    @Test
+    public void testClusterScope() throws IOException {
+        String json = "{\"degraded_router\": {\n" +
+                "   \"scope\": \"cluster\",\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gt\": 10,\n" +
+                "           \"type\": \"search_queue\",\n" +
+                "           \"query\": { \"match_phrase\": { \"text\": \"input query\" } }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": { \"match_none\": {} }\n" +
+                "}}";
+
+        DegradedRouterQueryBuilder qb = (DegradedRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json);
+        assertEquals(LoadScope.cluster, qb.scope());
+        assertEquals(qb, QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(qb.toString()));
+
+        QueryRewriteContext coordinator = new QueryRewriteContext(null, null, null, () -> 0L);
+        ClusterLoad clusterLoad = new ClusterLoad(() -> null, () -> null, Settings.EMPTY);
+        qb.clusterLoad(clusterLoad);
+        // Until the cluster load is known the shards decide
+        assertThat(qb.rewrite(coordinator), sameInstance(qb));
+
+        clusterLoad.update(ClusterLoadTest.response(Arrays.asList(
+                new LoadDetails(0, 0, 30, 0, 0, Collections.emptyMap()),
+                new LoadDetails(0, 0, 0, 0, 0, Collections.emptyMap())), Collections.emptyList()));
+        assertThat(qb.rewrite(coordinator), instanceOf(MatchPhraseQueryBuilder.class));
+
+        clusterLoad.update(ClusterLoadTest.response(Arrays.asList(
+                new LoadDetails(0, 0, 20, 0, 0, Collections.emptyMap()),
+                new LoadDetails(0, 0, 0, 0, 0, Collections.emptyMap())), Collections.emptyList()));
+        assertThat(qb.rewrite(coordinator), instanceOf(MatchNoneQueryBuilder.class));
+
+        // Node scoped routers are left to the shards
+        qb.scope(LoadScope.node);
+        assertThat(qb.rewrite(coordinator), sameInstance(qb));
+    }
+
+    private static final class FixedSystemLoad extends SystemLoad {
+        private long searchQueueSize;
+        private int searchQueueReads;
+        private long cpuPercent;
+
+        FixedSystemLoad() throws IOException {
+            super(new SearchLatencyListener(new MutableSupplier<>()), new OsService(Settings.EMPTY), () -> null, Settings.EMPTY);
+        }
+
+        @Override
+        public long getSearchQueueSize() {
+            searchQueueReads++;
+            return searchQueueSize;
+        }
+
+        @Override
+        public long getCpuPercent() {
+            return cpuPercent;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package org.wikimedia.search.extra.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.opensearch.common.settings.Settings;
+import org.opensearch.monitor.os.OsService;
+import org.opensearch.monitor.os.OsStats;
+import org.junit.Test;
+import org.wikimedia.search.extra.latency.SearchLatencyProbe;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+public class SystemLoadTest extends RandomizedTest {
+    @Test
+    public void readsFromLastSample() {
+        OsService osService = mock(OsService.class);
+        when(osService.stats()).thenReturn(osStats(42, 3.6));
+        SystemLoad load = new SystemLoad(mock(SearchLatencyProbe.class), osService, () -> null, Settings.EMPTY);
+
+        // Nothing is read before the first sample
+        assertEquals(0, load.getCpuPercent());
+        assertEquals(0, load.get1MinuteLoadAverage());
+        verify(osService, times(0)).stats();
+
+        load.sample();
+        for (int i = randomIntBetween(1, 10); i > 0; i--) {
+            assertEquals(42, load.getCpuPercent());
+            assertEquals(4, load.get1MinuteLoadAverage());
+        }
+        verify(osService, times(1)).stats();
+
+        when(osService.stats()).thenReturn(osStats(12, 0.2));
+        assertEquals(42, load.getCpuPercent());
+        load.sample();
+        assertEquals(12, load.getCpuPercent());
+        assertEquals(0, load.get1MinuteLoadAverage());
+    }
+
+    private OsStats osStats(int cpuPercent, double loadAverage) {
+        return new OsStats(0, new OsStats.Cpu((short) cpuPercent, new double[] {loadAverage, loadAverage, loadAverage}),
+                new OsStats.Mem(0, 0), new OsStats.Swap(0, 0), null);
+    }
+}
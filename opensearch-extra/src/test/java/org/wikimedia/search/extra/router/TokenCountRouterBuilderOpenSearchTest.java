@@ -96,6 +96,9 @@ public class TokenCountRouterBuilderOpenSearchTest extends AbstractQueryTestCase
         if (randomBoolean()) {
             builder.discountOverlaps(randomBoolean());
         }
+        if (randomBoolean()) {
+            builder.analyzeOnCoordinator(randomBoolean());
+        }
         return builder;
     }
 
@@ -56,4 +56,31 @@ public class TokenCountRouterParserTest extends LuceneTestCase {
         expected.fallback(new MatchNoneQueryBuilder());
         assertEquals(expected, tok);
     }
+
+    @Test
+    public void testParseAnalyzeOnCoordinator() throws IOException {
+        String json = "{\"token_count_router\": {\n" +
+                "   \"analyzer\": \"whitespace\",\n" +
+                "   \"analyze_on_coordinator\": true,\n" +
+                "   \"text\": \"input query\",\n" +
+                "   \"conditions\" : [\n" +
+                "       {\n" +
+                "           \"gte\": 2,\n" +
+                "           \"query\": {\n" +
+                "               \"match_none\": {}\n" +
+                "           }\n" +
+                "       }\n" +
+                "   ],\n" +
+                "   \"fallback\": {\n" +
+                "       \"match_none\": {}\n" +
+                "   }\n" +
+                "}}";
+
+        TokenCountRouterQueryBuilder tok = (TokenCountRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED.parseQuery(json);
+        assertTrue(tok.analyzeOnCoordinator());
+        TokenCountRouterQueryBuilder parsed = (TokenCountRouterQueryBuilder) QueryBuilderTestUtils.FULLY_FEATURED
+                .parseQuery(tok.toString());
+        assertEquals(tok, parsed);
+        assertNotEquals(tok, parsed.analyzeOnCoordinator(false));
+    }
 }
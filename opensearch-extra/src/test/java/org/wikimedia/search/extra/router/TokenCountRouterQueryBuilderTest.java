@@ -0,0 +1,124 @@
+package org.wikimedia.search.extra.router;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.ConditionDefinition.gte;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.opensearch.index.query.MatchNoneQueryBuilder;
+import org.opensearch.index.query.MatchPhraseQueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.QueryRewriteContext;
+import org.junit.Test;
+import org.wikimedia.search.extra.router.AbstractRouterQueryBuilder.ConditionDefinition;
+
+public class TokenCountRouterQueryBuilderTest extends LuceneTestCase {
+    @Test
+    public void testPrebuiltAnalyzerRoutesOnCoordinator() throws IOException {
+        TokenCountRouterQueryBuilder builder = new TokenCountRouterQueryBuilder();
+        builder.text("some input query");
+        builder.condition(gte, 3, QueryBuilders.matchPhraseQuery("text", "some input query"));
+        builder.fallback(new MatchNoneQueryBuilder());
+        QueryRewriteContext coordinator = new QueryRewriteContext(null, null, null, () -> 0L);
+
+        builder.analyzer("whitespace");
+        // The index may redefine whitespace
+        assertThat(builder.rewrite(coordinator), sameInstance(builder));
+        builder.analyzeOnCoordinator(true);
+        assertThat(builder.rewrite(coordinator), instanceOf(MatchPhraseQueryBuilder.class));
+        builder.text("some query");
+        assertThat(builder.rewrite(coordinator), instanceOf(MatchNoneQueryBuilder.class));
+
+        // Analyzers that may be defined by the index are left to the shards
+        builder.analyzer("my_analyzer");
+        assertThat(builder.rewrite(coordinator), sameInstance(builder));
+        builder.analyzer("default");
+        assertThat(builder.rewrite(coordinator), sameInstance(builder));
+        builder.analyzer(null).field("text");
+        assertThat(builder.rewrite(coordinator), sameInstance(builder));
+    }
+
+    @Test
+    public void testCountsAreMemoized() throws IOException {
+        AtomicInteger analyzed = new AtomicInteger();
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                return new TokenStreamComponents(new WhitespaceTokenizer());
+            }
+
+            @Override
+            protected Reader initReader(String fieldName, Reader reader) {
+                analyzed.incrementAndGet();
+                return reader;
+            }
+        };
+        String text = "text" + random().nextInt() + " to analyze";
+
+        assertEquals(3, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, Integer.MAX_VALUE));
+        assertEquals(3, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, Integer.MAX_VALUE));
+        assertEquals(1, analyzed.get());
+
+        assertEquals(3, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, false, Integer.MAX_VALUE));
+        assertEquals(2, analyzed.get());
+        assertEquals(2, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, "other text", true, Integer.MAX_VALUE));
+        assertEquals(3, analyzed.get());
+    }
+
+    @Test
+    public void testCountStopsAtLimit() throws IOException {
+        AtomicInteger tokens = new AtomicInteger();
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new WhitespaceTokenizer();
+                return new TokenStreamComponents(tokenizer, new TokenFilter(tokenizer) {
+                    @Override
+                    public boolean incrementToken() throws IOException {
+                        if (input.incrementToken()) {
+                            tokens.incrementAndGet();
+                            return true;
+                        }
+                        return false;
+                    }
+                });
+            }
+        };
+        String text = "one two three four five six" + random().nextInt();
+
+        assertEquals(6, TokenCountRouterQueryBuilder.countToken(analyzer, text, true));
+        tokens.set(0);
+        assertEquals(3, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, 3));
+        assertEquals(3, tokens.get());
+        // A lower limit is answered by the memo
+        assertEquals(3, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, 2));
+        assertEquals(3, tokens.get());
+        // A higher one needs to count again
+        assertEquals(6, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, 10));
+        assertEquals(9, tokens.get());
+        // And the exact count answers every limit
+        assertEquals(6, TokenCountRouterQueryBuilder.memoizedCountToken(analyzer, text, true, 20));
+        assertEquals(9, tokens.get());
+    }
+
+    @Test
+    public void testCountLimitKeepsOutcome() throws IOException {
+        TokenCountRouterQueryBuilder builder = new TokenCountRouterQueryBuilder();
+        builder.analyzer("whitespace").analyzeOnCoordinator(true);
+        builder.text("a b c d e f g h i j");
+        builder.condition(ConditionDefinition.lte, 4, QueryBuilders.matchPhraseQuery("text", "small"));
+        builder.condition(ConditionDefinition.neq, 5, QueryBuilders.matchPhraseQuery("text", "large"));
+        builder.fallback(new MatchNoneQueryBuilder());
+        QueryRewriteContext coordinator = new QueryRewriteContext(null, null, null, () -> 0L);
+        // Counting stops at 6 tokens, neq 5 is still met
+        assertEquals(QueryBuilders.matchPhraseQuery("text", "large"), builder.rewrite(coordinator));
+    }
+}
@@ -105,6 +105,21 @@ public class SimSwitcherQueryBuilderOpenSearchTest extends AbstractQueryTestCase
         assertEquals(qb, ((SimSwitcherQueryBuilder) rewrite).getSubQuery());
     }
 
+    public void testSimilarityIsShared() throws IOException {
+        SimSwitcherQueryBuilder builder = doCreateTestQueryBuilder();
+        SimSwitcherQuery first = (SimSwitcherQuery) builder.toQuery(createShardContext());
+        SimSwitcherQuery second = (SimSwitcherQuery) doCreateTestQueryBuilder().toQuery(createShardContext());
+        assertSame(first.getSimilarity(), second.getSimilarity());
+
+        builder.setParams(Settings.builder().put("k1", 1.5F).put("b", 0.7F).build());
+        SimSwitcherQuery other = (SimSwitcherQuery) builder.toQuery(createShardContext());
+        assertNotSame(first.getSimilarity(), other.getSimilarity());
+        assertEquals(0.7F, ((LegacyBM25Similarity) other.getSimilarity()).getB(), Math.ulp(0.7F));
+
+        builder.setSimilarityType("unknown");
+        expectThrows(IllegalArgumentException.class, () -> builder.toQuery(createShardContext()));
+    }
+
     @Override
     protected void doAssertLuceneQuery(SimSwitcherQueryBuilder queryBuilder, Query query, QueryShardContext context) throws IOException {
         assertThat(query, instanceOf(SimSwitcherQuery.class));
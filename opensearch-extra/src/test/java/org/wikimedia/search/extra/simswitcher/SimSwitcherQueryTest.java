@@ -17,10 +17,16 @@
 package org.wikimedia.search.extra.simswitcher;
 
 import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.mock;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -29,12 +35,15 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.tests.index.RandomIndexWriter;
 import org.apache.lucene.misc.SweetSpotSimilarity;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.AfterEffectB;
 import org.apache.lucene.search.similarities.AxiomaticF3LOG;
@@ -60,6 +69,11 @@ import org.apache.lucene.util.QueryBuilder;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opensearch.search.internal.ContextIndexSearcher;
+import org.opensearch.search.internal.SearchContext;
+import org.opensearch.search.profile.ProfileResult;
+import org.opensearch.search.profile.query.InternalQueryProfileTree;
+import org.opensearch.search.profile.query.QueryProfiler;
 
 @SuppressWarnings("checkstyle:classfanoutcomplexity")
 public class SimSwitcherQueryTest extends LuceneTestCase {
@@ -164,6 +178,66 @@ public class SimSwitcherQueryTest extends LuceneTestCase {
         }
     }
 
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        String q = "brown cow";
+        Map<String, TopDocs> expected = new HashMap<>();
+        for (String name : similarityMap.keySet()) {
+            expected.put(name, searcherUnderTest.search(new QueryBuilder(analyzer).createBooleanQuery(name, q), 10));
+        }
+        Similarity original = searcherUnderTest.getSimilarity();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String name = new ArrayList<>(similarityMap.keySet()).get(random().nextInt(similarityMap.size()));
+                Query hacked = new SimSwitcherQuery(similarityMap.get(name), new QueryBuilder(analyzer).createBooleanQuery("main_field", q));
+                futures.add(executor.submit(() -> {
+                    TopDocs hackedDocs = searcherUnderTest.search(hacked, 10);
+                    TopDocs docs = expected.get(name);
+                    assertEquals(name, docs.totalHits, hackedDocs.totalHits);
+                    for (int d = 0; d < docs.scoreDocs.length; d++) {
+                        assertEquals(name, docs.scoreDocs[d].score, hackedDocs.scoreDocs[d].score, Math.ulp(docs.scoreDocs[d].score));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertSame(original, searcherUnderTest.getSimilarity());
+    }
+
+    @Test
+    public void testRewrite() throws IOException {
+        Query hacked = new SimSwitcherQuery(similarity, new PrefixQuery(new Term("main_field", "bro")));
+        assertEquals(3, searcherUnderTest.search(hacked, 10).totalHits.value);
+    }
+
+    @Test
+    public void testProfile() throws IOException {
+        ContextIndexSearcher searcher = new ContextIndexSearcher(indexReaderUnderTest, searcherUnderTest.getSimilarity(),
+                null, searcherUnderTest.getQueryCachingPolicy(), false, null, mock(SearchContext.class));
+        QueryProfiler profiler = new QueryProfiler(new InternalQueryProfileTree());
+        searcher.setProfiler(profiler);
+        Query hacked = new SimSwitcherQuery(similarity, new QueryBuilder(analyzer).createBooleanQuery("main_field", "brown cow"));
+        searcher.createWeight(searcher.rewrite(hacked), ScoreMode.COMPLETE, 1f);
+
+        List<ProfileResult> tree = profiler.getTree();
+        assertEquals(1, tree.size());
+        assertEquals("SimSwitcherQuery", tree.get(0).getQueryName());
+        assertEquals(1, tree.get(0).getProfiledChildren().size());
+        ProfileResult bool = tree.get(0).getProfiledChildren().get(0);
+        assertEquals("SimilarityOverrideQuery", bool.getQueryName());
+        assertEquals("main_field:brown main_field:cow", bool.getLuceneDescription());
+        assertEquals(2, bool.getProfiledChildren().size());
+        assertEquals("main_field:brown", bool.getProfiledChildren().get(0).getLuceneDescription());
+        assertEquals("main_field:cow", bool.getProfiledChildren().get(1).getLuceneDescription());
+    }
+
     @After
     public void closeStuff() throws IOException {
         indexReaderUnderTest.close();
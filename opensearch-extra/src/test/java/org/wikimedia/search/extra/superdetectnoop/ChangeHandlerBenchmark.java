@@ -0,0 +1,92 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.logging.log4j.Logger;
+import org.opensearch.common.logging.Loggers;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.wikimedia.search.extra.superdetectnoop.ChangeHandlerCases.Case;
+
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Measures the throughput and the allocations of every handler the plugin
+ * registers over generated stored values and updates, about half of them
+ * close enough. Not run with the tests, run it by hand before and after
+ * changing a handler.
+ */
+@RunWith(RandomizedRunner.class)
+public class ChangeHandlerBenchmark extends RandomizedTest {
+    private static final Logger LOG = Loggers.getLogger(ChangeHandlerBenchmark.class, "benchmark");
+    private static final int PAIRS = 1000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+    private static final int[] SIZES = {10, 100, 1000};
+
+    @Test
+    public void run() {
+        LOG.info(String.format(Locale.ROOT, "%-20s %5s %14s %12s %6s", "handler", "size", "ops/s", "bytes/op", "noop"));
+        for (Case c : ChangeHandlerCases.CASES) {
+            if (c.isSized()) {
+                for (int size : SIZES) {
+                    measure(c, size);
+                }
+            } else {
+                measure(c, SIZES[0]);
+            }
+        }
+    }
+
+    private void measure(Case c, int size) {
+        Random random = getRandom();
+        Object[] oldValues = new Object[PAIRS];
+        Object[] updates = new Object[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            oldValues[i] = c.oldValue(random, size);
+            updates[i] = c.update(random, oldValues[i], size);
+        }
+        // Handlers may change the stored value in place, each round works on copies made beforehand
+        Object[] copies = new Object[PAIRS];
+        long nanos = 0;
+        long bytes = 0;
+        int noop = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            for (int i = 0; i < PAIRS; i++) {
+                copies[i] = ChangeHandlerCases.deepCopy(oldValues[i]);
+            }
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            int roundNoop = 0;
+            for (int i = 0; i < PAIRS; i++) {
+                if (c.handler.handle(copies[i], updates[i]).isCloseEnough()) {
+                    roundNoop++;
+                }
+            }
+            long roundNanos = System.nanoTime() - start;
+            long roundBytes = allocatedBytes() - startBytes;
+            if (round >= WARMUP_ROUNDS) {
+                nanos += roundNanos;
+                bytes += roundBytes;
+                noop += roundNoop;
+            }
+        }
+        long calls = (long) PAIRS * ROUNDS;
+        LOG.info(String.format(Locale.ROOT, "%-20s %5d %14.0f %12.1f %5.1f%%", c.config, size,
+                calls * 1e9 / nanos, (double) bytes / calls, 100.0 * noop / calls));
+    }
+
+    /**
+     * Bytes allocated by this thread so far, 0 if the jvm doesn't count them.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
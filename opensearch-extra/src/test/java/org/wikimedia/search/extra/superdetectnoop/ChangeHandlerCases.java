@@ -0,0 +1,542 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The handlers registered by the plugin, each with a generator of stored
+ * values and updates and a model of what the handler should do with them.
+ * Shared by {@link ChangeHandlerPropertiesTest} and {@link ChangeHandlerBenchmark}.
+ */
+final class ChangeHandlerCases {
+    /**
+     * Same recognizers as the plugin.
+     */
+    static final List<ChangeHandler.Recognizer> RECOGNIZERS = ImmutableList.of(
+            new ChangeHandler.Equal.Recognizer(),
+            new WithinPercentageHandler.Recognizer(),
+            new WithinAbsoluteHandler.Recognizer(),
+            new TimeBoundedWithinHandler.Recognizer(),
+            new SetHandler.Recognizer(),
+            new VersionedDocumentHandler.Recognizer(),
+            MultiListHandler.RECOGNIZER);
+
+    static final List<Case> CASES = ImmutableList.of(
+            new EqualCase(), new WithinPercentageCase(), new WithinAbsoluteCase(), new TimeBoundedWithinCase(),
+            new SetCase(), new DocumentVersionCase(), new MultiListCase());
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private ChangeHandlerCases() {
+        // Static fields only
+    }
+
+    enum Outcome {
+        CLOSE_ENOUGH, CHANGED, NOOP_DOCUMENT
+    }
+
+    abstract static class Case {
+        final String config;
+        final ChangeHandler<Object> handler;
+
+        Case(String config) {
+            this.config = config;
+            ChangeHandler<Object> handler = null;
+            for (ChangeHandler.Recognizer recognizer : RECOGNIZERS) {
+                handler = recognizer.build(config);
+                if (handler != null) {
+                    break;
+                }
+            }
+            if (handler == null) {
+                throw new IllegalArgumentException("Unrecognized handler: " + config);
+            }
+            this.handler = handler;
+        }
+
+        /**
+         * A stored value, null about one time out of ten.
+         *
+         * @param size number of values of the collections, ignored by the handlers of scalars
+         */
+        @Nullable
+        final Object oldValue(Random random, int size) {
+            return random.nextInt(10) == 0 ? null : nonNullOldValue(random, size);
+        }
+
+        abstract Object nonNullOldValue(Random random, int size);
+
+        /**
+         * Does the cost of the handler depend on the size of the values?
+         */
+        boolean isSized() {
+            return false;
+        }
+
+        /**
+         * An update of the stored value, about half of them expected to be
+         * close enough.
+         */
+        abstract Object update(Random random, @Nullable Object oldValue, int size);
+
+        abstract Outcome expected(@Nullable Object oldValue, Object update);
+
+        /**
+         * Is the new value of a changed field the one expected?
+         */
+        boolean isExpectedValue(@Nullable Object oldValue, Object update, @Nullable Object newValue) {
+            return newValue == update;
+        }
+
+        @Override
+        public String toString() {
+            return config;
+        }
+    }
+
+    static class EqualCase extends Case {
+        EqualCase() {
+            super("equals");
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            return randomJson(random, 2);
+        }
+
+        @Override
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            return oldValue != null && random.nextBoolean() ? copyWithOtherNumberTypes(random, oldValue) : randomJson(random, 2);
+        }
+
+        @Override
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            return normalize(oldValue).equals(normalize(update)) ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+
+        private static Object randomJson(Random random, int depth) {
+            switch (random.nextInt(depth > 0 ? 7 : 5)) {
+                case 0:
+                    return random.nextInt(5);
+                case 1:
+                    return (long) random.nextInt(5);
+                case 2:
+                    return random.nextInt(5) / 2.0;
+                case 3:
+                    return "s" + random.nextInt(5);
+                case 4:
+                    return random.nextBoolean();
+                case 5:
+                    List<Object> list = new ArrayList<>();
+                    for (int i = random.nextInt(3); i > 0; i--) {
+                        list.add(randomJson(random, depth - 1));
+                    }
+                    return list;
+                default:
+                    Map<String, Object> map = new HashMap<>();
+                    for (int i = random.nextInt(3); i > 0; i--) {
+                        map.put("k" + random.nextInt(3), randomJson(random, depth - 1));
+                    }
+                    return map;
+            }
+        }
+
+        private static Object copyWithOtherNumberTypes(Random random, Object value) {
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                if (number != Math.rint(number)) {
+                    return number;
+                }
+                switch (random.nextInt(3)) {
+                    case 0:
+                        return (int) number;
+                    case 1:
+                        return (long) number;
+                    default:
+                        return number;
+                }
+            }
+            if (value instanceof List) {
+                List<Object> list = new ArrayList<>();
+                for (Object v : (List<?>) value) {
+                    list.add(copyWithOtherNumberTypes(random, v));
+                }
+                return list;
+            }
+            if (value instanceof Map) {
+                Map<Object, Object> map = new HashMap<>();
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                    map.put(e.getKey(), copyWithOtherNumberTypes(random, e.getValue()));
+                }
+                return map;
+            }
+            return value;
+        }
+
+        /**
+         * The value with its numbers as BigDecimal so they compare by value.
+         */
+        private static Object normalize(@Nullable Object value) {
+            if (value == null) {
+                return "null";
+            }
+            if (value instanceof Number) {
+                return new BigDecimal(value.toString()).stripTrailingZeros();
+            }
+            if (value instanceof List) {
+                List<Object> list = new ArrayList<>();
+                for (Object v : (List<?>) value) {
+                    list.add(normalize(v));
+                }
+                return list;
+            }
+            if (value instanceof Map) {
+                Map<Object, Object> map = new HashMap<>();
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                    map.put(e.getKey(), normalize(e.getValue()));
+                }
+                return map;
+            }
+            return value;
+        }
+    }
+
+    static class WithinPercentageCase extends Case {
+        WithinPercentageCase() {
+            super("within 10%");
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            return random.nextInt(20) == 0 ? 0.0 : (random.nextDouble() - 0.5) * 2000;
+        }
+
+        @Override
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            double old = oldValue == null ? 1 : (Double) oldValue;
+            if (old == 0) {
+                return random.nextBoolean() ? 0.0 : random.nextDouble();
+            }
+            // Stay clear of the 10% boundary, rounding decides there
+            double difference = random.nextBoolean() ? random.nextDouble() * 0.09 : 0.11 + random.nextDouble();
+            return old * (1 + (random.nextBoolean() ? difference : -difference));
+        }
+
+        @Override
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            if (oldValue == null) {
+                return Outcome.CHANGED;
+            }
+            double old = (Double) oldValue;
+            double value = (Double) update;
+            boolean closeEnough = old == 0 ? value == 0 : Math.abs(value - old) < Math.abs(old) * 0.1;
+            return closeEnough ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+    }
+
+    static class WithinAbsoluteCase extends Case {
+        WithinAbsoluteCase() {
+            super("within 5");
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            return random.nextBoolean() ? (Object) (long) random.nextInt(1000) : (Object) (random.nextDouble() * 1000);
+        }
+
+        @Override
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            double old = oldValue == null ? 0 : ((Number) oldValue).doubleValue();
+            double difference = random.nextBoolean() ? random.nextDouble() * 4.9 : 5.1 + random.nextDouble() * 50;
+            return old + (random.nextBoolean() ? difference : -difference);
+        }
+
+        @Override
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            if (oldValue == null) {
+                return Outcome.CHANGED;
+            }
+            return Math.abs((Double) update - ((Number) oldValue).doubleValue()) < 5 ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+    }
+
+    static class TimeBoundedWithinCase extends Case {
+        TimeBoundedWithinCase() {
+            super("within 10% or 7d");
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            return value(1 + random.nextDouble() * 1000, random.nextInt(1000) * DAY);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            Map<String, Object> old = oldValue == null ? value(1.0, 0) : (Map<String, Object>) oldValue;
+            double difference = random.nextBoolean() ? random.nextDouble() * 0.09 : 0.11 + random.nextDouble();
+            long age = (long) ((random.nextDouble() * 11 - 1) * DAY);
+            return value((Double) old.get(TimeBoundedWithinHandler.VALUE) * (1 + difference),
+                    (Long) old.get(TimeBoundedWithinHandler.TIMESTAMP) + age);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            if (oldValue == null) {
+                return Outcome.CHANGED;
+            }
+            Map<String, Object> old = (Map<String, Object>) oldValue;
+            Map<String, Object> value = (Map<String, Object>) update;
+            long age = (Long) value.get(TimeBoundedWithinHandler.TIMESTAMP) - (Long) old.get(TimeBoundedWithinHandler.TIMESTAMP);
+            if (age < 0) {
+                return Outcome.CLOSE_ENOUGH;
+            }
+            if (age >= 7 * DAY) {
+                return Outcome.CHANGED;
+            }
+            double oldNumber = (Double) old.get(TimeBoundedWithinHandler.VALUE);
+            double newNumber = (Double) value.get(TimeBoundedWithinHandler.VALUE);
+            return Math.abs(newNumber - oldNumber) < oldNumber * 0.1 ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+
+        private static Map<String, Object> value(double value, long timestamp) {
+            Map<String, Object> map = new HashMap<>();
+            map.put(TimeBoundedWithinHandler.VALUE, value);
+            map.put(TimeBoundedWithinHandler.TIMESTAMP, timestamp);
+            return map;
+        }
+    }
+
+    /**
+     * Sets without max_size, the values it drops depend on the order of the
+     * update.
+     */
+    static class SetCase extends Case {
+        SetCase() {
+            super("set");
+        }
+
+        @Override
+        boolean isSized() {
+            return true;
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            List<Object> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(element(random, size));
+            }
+            return values;
+        }
+
+        @Override
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            List<?> old = oldValue == null ? ImmutableList.of() : (List<?>) oldValue;
+            boolean noop = random.nextBoolean();
+            List<Object> add = new ArrayList<>();
+            List<Object> remove = new ArrayList<>();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                add.add(noop && !old.isEmpty() ? old.get(random.nextInt(old.size())) : element(random, size));
+            }
+            for (int i = random.nextInt(5); i > 0; i--) {
+                // Values never added to the old ones
+                remove.add(noop ? "absent" + random.nextInt(size + 1) : element(random, size));
+            }
+            Map<String, Object> update = new HashMap<>();
+            if (!add.isEmpty() || random.nextBoolean()) {
+                update.put("add", add.size() == 1 && random.nextBoolean() ? add.get(0) : add);
+            }
+            if (!remove.isEmpty() || random.nextBoolean()) {
+                update.put("remove", remove);
+            }
+            return update;
+        }
+
+        @Override
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            Set<Object> old = oldValue == null ? new HashSet<>() : new HashSet<>((List<?>) oldValue);
+            return old.equals(expectedSet(old, update)) ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+
+        @Override
+        boolean isExpectedValue(@Nullable Object oldValue, Object update, @Nullable Object newValue) {
+            Set<Object> old = oldValue == null ? new HashSet<>() : new HashSet<>((List<?>) oldValue);
+            return newValue instanceof List && new HashSet<>((List<?>) newValue).equals(expectedSet(old, update));
+        }
+
+        /**
+         * The values removed then the values added that aren't removed.
+         */
+        private static Set<Object> expectedSet(Set<Object> old, Object update) {
+            Map<?, ?> params = (Map<?, ?>) update;
+            Set<Object> remove = set(params.get("remove"));
+            Set<Object> expected = new HashSet<>(old);
+            expected.removeAll(remove);
+            for (Object value : set(params.get("add"))) {
+                if (!remove.contains(value)) {
+                    expected.add(value);
+                }
+            }
+            return expected;
+        }
+
+        private static Set<Object> set(@Nullable Object values) {
+            if (values == null) {
+                return new HashSet<>();
+            }
+            return values instanceof Collection ? new HashSet<>((Collection<?>) values) : new HashSet<>(ImmutableList.of(values));
+        }
+
+        private static String element(Random random, int size) {
+            return "v" + random.nextInt(size * 2 + 1);
+        }
+    }
+
+    static class DocumentVersionCase extends Case {
+        DocumentVersionCase() {
+            super("documentVersion");
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            return (long) random.nextInt(100);
+        }
+
+        @Override
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            long old = oldValue == null ? 0 : (Long) oldValue;
+            return old + random.nextInt(5) - 2;
+        }
+
+        @Override
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            if (oldValue == null) {
+                return Outcome.CHANGED;
+            }
+            int compare = Long.compare((Long) update, (Long) oldValue);
+            return compare == 0 ? Outcome.CLOSE_ENOUGH : compare < 0 ? Outcome.NOOP_DOCUMENT : Outcome.CHANGED;
+        }
+    }
+
+    /**
+     * Each group of the update replaces the values of the group, or deletes
+     * it when it holds only the delete marker.
+     */
+    static class MultiListCase extends Case {
+        MultiListCase() {
+            super("multilist");
+        }
+
+        @Override
+        boolean isSized() {
+            return true;
+        }
+
+        @Override
+        Object nonNullOldValue(Random random, int size) {
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(group(random, size) + random.nextInt(3));
+            }
+            return values;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object update(Random random, @Nullable Object oldValue, int size) {
+            List<String> update = new ArrayList<>();
+            if (random.nextBoolean() && oldValue != null && !((List<String>) oldValue).isEmpty()) {
+                // Groups sent again as they are
+                Map<String, Set<String>> groups = groups((List<String>) oldValue);
+                for (Set<String> values : groups.values()) {
+                    if (random.nextBoolean()) {
+                        update.addAll(values);
+                    }
+                }
+                if (!update.isEmpty()) {
+                    return update;
+                }
+            }
+            for (int i = random.nextInt(4) + 1; i > 0; i--) {
+                update.add(group(random, size) + (random.nextInt(10) == 0 ? MultiListHandler.DELETE : random.nextInt(3)));
+            }
+            return update;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Outcome expected(@Nullable Object oldValue, Object update) {
+            Map<String, Set<String>> old = groups(oldValue == null ? ImmutableList.of() : (List<String>) oldValue);
+            return old.equals(expectedGroups(old, (List<String>) update)) ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean isExpectedValue(@Nullable Object oldValue, Object update, @Nullable Object newValue) {
+            Map<String, Set<String>> old = groups(oldValue == null ? ImmutableList.of() : (List<String>) oldValue);
+            return newValue instanceof List && groups((List<String>) newValue).equals(expectedGroups(old, (List<String>) update));
+        }
+
+        private static Map<String, Set<String>> expectedGroups(Map<String, Set<String>> old, List<String> update) {
+            Map<String, Set<String>> expected = new HashMap<>(old);
+            groups(update).forEach((group, values) -> {
+                if (values.size() == 1 && values.iterator().next().endsWith(MultiListHandler.DELETE)) {
+                    expected.remove(group);
+                } else {
+                    expected.put(group, values);
+                }
+            });
+            return expected;
+        }
+
+        private static Map<String, Set<String>> groups(List<String> values) {
+            Map<String, Set<String>> groups = new LinkedHashMap<>();
+            for (String value : values) {
+                int pos = value.indexOf('/');
+                groups.computeIfAbsent(pos == -1 ? "" : value.substring(0, pos), k -> new HashSet<>()).add(value);
+            }
+            return groups;
+        }
+
+        private static String group(Random random, int size) {
+            int group = random.nextInt(Math.max(2, size / 4) + 1);
+            return group == 0 ? "" : "g" + group + "/";
+        }
+    }
+
+    /**
+     * A copy of a json value, to check it's left as is.
+     */
+    @Nullable
+    static Object deepCopy(@Nullable Object value) {
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object v : (List<?>) value) {
+                list.add(deepCopy(v));
+            }
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> map = new HashMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                map.put(e.getKey(), deepCopy(e.getValue()));
+            }
+            return map;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,97 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.wikimedia.search.extra.superdetectnoop.ChangeHandlerCases.Case;
+import org.wikimedia.search.extra.superdetectnoop.ChangeHandlerCases.Outcome;
+
+import com.carrotsearch.randomizedtesting.RandomizedRunner;
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Checks every handler the plugin registers against a model of what it should
+ * do, over generated stored values and updates.
+ */
+@RunWith(RandomizedRunner.class)
+public class ChangeHandlerPropertiesTest extends RandomizedTest {
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void recognizersDontOverlap() {
+        for (Case c : ChangeHandlerCases.CASES) {
+            int recognized = 0;
+            for (ChangeHandler.Recognizer recognizer : ChangeHandlerCases.RECOGNIZERS) {
+                if (recognizer.build(c.config) != null) {
+                    recognized++;
+                }
+            }
+            assertEquals(c.config, 1, recognized);
+        }
+    }
+
+    @Test
+    public void resultsMatchTheModel() {
+        Random random = getRandom();
+        for (Case c : ChangeHandlerCases.CASES) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                Object oldValue = c.oldValue(random, randomIntBetween(0, 20));
+                Object update = c.update(random, oldValue, randomIntBetween(1, 20));
+                Object copy = ChangeHandlerCases.deepCopy(oldValue);
+                Outcome expected = c.expected(copy, update);
+                ChangeHandler.Result result = c.handler.handle(oldValue, update);
+                String message = c + ": " + copy + " <- " + update;
+                assertEquals(message, expected, outcome(result));
+                if (result.isCloseEnough()) {
+                    // The noop path leaves the source as is
+                    assertEquals(message, copy, oldValue);
+                } else if (expected == Outcome.CHANGED) {
+                    assertTrue(message + " -> " + result.newValue(), c.isExpectedValue(copy, update, result.newValue()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void changesAreIdempotent() {
+        Random random = getRandom();
+        for (Case c : ChangeHandlerCases.CASES) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                Object oldValue = c.oldValue(random, randomIntBetween(0, 20));
+                Object update = c.update(random, oldValue, randomIntBetween(1, 20));
+                ChangeHandler.Result result = c.handler.handle(oldValue, update);
+                if (outcome(result) != Outcome.CHANGED) {
+                    continue;
+                }
+                // Sending the same update again is a noop
+                Object newValue = ChangeHandlerCases.deepCopy(result.newValue());
+                assertTrue(c + ": " + newValue + " <- " + update, c.handler.handle(newValue, update).isCloseEnough());
+            }
+        }
+    }
+
+    @Test
+    public void nullValues() {
+        Random random = getRandom();
+        for (Case c : ChangeHandlerCases.CASES) {
+            assertTrue(c.config, c.handler.handle(null, null).isCloseEnough());
+            Object oldValue = c.nonNullOldValue(random, randomIntBetween(1, 20));
+            ChangeHandler.Result result = c.handler.handle(oldValue, null);
+            assertFalse(c.config, result.isCloseEnough());
+            assertNull(c.config, result.newValue());
+        }
+    }
+
+    private static Outcome outcome(ChangeHandler.Result result) {
+        if (result.isDocumentNooped()) {
+            return Outcome.NOOP_DOCUMENT;
+        }
+        return result.isCloseEnough() ? Outcome.CLOSE_ENOUGH : Outcome.CHANGED;
+    }
+}
@@ -2,8 +2,11 @@ package org.wikimedia.search.extra.superdetectnoop;
 
 import static org.hamcrest.Matchers.instanceOf;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 
 import org.apache.lucene.tests.util.LuceneTestCase;
@@ -70,4 +73,61 @@ public class EqualsHandlerTest extends LuceneTestCase {
         newMap.put("new_level", newLevel);
         assertEquals(newMap, handler().handle(oldMap, newMap).newValue());
     }
+
+    @Test
+    public void testNumbersAreComparedByValue() {
+        assertTrue(handler().handle(3L, 3).isCloseEnough());
+        assertTrue(handler().handle(3, 3L).isCloseEnough());
+        assertTrue(handler().handle(3.0, 3).isCloseEnough());
+        assertTrue(handler().handle((short) 3, 3L).isCloseEnough());
+        assertTrue(handler().handle(1.5f, 1.5).isCloseEnough());
+        assertTrue(handler().handle(0.0, -0.0).isCloseEnough());
+        assertTrue(handler().handle(Double.NaN, Double.NaN).isCloseEnough());
+        assertTrue(handler().handle(new BigInteger("3"), 3).isCloseEnough());
+        assertTrue(handler().handle(new BigDecimal("3.50"), 3.5).isCloseEnough());
+        assertEquals(4, handler().handle(3L, 4).newValue());
+        assertEquals(3.5, handler().handle(3, 3.5).newValue());
+        // 0.1f isn't 0.1
+        assertEquals(0.1, handler().handle(0.1f, 0.1).newValue());
+        assertEquals("3", handler().handle(3, "3").newValue());
+    }
+
+    @Test
+    public void testLargeNumbers() {
+        assertTrue(handler().handle(Long.MAX_VALUE, Long.MAX_VALUE).isCloseEnough());
+        assertEquals(Math.pow(2, 63), handler().handle(Long.MAX_VALUE, Math.pow(2, 63)).newValue());
+        // Both are the same double but not the same number
+        long large = (1L << 53) + 1;
+        assertEquals((double) large, handler().handle(large, (double) large).newValue());
+        assertEquals(Double.NaN, handler().handle(new BigInteger("3"), Double.NaN).newValue());
+    }
+
+    @Test
+    public void testNumbersInListsAndMaps() {
+        Map<String, Object> oldMap = new HashMap<>();
+        oldMap.put("ranks", Arrays.asList(1L, 2L, 3L));
+        oldMap.put("nested", new HashMap<>(Map.of("score", 1L)));
+        Map<String, Object> newMap = new HashMap<>();
+        newMap.put("ranks", Arrays.asList(1, 2, 3));
+        newMap.put("nested", Map.of("score", 1));
+        assertTrue(handler().handle(oldMap, newMap).isCloseEnough());
+        assertTrue(handler().handle(Arrays.asList(1L, 2L), new LinkedList<>(Arrays.asList(1, 2))).isCloseEnough());
+
+        newMap.put("ranks", Arrays.asList(1, 2));
+        assertEquals(newMap, handler().handle(oldMap, newMap).newValue());
+        newMap.put("ranks", Arrays.asList(1, 2, 4));
+        assertEquals(newMap, handler().handle(oldMap, newMap).newValue());
+    }
+
+    @Test
+    public void testNullValuesInMaps() {
+        Map<String, Object> oldMap = new HashMap<>();
+        oldMap.put("a", null);
+        Map<String, Object> newMap = new HashMap<>();
+        newMap.put("b", null);
+        assertEquals(newMap, handler().handle(oldMap, newMap).newValue());
+        newMap.clear();
+        newMap.put("a", null);
+        assertTrue(handler().handle(oldMap, newMap).isCloseEnough());
+    }
 }
@@ -4,8 +4,14 @@ import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -90,6 +96,87 @@ public class MultiListHandlerTest {
         testFailureCase(A, Collections.emptyList());
     }
 
+    @Test
+    public void testUntouchedGroupsAreKeptInPlace() {
+        List<String> old = ImmutableList.of("A/foo", "B/something", "A/bar", "A/foo", "unnamed");
+        ChangeHandler.Result result = MultiListHandler.INSTANCE.handle(old, B2);
+        assertThat(result.newValue()).isEqualTo(ImmutableList.of("A/foo", "A/bar", "A/foo", "unnamed", "B/otherthing"));
+        // Groups sent again as they are stay in place
+        result = MultiListHandler.INSTANCE.handle(old, concat(ImmutableList.of("A/bar", "A/foo"), B2));
+        assertThat(result.newValue()).isEqualTo(ImmutableList.of("A/foo", "A/bar", "A/foo", "unnamed", "B/otherthing"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSameAsRebuildingAllGroups() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<String> old = randomMultiList(random);
+            List<String> update = randomMultiList(random);
+            if (update.isEmpty()) {
+                continue;
+            }
+            Map<String, Set<String>> expected = groups(old);
+            groups(update).forEach((group, values) -> {
+                if (values.size() == 1 && values.iterator().next().endsWith(MultiListHandler.DELETE)) {
+                    expected.remove(group);
+                } else {
+                    expected.put(group, values);
+                }
+            });
+            ChangeHandler.Result result = MultiListHandler.INSTANCE.handle(old, update);
+            if (result.isCloseEnough()) {
+                assertThat(groups(old)).isEqualTo(expected);
+            } else {
+                assertThat(groups((List<String>) result.newValue())).isEqualTo(expected);
+                assertThat(groups((List<String>) result.newValue())).isNotEqualTo(groups(old));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMergedUpdatesSameAsApplyingBoth() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<String> old = randomMultiList(random);
+            List<String> earlier = randomMultiList(random);
+            List<String> later = randomMultiList(random);
+            if (earlier.isEmpty() || later.isEmpty()) {
+                continue;
+            }
+            assertThat(MultiListHandler.INSTANCE.canMergeUpdates(earlier, later)).isTrue();
+            ChangeHandler.Result first = MultiListHandler.INSTANCE.handle(old, earlier);
+            List<String> afterFirst = first.isCloseEnough() ? old : (List<String>) first.newValue();
+            ChangeHandler.Result second = MultiListHandler.INSTANCE.handle(afterFirst, later);
+            List<String> expected = second.isCloseEnough() ? afterFirst : (List<String>) second.newValue();
+
+            ChangeHandler.Result merged = MultiListHandler.INSTANCE.handle(old, MultiListHandler.INSTANCE.mergeUpdates(earlier, later));
+            assertThat(groups(merged.isCloseEnough() ? old : (List<String>) merged.newValue())).isEqualTo(groups(expected));
+        }
+        assertThat(MultiListHandler.INSTANCE.canMergeUpdates(A, null)).isTrue();
+        assertThat(MultiListHandler.INSTANCE.canMergeUpdates(null, A)).isFalse();
+    }
+
+    private static List<String> randomMultiList(Random random) {
+        List<String> list = new ArrayList<>();
+        int size = random.nextInt(8);
+        for (int i = 0; i < size; i++) {
+            String group = random.nextInt(4) == 0 ? "" : "ABC".charAt(random.nextInt(3)) + "/";
+            list.add(group + (random.nextInt(10) == 0 ? MultiListHandler.DELETE : random.nextInt(3)));
+        }
+        return list;
+    }
+
+    private static Map<String, Set<String>> groups(List<String> list) {
+        Map<String, Set<String>> groups = new LinkedHashMap<>();
+        for (String value : list) {
+            int pos = value.indexOf('/');
+            groups.computeIfAbsent(pos == -1 ? "" : value.substring(0, pos), k -> new HashSet<>()).add(value);
+        }
+        return groups;
+    }
+
     // Test takes ~100ms, give 10x margin for slower machine / over-busy CI
     @Test(timeout = 1000)
     public void testOversizedInputs() {
@@ -1,11 +1,15 @@
 package org.wikimedia.search.extra.superdetectnoop;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -22,6 +26,87 @@ public class SetHandlerTest {
         testCase(new SetHandler(0, Integer.MAX_VALUE, 0));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void indexedSameAsList() {
+        SetHandler list = new SetHandler(0, 0, 0);
+        SetHandler indexed = new SetHandler(0, Integer.MAX_VALUE, 0);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<Object> old = randomValues(random, random.nextInt(300));
+            Map<String, Object> ops = new HashMap<>();
+            ops.put("add", randomValues(random, random.nextInt(50)));
+            ops.put("remove", randomValues(random, random.nextInt(50)));
+            if (random.nextBoolean()) {
+                ops.put("max_size", random.nextInt(300));
+            }
+            ChangeHandler.Result expected = list.handle(new ArrayList<>(old), ops);
+            ChangeHandler.Result actual = indexed.handle(new ArrayList<>(old), ops);
+            assertEquals(expected.isCloseEnough(), actual.isCloseEnough());
+            assertEquals(expected.newValue(), actual.newValue());
+        }
+    }
+
+    @Test
+    public void unchangedListIsKept() {
+        SetHandler handler = new SetHandler(0, Integer.MAX_VALUE, 0);
+        List<Object> old = new ArrayList<>(ImmutableList.of("cat", "badger", "cat"));
+        ChangeHandler.Result result = handler.handle(old, map("add", ImmutableList.of("cat"), "remove", ImmutableList.of("clock")));
+        assertTrue(result.isCloseEnough());
+        assertEquals(ImmutableList.of("cat", "badger", "cat"), old);
+
+        // Duplicates are kept, like with lists
+        result = handler.handle(old, map("add", ImmutableList.of("clock"), "remove", ImmutableList.of("badger")));
+        assertEquals(ImmutableList.of("cat", "cat", "clock"), result.newValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mergedUpdatesSameAsApplyingBoth() {
+        SetHandler handler = new SetHandler(0, Integer.MAX_VALUE, 0);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<Object> old = smallValues(random);
+            Map<String, Object> earlier = map("add", smallValues(random), "remove", smallValues(random));
+            Map<String, Object> later = map("add", smallValues(random), "remove", smallValues(random));
+            assertTrue(handler.canMergeUpdates(earlier, later));
+
+            ChangeHandler.Result first = handler.handle(new ArrayList<>(old), earlier);
+            List<Object> afterFirst = first.isCloseEnough() ? old : (List<Object>) first.newValue();
+            ChangeHandler.Result second = handler.handle(new ArrayList<>(afterFirst), later);
+            List<Object> expected = second.isCloseEnough() ? afterFirst : (List<Object>) second.newValue();
+
+            ChangeHandler.Result merged = handler.handle(new ArrayList<>(old), handler.mergeUpdates(earlier, later));
+            assertEquals(new HashSet<>(expected), new HashSet<>(merged.isCloseEnough() ? old : (List<Object>) merged.newValue()));
+        }
+    }
+
+    @Test
+    public void maxSizeIsNotMerged() {
+        SetHandler handler = new SetHandler(0, 0, 0);
+        assertFalse(handler.canMergeUpdates(map("add", "cat", "max_size", 2), map("add", "badger")));
+        assertFalse(handler.canMergeUpdates(map("add", "cat"), map("add", "badger", "max_size", 2)));
+        assertFalse(handler.canMergeUpdates(null, map("add", "badger")));
+        assertTrue(handler.canMergeUpdates(map("add", "cat"), null));
+    }
+
+    private static List<Object> smallValues(Random random) {
+        List<Object> values = new ArrayList<>();
+        int size = random.nextInt(4);
+        for (int i = 0; i < size; i++) {
+            values.add("v" + random.nextInt(6));
+        }
+        return values;
+    }
+
+    private static List<Object> randomValues(Random random, int size) {
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add("v" + random.nextInt(400));
+        }
+        return values;
+    }
+
     @SuppressWarnings("unchecked")
     public void testCase(SetHandler handler) {
         List<String> old = new ArrayList<>();
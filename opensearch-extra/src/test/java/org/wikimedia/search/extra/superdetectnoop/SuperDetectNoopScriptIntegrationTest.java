@@ -502,6 +502,27 @@ public class SuperDetectNoopScriptIntegrationTest extends AbstractPluginIntegrat
         assertThat(r, not(hasEntry(equalTo("doesnt_exist"), anything())));
     }
 
+    @Test
+    public void stats() throws Exception {
+        indexSeedData();
+        SuperNoopStats.Snapshot before = client().execute(SuperNoopStatsAction.INSTANCE,
+                new SuperNoopStatsAction.SuperNoopStatsNodesRequest()).get().getAllNodes();
+        update(x("int", 5, "within 200%"), false);
+        update(x("int", 2, "within 10%"), true);
+        SuperNoopStats.Snapshot after = client().execute(SuperNoopStatsAction.INSTANCE,
+                new SuperNoopStatsAction.SuperNoopStatsNodesRequest()).get().getAllNodes();
+        assertEquals(before.getUpdated() + 1, after.getUpdated());
+        assertEquals(before.getNoop() + 1, after.getNoop());
+        assertEquals(handlerCounts(before, "within 200%").add(new SuperNoopStats.Counts(0, 1)),
+                handlerCounts(after, "within 200%"));
+        assertEquals(handlerCounts(before, "within 10%").add(new SuperNoopStats.Counts(1, 0)),
+                handlerCounts(after, "within 10%"));
+    }
+
+    private static SuperNoopStats.Counts handlerCounts(SuperNoopStats.Snapshot stats, String handler) {
+        return stats.getHandlers().getOrDefault(handler, new SuperNoopStats.Counts(0, 0));
+    }
+
     /** Tests path matching. */
     @Test
     @SuppressWarnings({"unchecked", "rawtypes"})
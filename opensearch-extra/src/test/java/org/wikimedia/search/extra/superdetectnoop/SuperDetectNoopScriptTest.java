@@ -0,0 +1,190 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.util.concurrent.ThreadContext;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class SuperDetectNoopScriptTest {
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+    private final SuperDetectNoopScript.SuperNoopScriptEngineService service =
+            new SuperDetectNoopScript.SuperNoopScriptEngineService(new HashSet<>(asList(
+                    new ChangeHandler.Equal.Recognizer(),
+                    new SetHandler.Recognizer(),
+                    new VersionedDocumentHandler.Recognizer())),
+                    () -> threadContext);
+
+    @Test
+    public void staleUpdateIsNooped() {
+        Map<String, Object> ctx = execute(oldSource(5), update(3), handlers("tags", "set", "version", "documentVersion"));
+        assertEquals("none", ctx.get("op"));
+    }
+
+    @Test
+    public void newerUpdateIsMerged() {
+        Map<String, Object> oldSource = oldSource(5);
+        Map<String, Object> ctx = execute(oldSource, update(6), handlers("tags", "set", "version", "documentVersion"));
+        assertNull(ctx.get("op"));
+        assertEquals(ImmutableList.of("a", "b"), oldSource.get("tags"));
+        assertEquals(6, oldSource.get("version"));
+    }
+
+    @Test
+    public void nestedVersion() {
+        Map<String, Object> oldSource = new LinkedHashMap<>();
+        oldSource.put("tags", new ArrayList<>(ImmutableList.of("a")));
+        oldSource.put("meta", new HashMap<>(ImmutableMap.of("version", 5)));
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("tags", ImmutableMap.of("add", "b"));
+        update.put("meta", ImmutableMap.of("version", 3));
+        Map<String, Object> ctx = execute(oldSource, update, handlers("tags", "set", "meta.version", "documentVersion"));
+        assertEquals("none", ctx.get("op"));
+    }
+
+    @Test
+    public void versionUnderHandledParentIsNotChecked() {
+        Map<String, Object> oldSource = new LinkedHashMap<>();
+        oldSource.put("meta", new HashMap<>(ImmutableMap.of("version", 5)));
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("meta", ImmutableMap.of("version", 3));
+        // The equals handler on meta replaces it as a whole
+        Map<String, Object> ctx = execute(oldSource, update, handlers("meta", "equals", "meta.version", "documentVersion"));
+        assertNull(ctx.get("op"));
+        assertEquals(ImmutableMap.of("version", 3), oldSource.get("meta"));
+    }
+
+    @Test
+    public void missingVersion() {
+        Map<String, Object> oldSource = oldSource(5);
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("tags", ImmutableMap.of("add", "b"));
+        Map<String, Object> ctx = execute(oldSource, update, handlers("tags", "set", "version", "documentVersion"));
+        assertNull(ctx.get("op"));
+        assertEquals(ImmutableList.of("a", "b"), oldSource.get("tags"));
+    }
+
+    @Test
+    public void stats() {
+        Map<String, Object> stale = new LinkedHashMap<>();
+        stale.put("version", 3);
+        stale.put("tags", ImmutableMap.of("add", "b"));
+        execute(oldSource(5), stale, handlers("tags", "set", "version", "documentVersion"));
+        execute(oldSource(5), update(6), handlers("tags", "set", "version", "documentVersion"));
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("tags", ImmutableMap.of("add", "a"));
+        update.put("other", 1);
+        execute(oldSource(5), update, handlers("tags", "set", "other", "equals"));
+        execute(oldSource(5), ImmutableMap.of("other", 2), handlers("tags", "set", "version", "documentVersion"));
+
+        SuperNoopStats.Snapshot stats = service.stats().snapshot();
+        assertEquals(3, stats.getUpdated());
+        assertEquals(0, stats.getNoop());
+        assertEquals(1, stats.getNoopDocument());
+        assertEquals(new SuperNoopStats.Counts(1, 1), stats.getPaths().get("tags"));
+        assertEquals(new SuperNoopStats.Counts(1, 0), stats.getPaths().get("version"));
+        assertEquals(new SuperNoopStats.Counts(2, 0), stats.getPaths().get("other"));
+        assertEquals(new SuperNoopStats.Counts(1, 1), stats.getHandlers().get("set"));
+        assertEquals(new SuperNoopStats.Counts(1, 0), stats.getHandlers().get("documentVersion"));
+        // explicit or not
+        assertEquals(new SuperNoopStats.Counts(2, 0), stats.getHandlers().get("equals"));
+
+        execute(oldSource(5), ImmutableMap.of("version", 5), handlers("tags", "set", "version", "documentVersion"));
+        stats = service.stats().snapshot();
+        assertEquals(1, stats.getNoop());
+        assertEquals(new SuperNoopStats.Counts(1, 1), stats.getPaths().get("version"));
+    }
+
+    @Test
+    public void dottedKeysUseTheHandlerOfTheirPath() {
+        Map<String, Object> oldSource = new LinkedHashMap<>();
+        oldSource.put("meta", new HashMap<>(ImmutableMap.of("version", 5)));
+        Map<String, Object> ctx = execute(oldSource, ImmutableMap.of("meta.version", 3),
+                handlers("tags", "set", "meta.version", "documentVersion"));
+        assertNull(ctx.get("op"));
+        assertEquals(new SuperNoopStats.Counts(1, 0), service.stats().snapshot().getPaths().get("meta.version"));
+        assertEquals(new SuperNoopStats.Counts(1, 0), service.stats().snapshot().getHandlers().get("documentVersion"));
+    }
+
+    @Test
+    public void equalSubtreeIsCountedOnce() {
+        Map<String, Object> oldSource = oldSource(5);
+        oldSource.put("meta", new HashMap<>(ImmutableMap.of("rank", 2, "name", "a")));
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("meta", ImmutableMap.of("rank", 2, "name", "a"));
+        Map<String, Object> ctx = execute(oldSource, update, handlers("tags", "set", "version", "documentVersion"));
+        assertEquals("none", ctx.get("op"));
+        SuperNoopStats.Snapshot stats = service.stats().snapshot();
+        assertEquals(new SuperNoopStats.Counts(0, 1), stats.getPaths().get("meta"));
+        assertNull(stats.getPaths().get("meta.rank"));
+
+        // Subsets are still merged field by field
+        execute(oldSource, ImmutableMap.of("meta", ImmutableMap.of("rank", 2)), handlers("tags", "set", "version", "documentVersion"));
+        assertEquals(new SuperNoopStats.Counts(0, 1), service.stats().snapshot().getPaths().get("meta.rank"));
+        assertEquals(ImmutableMap.of("rank", 2, "name", "a"), oldSource.get("meta"));
+    }
+
+    @Test
+    public void changedPathsHeader() {
+        Map<String, Object> update = update(6);
+        update.put("meta", ImmutableMap.of("rank", 2));
+        Map<String, Object> params = new HashMap<>();
+        params.put("source", update);
+        params.put("handlers", handlers("tags", "set", "version", "documentVersion"));
+        params.put("changed_paths_header", true);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("_source", oldSource(5));
+        new SuperDetectNoopScript(params, ctx, service).execute();
+        assertEquals(ImmutableList.of("tags,version,meta.rank"),
+                threadContext.getResponseHeaders().get(SuperDetectNoopScript.CHANGED_PATHS_HEADER));
+    }
+
+    @Test
+    public void noChangedPathsHeaderByDefault() {
+        execute(oldSource(5), update(6), handlers("tags", "set", "version", "documentVersion"));
+        assertNull(threadContext.getResponseHeaders().get(SuperDetectNoopScript.CHANGED_PATHS_HEADER));
+    }
+
+    private Map<String, Object> execute(Map<String, Object> oldSource, Map<String, Object> update, Map<String, String> handlers) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("source", update);
+        params.put("handlers", handlers);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("_source", oldSource);
+        new SuperDetectNoopScript(params, ctx, service).execute();
+        return ctx;
+    }
+
+    private static Map<String, Object> oldSource(int version) {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("tags", new ArrayList<>(ImmutableList.of("a")));
+        source.put("version", version);
+        return source;
+    }
+
+    private static Map<String, Object> update(int version) {
+        // The tags come first, they are merged before the version is checked
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("tags", ImmutableMap.of("add", "b"));
+        update.put("version", version);
+        return update;
+    }
+
+    private static Map<String, String> handlers(String path1, String handler1, String path2, String handler2) {
+        Map<String, String> handlers = new HashMap<>();
+        handlers.put(path1, handler1);
+        handlers.put(path2, handler2);
+        return handlers;
+    }
+}
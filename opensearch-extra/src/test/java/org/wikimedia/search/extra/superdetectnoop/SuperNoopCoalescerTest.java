@@ -0,0 +1,419 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.apache.lucene.search.TotalHits;
+import org.junit.Test;
+import org.opensearch.action.DocWriteRequest;
+import org.opensearch.action.DocWriteResponse;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.OriginalIndices;
+import org.opensearch.action.index.IndexRequest;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.action.search.SearchResponse;
+import org.opensearch.action.support.ActiveShardCount;
+import org.opensearch.action.support.WriteRequest.RefreshPolicy;
+import org.opensearch.action.update.UpdateRequest;
+import org.opensearch.action.update.UpdateResponse;
+import org.opensearch.client.Client;
+import org.opensearch.common.document.DocumentField;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.common.util.concurrent.ThreadContext;
+import org.opensearch.core.action.ActionListener;
+import org.opensearch.core.concurrency.OpenSearchRejectedExecutionException;
+import org.opensearch.core.index.shard.ShardId;
+import org.opensearch.script.Script;
+import org.opensearch.script.ScriptType;
+import org.opensearch.search.SearchHit;
+import org.opensearch.search.SearchHits;
+import org.opensearch.search.SearchShardTarget;
+import org.opensearch.threadpool.ThreadPool;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SuperNoopCoalescerTest {
+    private static final String HEADER = "test_header";
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+    private final Client client = mock(Client.class);
+    private final ThreadPool threadPool = mock(ThreadPool.class);
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<BulkRequest> bulks = new ArrayList<>();
+    private final List<ActionListener<BulkResponse>> bulkListeners = new ArrayList<>();
+    private final List<SearchRequest> searches = new ArrayList<>();
+    private final List<ActionListener<SearchResponse>> searchListeners = new ArrayList<>();
+    private final SuperNoopCoalescer coalescer = coalescer(1);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        when(threadPool.getThreadContext()).thenReturn(threadContext);
+        when(threadPool.schedule(any(), any(), any())).thenAnswer(invocation -> {
+            // The flush doesn't run with the context of the caller that opened the window
+            assertTrue(threadContext.isSystemContext());
+            assertNull(threadContext.getHeader(HEADER));
+            assertEquals(TimeValue.timeValueMillis(500), invocation.getArgument(1));
+            scheduled.add(invocation.getArgument(0));
+            return null;
+        });
+        doAnswer(invocation -> {
+            bulks.add(invocation.getArgument(0));
+            bulkListeners.add(invocation.getArgument(1));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any(ActionListener.class));
+        doAnswer(invocation -> {
+            searches.add(invocation.getArgument(0));
+            searchListeners.add(invocation.getArgument(1));
+            return null;
+        }).when(client).search(any(SearchRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void updatesOfTheSameDocumentAreMerged() {
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(update("1", ImmutableMap.of("tags", ImmutableMap.of("add", "a"))), bulk(), listener(responses));
+        coalescer.submit(update("2", ImmutableMap.of("title", "foo")), bulk(), listener(responses));
+        BulkRequest strict = bulk()
+                .setRefreshPolicy(RefreshPolicy.WAIT_UNTIL)
+                .timeout(TimeValue.timeValueMinutes(2))
+                .waitForActiveShards(ActiveShardCount.from(2));
+        coalescer.submit(update("1", ImmutableMap.of("tags", ImmutableMap.of("add", "b"))), strict, listener(responses));
+
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+
+        assertEquals(1, bulks.size());
+        BulkRequest bulk = bulks.get(0);
+        assertEquals(2, bulk.numberOfActions());
+        assertEquals(RefreshPolicy.WAIT_UNTIL, bulk.getRefreshPolicy());
+        assertEquals(TimeValue.timeValueMinutes(2), bulk.timeout());
+        assertEquals(ActiveShardCount.from(2), bulk.waitForActiveShards());
+        UpdateRequest merged = (UpdateRequest) bulk.requests().get(0);
+        assertEquals("1", merged.id());
+        Map<String, Object> tags = (Map<String, Object>) ((Map<String, Object>) merged.script().getParams().get("source")).get("tags");
+        assertEquals(asList("a", "b"), tags.get("add"));
+
+        bulkListeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1"), item(1, "2")}, 1));
+        assertEquals(3, responses.size());
+        assertEquals("1", responses.get(0).getId());
+        assertEquals("1", responses.get(1).getId());
+        assertEquals("2", responses.get(2).getId());
+    }
+
+    @Test
+    public void staleUpdateGetsANoop() {
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(versioned(6), bulk(), listener(responses));
+        coalescer.submit(versioned(5), bulk(), listener(responses));
+        scheduled.get(0).run();
+        assertEquals(1, bulks.get(0).numberOfActions());
+
+        bulkListeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1")}, 1));
+        assertEquals(DocWriteResponse.Result.UPDATED, responses.get(0).getResponse().getResult());
+        assertEquals(DocWriteResponse.Result.NOOP, responses.get(1).getResponse().getResult());
+        assertEquals("1", responses.get(1).getId());
+    }
+
+    @Test
+    public void partitionsFlushIndependently() {
+        SuperNoopCoalescer coalescer = coalescer(16);
+        String other = "2";
+        while (coalescer.partition("test", other) == coalescer.partition("test", "1")) {
+            other += "0";
+        }
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener(responses));
+        scheduled.get(0).run();
+        assertEquals(1, bulks.size());
+
+        // The bulk of the other partition doesn't wait for the one in flight
+        coalescer.submit(update(other, ImmutableMap.of("a", 1)), bulk(), listener(responses));
+        assertEquals(2, scheduled.size());
+        // But the same document does
+        coalescer.submit(update("1", ImmutableMap.of("a", 2)), bulk(), listener(responses));
+        assertEquals(2, scheduled.size());
+        scheduled.get(1).run();
+        assertEquals(2, bulks.size());
+        assertEquals(other, bulks.get(1).requests().get(0).id());
+    }
+
+    @Test
+    public void nextWindowIsScheduledOnceTheBulkCompletes() {
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener(responses));
+        scheduled.get(0).run();
+        coalescer.submit(update("1", ImmutableMap.of("a", 2)), bulk(), listener(responses));
+        assertEquals(1, scheduled.size());
+
+        bulkListeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1")}, 1));
+        assertEquals(1, responses.size());
+        assertEquals(2, scheduled.size());
+        scheduled.get(1).run();
+        assertEquals(2, bulks.size());
+        bulkListeners.get(1).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1")}, 1));
+        assertEquals(2, responses.size());
+
+        // Nothing left, no more windows until the next write
+        assertEquals(2, scheduled.size());
+        coalescer.submit(update("1", ImmutableMap.of("a", 3)), bulk(), listener(responses));
+        assertEquals(3, scheduled.size());
+    }
+
+    @Test
+    public void bulkFailureFailsEveryWrite() {
+        List<Exception> failures = new ArrayList<>();
+        ActionListener<BulkItemResponse> listener = ActionListener.wrap(r -> {
+            throw new AssertionError("expected a failure");
+        }, failures::add);
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener);
+        coalescer.submit(update("1", ImmutableMap.of("b", 1)), bulk(), listener);
+        coalescer.submit(update("2", ImmutableMap.of("a", 1)), bulk(), listener);
+        scheduled.get(0).run();
+        IllegalStateException e = new IllegalStateException("boom");
+        bulkListeners.get(0).onFailure(e);
+        assertEquals(3, failures.size());
+        for (Exception failure : failures) {
+            assertSame(e, failure);
+        }
+        // The partition can flush again
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener);
+        assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    public void rejectedPastMaxPendingWrites() {
+        List<BulkItemResponse> responses = new ArrayList<>();
+        for (int i = 0; i < SuperNoopCoalescer.MAX_PENDING_WRITES; i++) {
+            // Never merged
+            coalescer.submit(new IndexRequest("test").id("1").source(ImmutableMap.of("a", i)), bulk(), listener(responses));
+        }
+        List<Exception> failures = new ArrayList<>();
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), ActionListener.wrap(r -> {
+            throw new AssertionError("expected a failure");
+        }, failures::add));
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof OpenSearchRejectedExecutionException);
+
+        scheduled.get(0).run();
+        assertEquals(SuperNoopCoalescer.MAX_PENDING_WRITES, bulks.get(0).numberOfActions());
+    }
+
+    @Test
+    public void listenersAreCalledInTheContextOfTheirCaller() {
+        List<String> headers = new ArrayList<>();
+        ActionListener<BulkItemResponse> listener = ActionListener.wrap(r -> headers.add(threadContext.getHeader(HEADER)), e -> {
+            throw new AssertionError(e);
+        });
+        ThreadContext.StoredContext stored = threadContext.stashContext();
+        try {
+            threadContext.putHeader(HEADER, "first");
+            coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener);
+        } finally {
+            stored.restore();
+        }
+        stored = threadContext.stashContext();
+        try {
+            threadContext.putHeader(HEADER, "second");
+            coalescer.submit(update("1", ImmutableMap.of("b", 1)), bulk(), listener);
+        } finally {
+            stored.restore();
+        }
+        stored = threadContext.stashContext();
+        try {
+            threadContext.markAsSystemContext();
+            scheduled.get(0).run();
+            bulkListeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1")}, 1));
+        } finally {
+            stored.restore();
+        }
+        assertEquals(asList("first", "second"), headers);
+    }
+
+    @Test
+    public void callersGetTheResponseHeadersOfTheBulk() {
+        List<List<String>> headers = new ArrayList<>();
+        ActionListener<BulkItemResponse> listener = ActionListener.wrap(
+                r -> headers.add(threadContext.getResponseHeaders().get(SuperDetectNoopScript.CHANGED_PATHS_HEADER)), e -> {
+                    throw new AssertionError(e);
+                });
+        coalescer.submit(update("1", ImmutableMap.of("a", 1)), bulk(), listener);
+        coalescer.submit(update("2", ImmutableMap.of("b", 1)), bulk(), listener);
+        ThreadContext.StoredContext stored = threadContext.stashContext();
+        try {
+            threadContext.markAsSystemContext();
+            scheduled.get(0).run();
+            threadContext.addResponseHeader(SuperDetectNoopScript.CHANGED_PATHS_HEADER, "a");
+            threadContext.addResponseHeader(SuperDetectNoopScript.CHANGED_PATHS_HEADER, "b");
+            bulkListeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {item(0, "1"), item(1, "2")}, 1));
+        } finally {
+            stored.restore();
+        }
+        assertEquals(asList(asList("a", "b"), asList("a", "b")), headers);
+        assertNull(threadContext.getResponseHeaders().get(SuperDetectNoopScript.CHANGED_PATHS_HEADER));
+    }
+
+    @Test
+    public void onlyPlainSuperDetectNoopUpdatesAreMerged() {
+        assertEquals(SuperNoopCoalescer.Merge.MERGED,
+                coalescer.merge(update("1", ImmutableMap.of("a", 1)), update("1", ImmutableMap.of("b", 1))));
+
+        UpdateRequest painless = update("1", ImmutableMap.of("b", 1));
+        painless.script(new Script(ScriptType.INLINE, "painless", "ctx._source.b = 1", new HashMap<>()));
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(update("1", ImmutableMap.of("a", 1)), painless));
+
+        UpdateRequest conditional = update("1", ImmutableMap.of("b", 1));
+        conditional.setIfSeqNo(3);
+        conditional.setIfPrimaryTerm(1);
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(update("1", ImmutableMap.of("a", 1)), conditional));
+
+        UpdateRequest routed = update("1", ImmutableMap.of("b", 1));
+        routed.routing("r");
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(update("1", ImmutableMap.of("a", 1)), routed));
+
+        // The plain upsert creates the document without running the later update
+        UpdateRequest upsert = update("1", ImmutableMap.of("a", 1));
+        upsert.upsert(ImmutableMap.of("a", 1));
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(upsert, update("1", ImmutableMap.of("b", 1))));
+
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(new IndexRequest("test").id("1").source(ImmutableMap.of("a", 1)),
+                update("1", ImmutableMap.of("b", 1))));
+        assertEquals(SuperNoopCoalescer.Merge.DROPPED, coalescer.merge(versioned(6), versioned(5)));
+        assertEquals(SuperNoopCoalescer.Merge.MERGED, coalescer.merge(versioned(5), versioned(5)));
+        // Which one applies depends on the stored version
+        assertEquals(SuperNoopCoalescer.Merge.NONE, coalescer.merge(versioned(5), versioned(6)));
+    }
+
+    @Test
+    public void staleUpdatesAreAnsweredWithoutBeingSent() {
+        SuperNoopCoalescer coalescer = coalescer(1, true);
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(versioned("1", 5), bulk(), listener(responses));
+        coalescer.submit(versioned("2", 7), bulk(), listener(responses));
+        coalescer.submit(update("3", ImmutableMap.of("a", 1)), bulk(), listener(responses));
+        // Checked after the index request, not before it
+        coalescer.submit(new IndexRequest("test").id("4").source(ImmutableMap.of("version", 1)), bulk(), listener(responses));
+        coalescer.submit(versioned("4", 1), bulk(), listener(responses));
+        scheduled.get(0).run();
+
+        assertEquals(1, searches.size());
+        assertTrue(bulks.isEmpty());
+        assertEquals(asList("test"), asList(searches.get(0).indices()));
+        assertEquals("version", searches.get(0).source().docValueFields().get(0).field);
+        assertEquals(2, searches.get(0).source().size());
+
+        searchListeners.get(0).onResponse(searchResponse(hit("1", 6), hit("2", 6)));
+        assertEquals(1, responses.size());
+        assertEquals("1", responses.get(0).getId());
+        assertEquals(DocWriteResponse.Result.NOOP, responses.get(0).getResponse().getResult());
+        assertEquals(3, responses.get(0).getVersion());
+
+        assertEquals(1, bulks.size());
+        assertEquals(4, bulks.get(0).numberOfActions());
+        assertEquals("2", bulks.get(0).requests().get(0).id());
+    }
+
+    @Test
+    public void writesAreSentWhenThePrecheckFails() {
+        SuperNoopCoalescer coalescer = coalescer(1, true);
+        List<BulkItemResponse> responses = new ArrayList<>();
+        coalescer.submit(versioned("1", 5), bulk(), listener(responses));
+        scheduled.get(0).run();
+        searchListeners.get(0).onFailure(new IllegalStateException("no doc values"));
+        assertEquals(1, bulks.get(0).numberOfActions());
+    }
+
+    @Test
+    public void noPrecheckByDefault() {
+        coalescer.submit(versioned(5), bulk(), listener(new ArrayList<>()));
+        scheduled.get(0).run();
+        assertTrue(searches.isEmpty());
+        assertEquals(1, bulks.size());
+    }
+
+    private SuperNoopCoalescer coalescer(int partitions) {
+        return coalescer(partitions, false);
+    }
+
+    private SuperNoopCoalescer coalescer(int partitions, boolean versionPrecheck) {
+        return new SuperNoopCoalescer(() -> client, () -> threadPool,
+                new SuperDetectNoopScript.SuperNoopScriptEngineService(new HashSet<>(asList(
+                        new ChangeHandler.Equal.Recognizer(),
+                        new SetHandler.Recognizer(),
+                        new VersionedDocumentHandler.Recognizer()))),
+                Settings.builder()
+                        .put(SuperNoopCoalescer.PARTITIONS.getKey(), partitions)
+                        .put(SuperNoopCoalescer.VERSION_PRECHECK.getKey(), versionPrecheck)
+                        .build());
+    }
+
+    private static SearchHit hit(String id, long version) {
+        SearchHit hit = new SearchHit(0, id,
+                Collections.singletonMap("version", new DocumentField("version", Collections.singletonList(version))),
+                Collections.emptyMap());
+        hit.shard(new SearchShardTarget("node", new ShardId("test", "_na_", 0), null, OriginalIndices.NONE));
+        hit.version(3);
+        hit.setSeqNo(2);
+        hit.setPrimaryTerm(1);
+        return hit;
+    }
+
+    private static SearchResponse searchResponse(SearchHit... hits) {
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(hits, new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), 1));
+        return response;
+    }
+
+    private static BulkRequest bulk() {
+        return new BulkRequest();
+    }
+
+    private static UpdateRequest update(String id, Map<String, Object> source) {
+        return update(id, source, ImmutableMap.of("tags", "set"));
+    }
+
+    private static UpdateRequest versioned(long version) {
+        return versioned("1", version);
+    }
+
+    private static UpdateRequest versioned(String id, long version) {
+        return update(id, ImmutableMap.of("version", version), ImmutableMap.of("version", "documentVersion"));
+    }
+
+    private static UpdateRequest update(String id, Map<String, Object> source, Map<String, String> handlers) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("source", source);
+        params.put("handlers", handlers);
+        return new UpdateRequest("test", id).script(new Script(ScriptType.INLINE, "super_detect_noop", "", params));
+    }
+
+    private static BulkItemResponse item(int itemId, String id) {
+        return new BulkItemResponse(itemId, DocWriteRequest.OpType.UPDATE,
+                new UpdateResponse(new ShardId("test", "_na_", 0), id, 1, 1, 1, UpdateResponse.Result.UPDATED));
+    }
+
+    private static ActionListener<BulkItemResponse> listener(List<BulkItemResponse> responses) {
+        return ActionListener.wrap(responses::add, e -> {
+            throw new AssertionError(e);
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SuperNoopScriptEngineServiceTest {
+    private final SuperDetectNoopScript.SuperNoopScriptEngineService service =
+            new SuperDetectNoopScript.SuperNoopScriptEngineService(new HashSet<>(asList(
+                    new ChangeHandler.Equal.Recognizer(),
+                    new WithinPercentageHandler.Recognizer(),
+                    new SetHandler.Recognizer())));
+
+    @Test
+    public void handlersAreSharedBetweenUpdates() {
+        Map<String, ChangeHandler<Object>> handlers = service.handlers(params("within 20%", "set"));
+        assertEquals(2, handlers.size());
+        assertSame(handlers, service.handlers(params("within 20%", "set")));
+        assertStats(1, 1);
+
+        // Another config is resolved on its own
+        Map<String, ChangeHandler<Object>> other = service.handlers(params("within 10%", "set"));
+        assertEquals(2, other.size());
+        assertStats(1, 2);
+    }
+
+    @Test
+    public void configIsCopied() {
+        Map<String, Object> params = params("within 20%", "set");
+        Map<String, ChangeHandler<Object>> handlers = service.handlers(params);
+        @SuppressWarnings("unchecked")
+        Map<String, String> configs = (Map<String, String>) params.get("handlers");
+        configs.put("field3", "equals");
+        Map<String, ChangeHandler<Object>> updated = service.handlers(params);
+        assertEquals(2, handlers.size());
+        assertEquals(3, updated.size());
+    }
+
+    @Test
+    public void unknownHandlersAreNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.handlers(params("within 20%", "unknown"));
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("unknown"));
+            }
+        }
+        assertStats(0, 2);
+    }
+
+    @Test
+    public void noHandlers() {
+        assertEquals(Collections.emptyMap(), service.handlers(Collections.emptyMap()));
+        assertStats(0, 0);
+    }
+
+    private void assertStats(long hits, long misses) {
+        SuperNoopStats.CacheCounts stats = service.stats().snapshot().getHandlersCache();
+        assertEquals(hits, stats.getHits());
+        assertEquals(misses, stats.getMisses());
+    }
+
+    private static Map<String, Object> params(String field1, String field2) {
+        Map<String, String> handlers = new HashMap<>();
+        handlers.put("field1", field1);
+        handlers.put("field2", field2);
+        Map<String, Object> params = new HashMap<>();
+        params.put("handlers", handlers);
+        return params;
+    }
+}
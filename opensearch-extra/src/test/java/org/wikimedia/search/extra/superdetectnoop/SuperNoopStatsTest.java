@@ -0,0 +1,60 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.opensearch.common.io.stream.BytesStreamOutput;
+
+public class SuperNoopStatsTest {
+    @Test
+    public void untrackedKeysAreCountedTogether() {
+        SuperNoopStats stats = new SuperNoopStats();
+        for (int i = 0; i < SuperNoopStats.MAX_TRACKED_KEYS + 10; i++) {
+            stats.onField("field" + i, "equals", i % 2 == 0);
+        }
+        SuperNoopStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(SuperNoopStats.MAX_TRACKED_KEYS + 1, snapshot.getPaths().size());
+        assertEquals(new SuperNoopStats.Counts(5, 5), snapshot.getPaths().get(SuperNoopStats.OTHER));
+        assertNull(snapshot.getHandlers().get(SuperNoopStats.OTHER));
+        assertEquals(new SuperNoopStats.Counts(505, 505), snapshot.getHandlers().get("equals"));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        SuperNoopStats.Snapshot snapshot = sampleStats().snapshot();
+        BytesStreamOutput out = new BytesStreamOutput();
+        snapshot.writeTo(out);
+        assertEquals(snapshot, new SuperNoopStats.Snapshot(out.bytes().streamInput()));
+    }
+
+    @Test
+    public void sum() {
+        SuperNoopStats.Snapshot snapshot = sampleStats().snapshot();
+        SuperNoopStats.Snapshot sum = SuperNoopStats.Snapshot.sum(asList(snapshot, snapshot, SuperNoopStats.Snapshot.EMPTY));
+        assertEquals(2, sum.getUpdated());
+        assertEquals(4, sum.getNoop());
+        assertEquals(6, sum.getNoopDocument());
+        assertEquals(new SuperNoopStats.Counts(2, 2), sum.getPaths().get("a.b"));
+        assertEquals(new SuperNoopStats.Counts(0, 2), sum.getPaths().get("c"));
+        assertEquals(new SuperNoopStats.Counts(2, 4), sum.getHandlers().get("within 20%"));
+        assertEquals(new SuperNoopStats.CacheCounts(14, 6, 2), sum.getHandlersCache());
+    }
+
+    private static SuperNoopStats sampleStats() {
+        SuperNoopStats stats = new SuperNoopStats(() -> new SuperNoopStats.CacheCounts(7, 3, 1));
+        stats.onUpdated();
+        stats.onNoop();
+        stats.onNoop();
+        stats.onNoopDocument();
+        stats.onNoopDocument();
+        stats.onNoopDocument();
+        stats.onField("a.b", "within 20%", true);
+        stats.onField("a.b", "within 20%", false);
+        stats.onField("c", "within 20%", false);
+        return stats;
+    }
+}
@@ -0,0 +1,102 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static org.hamcrest.Matchers.containsString;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.junit.Test;
+
+public class TimeBoundedWithinHandlerTest extends LuceneTestCase {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final ChangeHandler<Object> percentage = new TimeBoundedWithinHandler.Recognizer().build("within 10% or 7d");
+    private final ChangeHandler<Object> absolute = new TimeBoundedWithinHandler.Recognizer().build("within 5 or 12h");
+
+    @Test
+    public void testDeclaration() {
+        ChangeHandler.Recognizer recognizer = new TimeBoundedWithinHandler.Recognizer();
+        assertNotNull(percentage);
+        assertNotNull(absolute);
+        assertNotNull(recognizer.build("within 0.5% or 30m"));
+        assertNull(recognizer.build("within 10%"));
+        assertNull(recognizer.build("within 10"));
+        assertNull(recognizer.build("within 10% or never"));
+        assertNull(recognizer.build("within ten or 7d"));
+        assertNull(recognizer.build("equals"));
+        // Don't overlap with the within handlers
+        assertNull(new WithinPercentageHandler.Recognizer().build("within 10% or 7d"));
+        assertNull(new WithinAbsoluteHandler.Recognizer().build("within 5 or 12h"));
+    }
+
+    @Test
+    public void testSmallChangesAreSkipped() {
+        assertTrue(percentage.handle(value(100, 0), value(105, DAY)).isCloseEnough());
+        assertTrue(absolute.handle(value(100, 0), value(104, DAY / 4)).isCloseEnough());
+    }
+
+    @Test
+    public void testLargeChangesAreWritten() {
+        Map<String, Object> update = value(120, DAY);
+        assertEquals(update, percentage.handle(value(100, 0), update).newValue());
+        update = value(94, DAY / 4);
+        assertEquals(update, absolute.handle(value(100, 0), update).newValue());
+    }
+
+    @Test
+    public void testOldValuesAreWritten() {
+        Map<String, Object> update = value(101, 7 * DAY);
+        assertEquals(update, percentage.handle(value(100, 0), update).newValue());
+        update = value(100, DAY / 2);
+        assertEquals(update, absolute.handle(value(100, 0), update).newValue());
+    }
+
+    @Test
+    public void testOutOfOrderUpdatesAreSkipped() {
+        assertTrue(percentage.handle(value(100, 8 * DAY), value(200, 0)).isCloseEnough());
+    }
+
+    @Test
+    public void testMissingOrInvalidStoredValue() {
+        Map<String, Object> update = value(100, 0);
+        assertEquals(update, percentage.handle(null, update).newValue());
+        assertEquals(update, percentage.handle(100, update).newValue());
+        Map<String, Object> old = new HashMap<>();
+        old.put(TimeBoundedWithinHandler.VALUE, 100);
+        assertEquals(update, percentage.handle(old, update).newValue());
+        assertNull(percentage.handle(old, null).newValue());
+    }
+
+    @Test
+    public void testInvalidUpdate() {
+        Map<String, Object> update = new HashMap<>();
+        update.put(TimeBoundedWithinHandler.VALUE, 100);
+        for (Object invalid : new Object[] {100, update}) {
+            try {
+                percentage.handle(value(100, 0), invalid);
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage(), containsString("timestamp"));
+            }
+        }
+    }
+
+    @Test
+    public void testMergeKeepsTheNewestUpdate() {
+        assertTrue(percentage.canMergeUpdates(value(100, 0), value(200, DAY)));
+        assertEquals(value(200, DAY), percentage.mergeUpdates(value(100, 0), value(200, DAY)));
+        assertEquals(value(100, DAY), percentage.mergeUpdates(value(100, DAY), value(200, 0)));
+        assertTrue(percentage.canMergeUpdates(value(100, 0), null));
+        assertNull(percentage.mergeUpdates(value(100, 0), null));
+        assertFalse(percentage.canMergeUpdates(null, value(100, 0)));
+        assertFalse(percentage.canMergeUpdates(100, value(100, 0)));
+    }
+
+    private static Map<String, Object> value(Number value, long timestamp) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(TimeBoundedWithinHandler.VALUE, value);
+        map.put(TimeBoundedWithinHandler.TIMESTAMP, timestamp);
+        return map;
+    }
+}
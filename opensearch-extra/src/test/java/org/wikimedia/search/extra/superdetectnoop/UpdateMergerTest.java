@@ -0,0 +1,98 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class UpdateMergerTest {
+    private final SuperDetectNoopScript.SuperNoopScriptEngineService service =
+            new SuperDetectNoopScript.SuperNoopScriptEngineService(new HashSet<>(asList(
+                    new ChangeHandler.Equal.Recognizer(),
+                    new SetHandler.Recognizer(),
+                    new VersionedDocumentHandler.Recognizer())));
+
+    @Test
+    public void sameAsApplyingBoth() {
+        Map<String, String> handlers = ImmutableMap.of("tags", "set");
+        Map<String, Object> earlier = params(handlers, ImmutableMap.of(
+                "tags", ImmutableMap.of("add", "b", "remove", "a"),
+                "meta", ImmutableMap.of("rank", 1, "name", "x"),
+                "title", "foo"));
+        Map<String, Object> later = params(handlers, ImmutableMap.of(
+                "tags", ImmutableMap.of("add", "a"),
+                "meta", ImmutableMap.of("rank", 2),
+                "popularity", 3));
+
+        Map<String, Object> sequential = oldSource();
+        apply(sequential, earlier);
+        apply(sequential, later);
+        Map<String, Object> merged = oldSource();
+        apply(merged, merge(earlier, later));
+
+        // Sets may end up in a different order
+        assertEquals(new HashSet<>((List<?>) sequential.remove("tags")), new HashSet<>((List<?>) merged.remove("tags")));
+        assertEquals(sequential, merged);
+    }
+
+    @Test
+    public void staleLaterUpdateIsDropped() {
+        Map<String, String> handlers = ImmutableMap.of("version", "documentVersion");
+        Map<String, Object> earlier = params(handlers, ImmutableMap.of("version", 6, "title", "foo"));
+        Map<String, Object> later = params(handlers, ImmutableMap.of("version", 5, "title", "bar"));
+        assertSame(earlier, merge(earlier, later));
+    }
+
+    @Test
+    public void unmergeable() {
+        Map<String, String> handlers = ImmutableMap.of("version", "documentVersion", "tags", "set");
+        // Which one applies depends on the stored version
+        assertNull(merge(params(handlers, ImmutableMap.of("version", 5)), params(handlers, ImmutableMap.of("version", 6))));
+        assertNull(merge(params(handlers, ImmutableMap.of("title", "foo")), params(handlers, ImmutableMap.of("version", 6))));
+        // Different handlers
+        assertNull(merge(params(handlers, ImmutableMap.of("title", "foo")),
+                params(ImmutableMap.of("tags", "set"), ImmutableMap.of("title", "bar"))));
+        // Bounded sets
+        assertNull(merge(params(handlers, ImmutableMap.of("tags", ImmutableMap.of("add", "a", "max_size", 2))),
+                params(handlers, ImmutableMap.of("tags", ImmutableMap.of("add", "b")))));
+        // A field replaced then merged into
+        assertNull(merge(params(handlers, ImmutableMap.of("meta", 1)),
+                params(handlers, ImmutableMap.of("meta", ImmutableMap.of("rank", 2)))));
+    }
+
+    private Map<String, Object> merge(Map<String, Object> earlier, Map<String, Object> later) {
+        return UpdateMerger.merge(service.plan(earlier), earlier, later);
+    }
+
+    private void apply(Map<String, Object> source, Map<String, Object> params) {
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("_source", source);
+        new SuperDetectNoopScript(params, ctx, service).execute();
+    }
+
+    private static Map<String, Object> oldSource() {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("tags", new ArrayList<>(ImmutableList.of("a", "c")));
+        source.put("meta", new HashMap<>(ImmutableMap.of("rank", 0, "name", "y", "other", true)));
+        return source;
+    }
+
+    private static Map<String, Object> params(Map<String, String> handlers, Map<String, Object> source) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("source", source);
+        params.put("handlers", handlers);
+        return params;
+    }
+}
@@ -0,0 +1,98 @@
+package org.wikimedia.search.extra.superdetectnoop;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class UpdatePlanTest {
+    private static final SuperDetectNoopScript.SuperNoopScriptEngineService SERVICE =
+            new SuperDetectNoopScript.SuperNoopScriptEngineService(new HashSet<>(asList(
+                    new ChangeHandler.Equal.Recognizer(),
+                    new SetHandler.Recognizer(),
+                    new VersionedDocumentHandler.Recognizer())));
+
+    @Test
+    public void handlersAreFoundBySegment() {
+        UpdatePlan plan = plan("a.b", "set", "c", "equals");
+        UpdatePlan.Node a = plan.root().child("a");
+        assertNull(a.handler());
+        assertTrue(a.hasHandlers());
+        UpdatePlan.Node b = a.child("b");
+        assertSame(plan.handlers().get("a.b"), b.handler());
+        assertEquals("set", b.config());
+        assertEquals("a.b", b.path());
+        assertEquals("equals", plan.root().child("c").config());
+    }
+
+    @Test
+    public void dottedKeys() {
+        UpdatePlan plan = plan("a.b.c", "set", "d", "equals");
+        UpdatePlan.Node c = plan.root().child("a").child("b").child("c");
+        assertSame(c, plan.root().child("a.b.c"));
+        assertSame(c, plan.root().child("a").child("b.c"));
+        assertEquals("a.b.x", plan.root().child("a.b").child("x").path());
+    }
+
+    @Test
+    public void unplannedNodesAreKept() {
+        UpdatePlan plan = plan("a.b", "set", "c", "equals");
+        UpdatePlan.Node x = plan.root().child("a").child("x");
+        assertEquals("a.x", x.path());
+        assertNull(x.handler());
+        assertNull(x.config());
+        assertFalse(x.hasHandlers());
+        assertSame(x, plan.root().child("a").child("x"));
+    }
+
+    @Test
+    public void unplannedNodesAreBounded() {
+        UpdatePlan plan = plan("a", "set", "b", "equals");
+        for (int i = 0; i < UpdatePlan.MAX_UNPLANNED_NODES; i++) {
+            plan.root().child("f" + i);
+        }
+        assertSame(plan.root().child("f1"), plan.root().child("f1"));
+        UpdatePlan.Node other = plan.root().child("other");
+        assertEquals("other", other.path());
+        assertNotSame(other, plan.root().child("other"));
+    }
+
+    @Test
+    public void documentNoopNodes() {
+        Map<String, String> configs = new HashMap<>();
+        configs.put("version", "documentVersion");
+        configs.put("meta", "equals");
+        configs.put("meta.version", "documentVersion");
+        configs.put("other.version", "documentVersion");
+        UpdatePlan plan = new UpdatePlan(configs, SERVICE::handler);
+        assertEquals(2, plan.documentNoopNodes().size());
+        for (UpdatePlan.Node node : plan.documentNoopNodes()) {
+            assertArrayEquals(UpdatePlan.split(node.path()), node.segments());
+            assertFalse(node.path().startsWith("meta"));
+        }
+    }
+
+    @Test
+    public void split() {
+        assertArrayEquals(new String[] {"a"}, UpdatePlan.split("a"));
+        assertArrayEquals(new String[] {"a", "b"}, UpdatePlan.split("a.b"));
+        assertArrayEquals(new String[] {"", "a", "", "b", ""}, UpdatePlan.split(".a..b."));
+    }
+
+    private static UpdatePlan plan(String path1, String handler1, String path2, String handler2) {
+        Map<String, String> configs = new HashMap<>();
+        configs.put(path1, handler1);
+        configs.put(path2, handler2);
+        return new UpdatePlan(configs, SERVICE::handler);
+    }
+}
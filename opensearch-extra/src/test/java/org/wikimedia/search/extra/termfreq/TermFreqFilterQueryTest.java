@@ -19,14 +19,19 @@ import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.tests.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.tests.util.LuceneTestCase;
 import org.hamcrest.Matchers;
@@ -159,6 +164,56 @@ public class TermFreqFilterQueryTest extends LuceneTestCase {
         }
     }
 
+    public void testTopScores() throws IOException {
+        Term word1 = new Term("main_field", "word1");
+        TermFreqFilterQuery tQuery = new TermFreqFilterQuery(word1, gte(2));
+
+        // Max scores are read from the impacts, codecs without impacts report Integer.MAX_VALUE
+        Weight weight = searcherUnderTest.createWeight(searcherUnderTest.rewrite(tQuery), ScoreMode.TOP_SCORES, 1f);
+        for (LeafReaderContext context : searcherUnderTest.getIndexReader().leaves()) {
+            Scorer scorer = weight.scorer(context);
+            if (scorer == null) {
+                continue;
+            }
+            scorer.advanceShallow(0);
+            float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+            DocIdSetIterator iterator = scorer.iterator();
+            while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                assertThat(scorer.score(), Matchers.lessThanOrEqualTo(maxScore));
+            }
+        }
+
+        // Skipping blocks does not change the top hits
+        TopDocs docs = searcherUnderTest.search(tQuery, 3);
+        for (int i = 0; i < docs.scoreDocs.length; i++) {
+            int freq = searcherUnderTest.doc(docs.scoreDocs[i].doc).getField("freq").numericValue().intValue();
+            assertEquals(nbDocs - i, freq);
+        }
+    }
+
+    public void testLowerBound() throws IOException {
+        Term word1 = new Term("main_field", "word1");
+        // Blocks are skipped on the lower bound of the predicate
+        TermFreqFilterQuery tQuery = new TermFreqFilterQuery(word1, gt(nbDocs - 3));
+        assertEquals(3, searcherUnderTest.count(tQuery));
+
+        tQuery = new TermFreqFilterQuery(word1, eq(nbDocs / 2));
+        assertEquals(1, searcherUnderTest.count(tQuery));
+
+        tQuery = new TermFreqFilterQuery(word1, gt(nbDocs - 3).or(eq(2)));
+        assertEquals(4, searcherUnderTest.count(tQuery));
+
+        tQuery = new TermFreqFilterQuery(word1, gt(Integer.MAX_VALUE - 1));
+        assertEquals(0, searcherUnderTest.count(tQuery));
+
+        TopDocs docs = searcherUnderTest.search(tQuery, 3);
+        assertEquals(0, docs.totalHits.value);
+        tQuery = new TermFreqFilterQuery(word1, gte(nbDocs - 1));
+        docs = searcherUnderTest.search(tQuery, 1);
+        assertEquals(2, docs.totalHits.value);
+        assertEquals(nbDocs, searcherUnderTest.doc(docs.scoreDocs[0].doc).getField("freq").numericValue().intValue());
+    }
+
     public void testsUnknown() throws IOException {
         TermFreqFilterQuery tQuery = new TermFreqFilterQuery(new Term("main_field", "unknown"),
                 gte(5).and(lte(nbDocs)));
@@ -0,0 +1,120 @@
+package org.wikimedia.search.extra.termfreq;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.opensearch.common.compress.CompressedXContent;
+import org.opensearch.core.common.ParsingException;
+import org.opensearch.index.mapper.MapperService;
+import org.opensearch.index.query.Operator;
+import org.opensearch.index.query.QueryShardContext;
+import org.opensearch.plugins.Plugin;
+import org.opensearch.test.AbstractQueryTestCase;
+import org.opensearch.test.TestGeoShapeFieldMapperPlugin;
+import org.wikimedia.search.extra.ExtraCorePlugin;
+import org.wikimedia.search.extra.util.ConcreteIntPredicate;
+
+public class TermsFreqFilterQueryBuilderOpenSearchTest extends AbstractQueryTestCase<TermsFreqFilterQueryBuilder> {
+
+    private static final String MY_FIELD = "test_field";
+
+    @Override
+    protected void initializeAdditionalMappings(MapperService mapperService) throws IOException {
+        mapperService.merge("_doc",
+                new CompressedXContent("{\"properties\":{\"" + MY_FIELD + "\":{\"type\":\"text\" }}}"),
+                MapperService.MergeReason.MAPPING_UPDATE);
+    }
+
+    @Override
+    protected Collection<Class<? extends Plugin>> getPlugins() {
+        return Arrays.asList(ExtraCorePlugin.class, TestGeoShapeFieldMapperPlugin.class);
+    }
+
+    @Override
+    protected TermsFreqFilterQueryBuilder doCreateTestQueryBuilder() {
+        TermsFreqFilterQueryBuilder builder = new TermsFreqFilterQueryBuilder(MY_FIELD);
+        int nbTerms = random().nextInt(5) + 1;
+        for (int i = 0; i < nbTerms; i++) {
+            builder.addTerm("term_" + i, randomRange());
+        }
+        if (random().nextBoolean()) {
+            builder.setOperator(randomFrom(Operator.values()));
+        }
+        builder.setSumFreqs(random().nextBoolean());
+        return builder;
+    }
+
+    private FreqRange randomRange() {
+        FreqRange range = new FreqRange();
+        if (random().nextBoolean()) {
+            return range.setEqual(random().nextInt(100));
+        }
+        int from = random().nextInt(100);
+        int to = random().nextInt(100) + 2 + from;
+        boolean fromSet = false;
+        if (random().nextBoolean()) {
+            if (random().nextBoolean()) {
+                range.setFromStrict(from);
+            } else {
+                range.setFrom(from);
+            }
+            fromSet = true;
+        }
+        if (!fromSet || random().nextBoolean()) {
+            if (random().nextBoolean()) {
+                range.setToStrict(to);
+            } else {
+                range.setTo(to);
+            }
+        }
+        return range;
+    }
+
+    @Override
+    protected void doAssertLuceneQuery(TermsFreqFilterQueryBuilder builder, Query query, QueryShardContext searchContext) throws IOException {
+        if (!builder.isSumFreqs()) {
+            assertThat(query, instanceOf(ConstantScoreQuery.class));
+            query = ((ConstantScoreQuery) query).getQuery();
+        }
+        assertThat(query, instanceOf(TermsFreqFilterQuery.class));
+        TermsFreqFilterQuery tquery = (TermsFreqFilterQuery) query;
+        assertEquals(builder.getField(), tquery.getField());
+        assertEquals(builder.getOperator() == Operator.AND, tquery.isConjunction());
+        assertEquals(builder.getTerms().size(), tquery.getPredicates().size());
+        for (Map.Entry<String, FreqRange> entry : builder.getTerms().entrySet()) {
+            ConcreteIntPredicate predicate = tquery.getPredicates().get(new BytesRef(entry.getKey()));
+            assertEquals(entry.getValue().buildPredicate(), predicate);
+        }
+    }
+
+    public void testInvalidQueries() {
+        TermsFreqFilterQueryBuilder builder = new TermsFreqFilterQueryBuilder();
+
+        assertThat(expectThrows(ParsingException.class, () -> parseQuery(builder)).getMessage(),
+                containsString("field"));
+        builder.setField("field");
+
+        assertThat(expectThrows(ParsingException.class, () -> parseQuery(builder)).getMessage(),
+                containsString("terms"));
+
+        builder.addTerm("term", new FreqRange());
+        assertThat(expectThrows(ParsingException.class, () -> parseQuery(builder)).getMessage(),
+                containsString("Invalid range provided"));
+
+        builder.addTerm("term", new FreqRange().setFrom(2).setTo(1));
+        assertThat(expectThrows(ParsingException.class, () -> parseQuery(builder)).getMessage(),
+                containsString("Invalid range provided"));
+
+        builder.addTerm("term", new FreqRange().setFrom(1).setEqual(2));
+        assertThat(expectThrows(ParsingException.class, () -> parseQuery(builder)).getMessage(),
+                containsString("eq cannot be used with"));
+    }
+}
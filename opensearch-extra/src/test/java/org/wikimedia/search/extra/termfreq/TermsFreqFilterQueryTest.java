@@ -0,0 +1,184 @@
+package org.wikimedia.search.extra.termfreq;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.eq;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.gt;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.gte;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.lt;
+import static org.wikimedia.search.extra.util.ConcreteIntPredicate.lte;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.index.RandomIndexWriter;
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.wikimedia.search.extra.analysis.filters.TermFreqTokenFilter;
+import org.wikimedia.search.extra.util.ConcreteIntPredicate;
+
+public class TermsFreqFilterQueryTest extends LuceneTestCase {
+    private static final String FIELD = "main_field";
+    private static final String[] TERMS = {"tag1", "tag2", "tag3", "tag4"};
+    private static final int MAX_FREQ = 20;
+
+    private IndexSearcher searcherUnderTest;
+    private RandomIndexWriter indexWriterUnderTest;
+    private IndexReader indexReaderUnderTest;
+    private Directory dirUnderTest;
+    private int nbDocs;
+
+    @Before
+    public void setupIndex() throws IOException {
+        dirUnderTest = newDirectory();
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String s) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new TermFreqTokenFilter(tok, '|', MAX_FREQ);
+                return new TokenStreamComponents(tok, ts);
+            }
+        };
+        indexWriterUnderTest = new RandomIndexWriter(random(), dirUnderTest, newIndexWriterConfig(analyzer));
+
+        FieldType type = new FieldType();
+        type.setStored(false);
+        type.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        type.freeze();
+        nbDocs = random().nextInt(500) + 10;
+        for (int i = 0; i < nbDocs; i++) {
+            StringBuilder tags = new StringBuilder();
+            for (String term : TERMS) {
+                if (random().nextInt(3) > 0) {
+                    tags.append(term).append('|').append(random().nextInt(MAX_FREQ) + 1).append(' ');
+                }
+            }
+            Document doc = new Document();
+            doc.add(new Field(FIELD, tags.toString(), type));
+            indexWriterUnderTest.addDocument(doc);
+        }
+
+        indexWriterUnderTest.commit();
+        indexReaderUnderTest = indexWriterUnderTest.getReader();
+        searcherUnderTest = newSearcher(indexReaderUnderTest);
+    }
+
+    public void testSameAsBooleanQuery() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Map<BytesRef, ConcreteIntPredicate> predicates = new HashMap<>();
+            int nbTerms = random().nextInt(TERMS.length) + 1;
+            for (int t = 0; t < nbTerms; t++) {
+                predicates.put(new BytesRef(TERMS[random().nextInt(TERMS.length)]), randomPredicate());
+            }
+            if (random().nextBoolean()) {
+                predicates.put(new BytesRef("unknown"), randomPredicate());
+            }
+            boolean conjunction = random().nextBoolean();
+
+            BooleanQuery.Builder bq = new BooleanQuery.Builder();
+            for (Map.Entry<BytesRef, ConcreteIntPredicate> entry : predicates.entrySet()) {
+                bq.add(new TermFreqFilterQuery(new Term(FIELD, entry.getKey()), entry.getValue()),
+                        conjunction ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD);
+            }
+            TermsFreqFilterQuery query = new TermsFreqFilterQuery(FIELD, predicates, conjunction);
+            assertSameHits(bq.build(), query);
+        }
+    }
+
+    public void testSingleTerm() throws IOException {
+        for (boolean conjunction : new boolean[] {true, false}) {
+            ConcreteIntPredicate predicate = gte(MAX_FREQ / 2);
+            assertSameHits(new TermFreqFilterQuery(new Term(FIELD, TERMS[0]), predicate),
+                    new TermsFreqFilterQuery(FIELD, singleTerm(TERMS[0], predicate), conjunction));
+        }
+    }
+
+    public void testUnknown() throws IOException {
+        TermsFreqFilterQuery query = new TermsFreqFilterQuery(FIELD, singleTerm("unknown", gte(1)), false);
+        assertEquals(0, searcherUnderTest.count(query));
+        query = new TermsFreqFilterQuery("unknown_field", singleTerm(TERMS[0], gte(1)), false);
+        assertEquals(0, searcherUnderTest.count(query));
+    }
+
+    public void testExplain() throws IOException {
+        Map<BytesRef, ConcreteIntPredicate> predicates = new HashMap<>();
+        predicates.put(new BytesRef(TERMS[0]), gte(1));
+        predicates.put(new BytesRef(TERMS[1]), gte(1));
+        TermsFreqFilterQuery query = new TermsFreqFilterQuery(FIELD, predicates, false);
+        TopDocs docs = searcherUnderTest.search(query, 1);
+        assertTrue(docs.totalHits.value > 0);
+        Explanation exp = searcherUnderTest.explain(query, docs.scoreDocs[0].doc);
+        assertTrue(exp.isMatch());
+        assertEquals(docs.scoreDocs[0].score, exp.getValue().floatValue(), 0F);
+        assertThat(exp.getDescription(), containsString("any of"));
+        assertEquals(2, exp.getDetails().length);
+
+        query = new TermsFreqFilterQuery(FIELD, singleTerm(TERMS[0], eq(MAX_FREQ + 1)), true);
+        exp = searcherUnderTest.explain(query, docs.scoreDocs[0].doc);
+        assertFalse(exp.isMatch());
+        assertThat(exp.getDescription(), containsString("all of"));
+    }
+
+    private void assertSameHits(Query expected, Query actual) throws IOException {
+        TopDocs expectedDocs = searcherUnderTest.search(expected, nbDocs);
+        TopDocs actualDocs = searcherUnderTest.search(actual, nbDocs);
+        assertEquals(actual.toString(), expectedDocs.totalHits.value, actualDocs.totalHits.value);
+        Map<Integer, Float> expectedScores = new HashMap<>();
+        for (ScoreDoc doc : expectedDocs.scoreDocs) {
+            expectedScores.put(doc.doc, doc.score);
+        }
+        for (ScoreDoc doc : actualDocs.scoreDocs) {
+            assertEquals(actual.toString(), expectedScores.get(doc.doc), doc.score, 0F);
+        }
+        assertEquals(searcherUnderTest.count(expected), searcherUnderTest.count(actual));
+    }
+
+    private static Map<BytesRef, ConcreteIntPredicate> singleTerm(String term, ConcreteIntPredicate predicate) {
+        Map<BytesRef, ConcreteIntPredicate> predicates = new HashMap<>();
+        predicates.put(new BytesRef(term), predicate);
+        return predicates;
+    }
+
+    private static ConcreteIntPredicate randomPredicate() {
+        int value = random().nextInt(MAX_FREQ) + 1;
+        switch (random().nextInt(5)) {
+            case 0:
+                return eq(value);
+            case 1:
+                return gt(value);
+            case 2:
+                return gte(value);
+            case 3:
+                return lt(value);
+            default:
+                return gte(value / 2).and(lte(value));
+        }
+    }
+
+    @After
+    public void closeStuff() throws IOException {
+        indexReaderUnderTest.close();
+        indexWriterUnderTest.close();
+        dirUnderTest.close();
+    }
+}